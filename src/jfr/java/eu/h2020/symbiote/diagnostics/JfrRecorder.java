@@ -0,0 +1,72 @@
+package eu.h2020.symbiote.diagnostics;
+
+import jdk.jfr.EventType;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * The only class touching JFR event classes, so that they are loaded only when {@link JfrEvents} finds JFR available.
+ * <p>
+ * Events are created only while some recording has them enabled; otherwise begin methods return null without
+ * allocating anything.
+ */
+class JfrRecorder implements JfrEvents.Recorder {
+    private static final EventType RPC_EVENT_TYPE = EventType.getEventType(RpcEvent.class);
+    private static final EventType PROXY_EVENT_TYPE = EventType.getEventType(ProxyEvent.class);
+
+    @Override
+    public Object beginRpc() {
+        if (!RPC_EVENT_TYPE.isEnabled())
+            return null;
+
+        RpcEvent event = new RpcEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void commitRpc(Object token, String exchange, String routingKey, long requestSize, long responseSize, long waitNanos, String outcome) {
+        RpcEvent event = (RpcEvent) token;
+        event.end();
+        if (!event.shouldCommit())
+            return;
+
+        event.exchange = exchange;
+        event.routingKey = routingKey;
+        event.requestSize = requestSize;
+        event.responseSize = responseSize;
+        event.waitTime = waitNanos;
+        event.outcome = outcome;
+        event.commit();
+    }
+
+    @Override
+    public Object beginProxy() {
+        if (!PROXY_EVENT_TYPE.isEnabled())
+            return null;
+
+        ProxyEvent event = new ProxyEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void commitProxy(Object token, String upstream, String route, String status) {
+        ProxyEvent event = (ProxyEvent) token;
+        event.end();
+        if (!event.shouldCommit())
+            return;
+
+        event.upstream = upstream;
+        event.route = route;
+        event.path = currentPath();
+        event.status = status;
+        event.commit();
+    }
+
+    private static String currentPath() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes instanceof ServletRequestAttributes ? ((ServletRequestAttributes) attributes).getRequest().getRequestURI() : null;
+    }
+}
@@ -0,0 +1,29 @@
+package eu.h2020.symbiote.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event of a request proxied to AAM, ADM or BTM. Emitted through {@link JfrEvents} only.
+ */
+@Name("eu.h2020.symbiote.Proxy")
+@Label("Proxied Request")
+@Category({"symbIoTe", "Core Interface"})
+@Description("Request proxied to an upstream service, including time spent waiting in its bulkhead")
+@StackTrace(false)
+class ProxyEvent extends jdk.jfr.Event {
+    @Label("Upstream")
+    String upstream;
+
+    @Label("Route")
+    String route;
+
+    @Label("Path")
+    String path;
+
+    @Label("Status")
+    String status;
+}
@@ -0,0 +1,42 @@
+package eu.h2020.symbiote.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event of an RPC call sent through the broker by {@link eu.h2020.symbiote.communication.RabbitManager}.
+ * Emitted through {@link JfrEvents} only.
+ */
+@Name("eu.h2020.symbiote.Rpc")
+@Label("RPC Call")
+@Category({"symbIoTe", "Core Interface"})
+@Description("RPC call sent to a core service through the broker")
+@StackTrace(false)
+class RpcEvent extends jdk.jfr.Event {
+    @Label("Exchange")
+    String exchange;
+
+    @Label("Routing Key")
+    String routingKey;
+
+    @Label("Request Size")
+    @DataAmount
+    long requestSize;
+
+    @Label("Response Size")
+    @DataAmount
+    long responseSize;
+
+    @Label("Wait Time")
+    @Description("Time spent waiting for the reply")
+    @Timespan
+    long waitTime;
+
+    @Label("Outcome")
+    String outcome;
+}
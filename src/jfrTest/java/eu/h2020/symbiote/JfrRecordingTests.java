@@ -0,0 +1,102 @@
+package eu.h2020.symbiote;
+
+import eu.h2020.symbiote.communication.RpcMetrics;
+import eu.h2020.symbiote.diagnostics.JfrEvents;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Tests of events read back from a recording; built only by JDKs providing jdk.jfr, like the events themselves.
+ */
+public class JfrRecordingTests {
+    private static final String RPC_EVENT = "eu.h2020.symbiote.Rpc";
+    private static final String PROXY_EVENT = "eu.h2020.symbiote.Proxy";
+
+    @Before
+    public void setUp() {
+        assumeTrue(JfrEvents.isAvailable());
+    }
+
+    @Test
+    public void testCommitRpc_recorded() throws Exception {
+        List<RecordedEvent> events = record(RPC_EVENT, () -> {
+            Object token = JfrEvents.beginRpc();
+            JfrEvents.commitRpc(token, "symbIoTe.search", "symbIoTe.search.query", 120, 4096, 2500000, RpcMetrics.SUCCESS);
+        });
+
+        assertEquals(1, events.size());
+        RecordedEvent event = events.get(0);
+        assertEquals("symbIoTe.search", event.getString("exchange"));
+        assertEquals("symbIoTe.search.query", event.getString("routingKey"));
+        assertEquals(120, event.getLong("requestSize"));
+        assertEquals(4096, event.getLong("responseSize"));
+        assertEquals(2500000, event.getDuration("waitTime").toNanos());
+        assertEquals(RpcMetrics.SUCCESS, event.getString("outcome"));
+    }
+
+    @Test
+    public void testCommitProxy_recordedWithoutRequest() throws Exception {
+        List<RecordedEvent> events = record(PROXY_EVENT, () -> {
+            Object token = JfrEvents.beginProxy();
+            JfrEvents.commitProxy(token, "aam", "/get_available_aams", "200");
+        });
+
+        assertEquals(1, events.size());
+        RecordedEvent event = events.get(0);
+        assertEquals("aam", event.getString("upstream"));
+        assertEquals("/get_available_aams", event.getString("route"));
+        assertNull(event.getString("path"));
+        assertEquals("200", event.getString("status"));
+    }
+
+    @Test
+    public void testCommitRpc_disabled() throws Exception {
+        List<RecordedEvent> events = record(PROXY_EVENT, () -> {
+            Object token = JfrEvents.beginRpc();
+            JfrEvents.commitRpc(token, "symbIoTe.search", "symbIoTe.search.query", 120, 0, 0, RpcMetrics.TIMEOUT);
+        });
+
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void testBegin_noTokenWithoutRecording() {
+        assertNull(JfrEvents.beginRpc());
+        assertNull(JfrEvents.beginProxy());
+    }
+
+    /**
+     * Runs the action within a recording with only the given event enabled and returns all recorded events of Core
+     * Interface.
+     */
+    private static List<RecordedEvent> record(String enabledEvent, Runnable action) throws Exception {
+        Path file = Files.createTempFile("coreinterface", ".jfr");
+        try (Recording recording = new Recording()) {
+            // Recordings without settings enable events by default
+            recording.disable(RPC_EVENT);
+            recording.disable(PROXY_EVENT);
+            recording.enable(enabledEvent);
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file);
+
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> event.getEventType().getName().startsWith("eu.h2020.symbiote."))
+                    .collect(Collectors.toList());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
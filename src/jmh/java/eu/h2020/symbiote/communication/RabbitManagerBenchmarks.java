@@ -0,0 +1,74 @@
+package eu.h2020.symbiote.communication;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.h2020.symbiote.BenchmarkData;
+import eu.h2020.symbiote.core.ci.QueryResourceResult;
+import eu.h2020.symbiote.core.ci.QueryResponse;
+import eu.h2020.symbiote.core.internal.CoreQueryRequest;
+import eu.h2020.symbiote.core.internal.cram.ResourceUrlsRequest;
+import eu.h2020.symbiote.core.internal.cram.ResourceUrlsResponse;
+import eu.h2020.symbiote.security.communication.payloads.SecurityRequest;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmarks of request serialization and response parsing done by {@link RabbitManager} around every RPC.
+ * RPC itself is replaced by returning a prepared response, so no broker is needed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RabbitManagerBenchmarks {
+
+    @Param({"10", "100", "1000"})
+    private int resources;
+
+    private RabbitManager rabbitManager;
+    private CoreQueryRequest searchRequest;
+    private ResourceUrlsRequest resourceUrlsRequest;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        List<QueryResourceResult> found = BenchmarkData.resources(resources);
+        String searchResponse = mapper.writeValueAsString(new QueryResponse(200, "", found));
+        String resourceUrlsResponse = mapper.writeValueAsString(new ResourceUrlsResponse(200, "", BenchmarkData.resourceUrls(found)));
+        String resourceUrlsRequestType = ResourceUrlsRequest.class.getCanonicalName();
+
+        rabbitManager = new RabbitManager() {
+            @Override
+            public String sendRpcMessage(String exchangeName, String routingKey, String message, String classType) {
+                return resourceUrlsRequestType.equals(classType) ? resourceUrlsResponse : searchResponse;
+            }
+        };
+
+        SecurityRequest securityRequest = new SecurityRequest(BenchmarkData.securityHeaders().toSingleValueMap());
+        searchRequest = new CoreQueryRequest();
+        searchRequest.setName("Sensor*");
+        searchRequest.setLocation_name("Poznan");
+        searchRequest.setObserved_property(Arrays.asList("temperature", "humidity"));
+        searchRequest.setShould_rank(true);
+        searchRequest.setSecurityRequest(securityRequest);
+
+        resourceUrlsRequest = new ResourceUrlsRequest();
+        resourceUrlsRequest.setBody(found.stream().map(QueryResourceResult::getId).collect(Collectors.toList()));
+        resourceUrlsRequest.setSecurityRequest(securityRequest);
+    }
+
+    @Benchmark
+    public QueryResponse sendSearchRequest() {
+        return rabbitManager.sendSearchRequest(searchRequest);
+    }
+
+    @Benchmark
+    public ResourceUrlsResponse sendResourceUrlsRequest() {
+        return rabbitManager.sendResourceUrlsRequest(resourceUrlsRequest);
+    }
+}
@@ -0,0 +1,69 @@
+package eu.h2020.symbiote.controllers;
+
+import eu.h2020.symbiote.BenchmarkData;
+import eu.h2020.symbiote.core.internal.CoreQueryRequest;
+import eu.h2020.symbiote.security.communication.payloads.SecurityRequest;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of request handling steps of {@link CoreInterfaceController} which don't depend on upstream services.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoreInterfaceControllerBenchmarks {
+    private static final String[] OBSERVED_PROPERTIES = {"air%20temperature", "relative%20humidity", "atmospheric%20pressure"};
+    private static final String[] OBSERVED_PROPERTY_IRIS = {"http%3A%2F%2Fpurl.oclc.org%2FNET%2Fssnx%2Fqu%2Fquantity%23temperature"};
+
+    private HttpHeaders securityHeaders;
+    private SecurityRequest securityRequest;
+    private HttpHeaders upstreamHeaders;
+
+    @Setup
+    public void setUp() throws Exception {
+        securityHeaders = BenchmarkData.securityHeaders();
+        securityRequest = new SecurityRequest(securityHeaders.toSingleValueMap());
+
+        upstreamHeaders = new HttpHeaders();
+        upstreamHeaders.setContentType(MediaType.APPLICATION_JSON_UTF8);
+        upstreamHeaders.set(HttpHeaders.TRANSFER_ENCODING, "chunked");
+        upstreamHeaders.set(HttpHeaders.DATE, "Mon, 01 Oct 2018 10:00:00 GMT");
+        upstreamHeaders.set(HttpHeaders.CACHE_CONTROL, "no-cache, no-store, max-age=0, must-revalidate");
+        upstreamHeaders.set(HttpHeaders.PRAGMA, "no-cache");
+        upstreamHeaders.set(HttpHeaders.EXPIRES, "0");
+        upstreamHeaders.set("X-Content-Type-Options", "nosniff");
+        upstreamHeaders.set("X-XSS-Protection", "1; mode=block");
+        upstreamHeaders.set("X-Frame-Options", "DENY");
+        upstreamHeaders.set("X-Application-Context", "AuthenticationAuthorizationManager:8443");
+    }
+
+    @Benchmark
+    public CoreQueryRequest toQueryRequest() {
+        String[] platformIds = CoreInterfaceController.toPlatformIds(null, new String[]{"platform1"});
+        return CoreInterfaceController.toQueryRequest(platformIds, null, null, null, "Sensor*", null, null,
+                null, "Poznan", null, 52.407193, null, 16.953494, null, 2000, null, OBSERVED_PROPERTIES,
+                null, OBSERVED_PROPERTY_IRIS, null, "StationarySensor", null, true, securityRequest);
+    }
+
+    @Benchmark
+    public String decodeUrlParameters() {
+        return CoreInterfaceController.decodeUrlParameters(OBSERVED_PROPERTY_IRIS[0]);
+    }
+
+    @Benchmark
+    public HttpHeaders stripTransferEncoding() {
+        return CoreInterfaceController.stripTransferEncoding(upstreamHeaders);
+    }
+
+    @Benchmark
+    public SecurityRequest securityRequest() throws Exception {
+        return new SecurityRequest(securityHeaders.toSingleValueMap());
+    }
+}
@@ -0,0 +1,194 @@
+package eu.h2020.symbiote.loadtest;
+
+import eu.h2020.symbiote.core.ci.QueryResourceResult;
+import eu.h2020.symbiote.core.ci.QueryResponse;
+import eu.h2020.symbiote.core.ci.SparqlQueryResponse;
+import eu.h2020.symbiote.core.internal.CoreQueryRequest;
+import eu.h2020.symbiote.core.internal.CoreSparqlQueryRequest;
+import eu.h2020.symbiote.core.internal.cram.ResourceUrlsRequest;
+import eu.h2020.symbiote.core.internal.cram.ResourceUrlsResponse;
+import eu.h2020.symbiote.model.cim.Property;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Simulated Registry and Core Resource Access Monitor holding a synthetic dataset in memory.
+ * <p>
+ * Resources are spread over platforms, observe one to three properties and are located around a few European cities.
+ * The dataset only depends on its size and seed, so that runs are comparable. Searches apply all filters of
+ * {@link CoreQueryRequest}: text fields match case-insensitively on a substring, IDs exactly and location within
+ * {@code max_distance} meters.
+ */
+public class CoreServicesSimulator {
+    private static final List<Property> PROPERTIES = Arrays.asList(
+            property("temperature", "Air temperature"),
+            property("humidity", "Relative humidity"),
+            property("atmosphericPressure", "Atmospheric pressure"),
+            property("windSpeed", "Wind speed"),
+            property("noise", "Noise level"),
+            property("carbonMonoxideConcentration", "CO concentration"),
+            property("nitrogenDioxideConcentration", "NO2 concentration"),
+            property("illuminance", "Illuminance"));
+    private static final List<String> RESOURCE_TYPES = Arrays.asList(
+            "http://www.symbiote-h2020.eu/ontology/core#StationarySensor",
+            "http://www.symbiote-h2020.eu/ontology/core#MobileSensor",
+            "http://www.symbiote-h2020.eu/ontology/core#Actuator",
+            "http://www.symbiote-h2020.eu/ontology/core#Service");
+    private static final String[] CITIES = {"Poznan", "Zagreb", "Vienna", "Athens", "Novi Sad"};
+    private static final double[][] CITY_LOCATIONS = {{52.4064, 16.9252}, {45.8150, 15.9819}, {48.2082, 16.3738}, {37.9838, 23.7275}, {45.2671, 19.8335}};
+    private static final double EARTH_RADIUS = 6371000;
+
+    private final List<QueryResourceResult> resources;
+    private final Map<String, String> urls;
+    private final int maxResults;
+
+    /**
+     * Generates the dataset.
+     *
+     * @param resourceCount   number of resources
+     * @param platformCount   number of platforms the resources are spread over
+     * @param descriptionSize length of resource descriptions in characters, used to tune size of replies; 0 for short
+     *                        descriptions
+     * @param maxResults      maximal number of resources returned by a single search, 0 for no limit
+     * @param seed            seed of the generator
+     */
+    public CoreServicesSimulator(int resourceCount, int platformCount, int descriptionSize, int maxResults, long seed) {
+        Random random = new Random(seed);
+        this.maxResults = maxResults;
+        this.resources = new ArrayList<>(resourceCount);
+        this.urls = new HashMap<>(resourceCount * 2);
+
+        for (int i = 0; i < resourceCount; i++) {
+            int platform = i % platformCount;
+            int city = random.nextInt(CITIES.length);
+            List<Property> properties = new ArrayList<>(PROPERTIES);
+            Collections.shuffle(properties, random);
+
+            QueryResourceResult resource = new QueryResourceResult();
+            resource.setId(String.format("5a1e9b3c4f0c7d2e%08x", i));
+            resource.setName(properties.get(0).getName() + " sensor " + i);
+            resource.setDescription(description(i, descriptionSize));
+            resource.setPlatformId("platform" + platform);
+            resource.setPlatformName("Platform " + platform);
+            resource.setOwner("Owner " + platform);
+            resource.setLocationName(CITIES[city]);
+            resource.setLocationLatitude(CITY_LOCATIONS[city][0] + (random.nextDouble() - 0.5) * 0.2);
+            resource.setLocationLongitude(CITY_LOCATIONS[city][1] + (random.nextDouble() - 0.5) * 0.2);
+            resource.setLocationAltitude(100 * random.nextDouble());
+            resource.setObservedProperties(new ArrayList<>(properties.subList(0, 1 + random.nextInt(3))));
+            resource.setResourceType(Collections.singletonList(RESOURCE_TYPES.get(random.nextInt(RESOURCE_TYPES.size()))));
+            resources.add(resource);
+            urls.put(resource.getId(), "https://" + resource.getPlatformId() + ".example.com/rap/Sensors('" + resource.getId() + "')");
+        }
+    }
+
+    /**
+     * @return all simulated resources
+     */
+    public List<QueryResourceResult> getResources() {
+        return Collections.unmodifiableList(resources);
+    }
+
+    /**
+     * @param request search request
+     * @return resources matching all filters of the request
+     */
+    public QueryResponse search(CoreQueryRequest request) {
+        List<QueryResourceResult> found = resources.stream()
+                .filter(resource -> matches(request, resource))
+                .limit(maxResults > 0 ? maxResults : Long.MAX_VALUE)
+                .collect(Collectors.toList());
+        return new QueryResponse(200, "", found);
+    }
+
+    /**
+     * SPARQL queries are not evaluated, each returns IDs and names of all resources (up to the maximal number
+     * of results) as a CSV table.
+     *
+     * @param request SPARQL search request
+     * @return CSV table of resources
+     */
+    public SparqlQueryResponse sparqlSearch(CoreSparqlQueryRequest request) {
+        StringBuilder body = new StringBuilder("resource,name\n");
+        resources.stream()
+                .limit(maxResults > 0 ? maxResults : Long.MAX_VALUE)
+                .forEach(resource -> body.append(resource.getId()).append(',').append(resource.getName()).append('\n'));
+        return new SparqlQueryResponse(200, "", body.toString());
+    }
+
+    /**
+     * @param request resource URLs request
+     * @return URLs of known resources, unknown IDs are omitted
+     */
+    public ResourceUrlsResponse resourceUrls(ResourceUrlsRequest request) {
+        Map<String, String> found = new LinkedHashMap<>();
+        if (request.getBody() != null)
+            for (String id : request.getBody())
+                if (urls.containsKey(id))
+                    found.put(id, urls.get(id));
+        return new ResourceUrlsResponse(200, "", found);
+    }
+
+    private static boolean matches(CoreQueryRequest request, QueryResourceResult resource) {
+        return equal(request.getId(), resource.getId())
+                && equal(request.getPlatform_id(), resource.getPlatformId())
+                && contains(request.getPlatform_name(), resource.getPlatformName())
+                && contains(request.getOwner(), resource.getOwner())
+                && contains(request.getName(), resource.getName())
+                && contains(request.getDescription(), resource.getDescription())
+                && contains(request.getLocation_name(), resource.getLocationName())
+                && (request.getResource_type() == null || resource.getResourceType().contains(request.getResource_type()))
+                && observes(request.getObserved_property(), resource, Property::getName)
+                && observes(request.getObserved_property_iri(), resource, Property::getIri)
+                && near(request, resource);
+    }
+
+    private static boolean equal(String filter, String value) {
+        return filter == null || filter.equals(value);
+    }
+
+    private static boolean contains(String filter, String value) {
+        return filter == null || value != null && value.toLowerCase().contains(filter.toLowerCase());
+    }
+
+    private static boolean observes(List<String> filter, QueryResourceResult resource, Function<Property, String> attribute) {
+        if (filter == null || filter.isEmpty())
+            return true;
+        List<String> observed = resource.getObservedProperties().stream().map(attribute).collect(Collectors.toList());
+        return observed.containsAll(filter);
+    }
+
+    private static boolean near(CoreQueryRequest request, QueryResourceResult resource) {
+        if (request.getLocation_lat() == null || request.getLocation_long() == null || request.getMax_distance() == null)
+            return true;
+        double lat1 = Math.toRadians(request.getLocation_lat());
+        double lat2 = Math.toRadians(resource.getLocationLatitude());
+        double dLat = lat2 - lat1;
+        double dLong = Math.toRadians(resource.getLocationLongitude() - request.getLocation_long());
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) + Math.cos(lat1) * Math.cos(lat2) * Math.sin(dLong / 2) * Math.sin(dLong / 2);
+        return 2 * EARTH_RADIUS * Math.asin(Math.sqrt(a)) <= request.getMax_distance();
+    }
+
+    private static String description(int index, int size) {
+        StringBuilder description = new StringBuilder("Simulated resource " + index);
+        if (size <= 0)
+            return description.toString();
+        while (description.length() < size)
+            description.append(" lorem ipsum");
+        description.setLength(size);
+        return description.toString();
+    }
+
+    private static Property property(String name, String description) {
+        return new Property(name, "http://purl.oclc.org/NET/ssnx/qu/quantity#" + name, Collections.singletonList(description));
+    }
+}
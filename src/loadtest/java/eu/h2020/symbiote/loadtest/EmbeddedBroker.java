@@ -0,0 +1,46 @@
+package eu.h2020.symbiote.loadtest;
+
+import org.apache.qpid.server.SystemLauncher;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-process AMQP 0-9-1 broker (Apache Qpid Broker-J) keeping all queues in memory, used instead of RabbitMQ.
+ * <p>
+ * Broker accepts user guest with password guest on all interfaces; see qpid-config.json.
+ */
+public class EmbeddedBroker implements AutoCloseable {
+    private static final String INITIAL_CONFIGURATION = "/qpid-config.json";
+
+    private final SystemLauncher launcher = new SystemLauncher();
+
+    /**
+     * Starts the broker.
+     *
+     * @param port AMQP port to listen on
+     * @throws Exception when the broker fails to start
+     */
+    public EmbeddedBroker(int port) throws Exception {
+        Path workDir = Files.createTempDirectory("loadtest-broker");
+
+        Map<String, String> context = new HashMap<>();
+        context.put("qpid.amqp_port", String.valueOf(port));
+        context.put("qpid.work_dir", workDir.toString());
+        context.put("qpid.home_dir", workDir.toString());
+
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("type", "Memory");
+        attributes.put("initialConfigurationLocation", EmbeddedBroker.class.getResource(INITIAL_CONFIGURATION).toExternalForm());
+        attributes.put("startupLoggedToSystemOut", false);
+        attributes.put("context", context);
+        launcher.startup(attributes);
+    }
+
+    @Override
+    public void close() {
+        launcher.shutdown();
+    }
+}
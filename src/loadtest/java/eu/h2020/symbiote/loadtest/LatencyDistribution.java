@@ -0,0 +1,99 @@
+package eu.h2020.symbiote.loadtest;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Distribution of simulated service times in milliseconds, given in the form {@code type:parameters}:
+ * <ul>
+ * <li>{@code none} - no delay</li>
+ * <li>{@code fixed:10} - always 10 ms</li>
+ * <li>{@code uniform:5,50} - uniformly from 5 to 50 ms</li>
+ * <li>{@code exponential:20} - exponentially with mean of 20 ms</li>
+ * <li>{@code lognormal:20,200} - log-normally with median of 20 ms and 99th percentile of 200 ms, which resembles
+ * latencies of real services with a long tail</li>
+ * </ul>
+ */
+public abstract class LatencyDistribution {
+    private static final double Z_99 = 2.326348;
+
+    private final String spec;
+
+    private LatencyDistribution(String spec) {
+        this.spec = spec;
+    }
+
+    /**
+     * @param spec distribution in the form described above
+     * @return parsed distribution
+     * @throws IllegalArgumentException when the distribution is unknown or its parameters are invalid
+     */
+    public static LatencyDistribution parse(String spec) {
+        String[] parts = spec.trim().split(":", 2);
+        double[] parameters = parameters(spec, parts.length > 1 ? parts[1] : "");
+        switch (parts[0]) {
+            case "none":
+                return of(spec, parameters, 0, random -> 0);
+            case "fixed":
+                return of(spec, parameters, 1, random -> parameters[0]);
+            case "uniform":
+                return of(spec, parameters, 2, random -> parameters[0] + random.nextDouble() * (parameters[1] - parameters[0]));
+            case "exponential":
+                return of(spec, parameters, 1, random -> -parameters[0] * Math.log(1 - random.nextDouble()));
+            case "lognormal":
+                if (parameters.length == 2 && (parameters[0] <= 0 || parameters[1] < parameters[0]))
+                    throw new IllegalArgumentException("Latency distribution " + spec + " needs positive median not greater than 99th percentile");
+                double mu = Math.log(parameters.length > 0 ? parameters[0] : 1);
+                double sigma = parameters.length > 1 ? Math.log(parameters[1] / parameters[0]) / Z_99 : 0;
+                return of(spec, parameters, 2, random -> Math.exp(mu + sigma * random.nextGaussian()));
+            default:
+                throw new IllegalArgumentException("Unknown latency distribution " + spec);
+        }
+    }
+
+    /**
+     * @return next delay in milliseconds
+     */
+    public long sample() {
+        return Math.max(0, Math.round(sample(ThreadLocalRandom.current())));
+    }
+
+    protected abstract double sample(Random random);
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+
+    private static LatencyDistribution of(String spec, double[] parameters, int expected, Sampler sampler) {
+        if (parameters.length != expected)
+            throw new IllegalArgumentException("Latency distribution " + spec + " needs " + expected + " parameters");
+        for (double parameter : parameters)
+            if (parameter < 0)
+                throw new IllegalArgumentException("Parameters of latency distribution " + spec + " can't be negative");
+        return new LatencyDistribution(spec) {
+            @Override
+            protected double sample(Random random) {
+                return sampler.sample(random);
+            }
+        };
+    }
+
+    private static double[] parameters(String spec, String parameters) {
+        if (parameters.isEmpty())
+            return new double[0];
+        try {
+            String[] values = parameters.split(",");
+            double[] result = new double[values.length];
+            for (int i = 0; i < values.length; i++)
+                result[i] = Double.parseDouble(values[i].trim());
+            return result;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid parameters of latency distribution " + spec, e);
+        }
+    }
+
+    private interface Sampler {
+        double sample(Random random);
+    }
+}
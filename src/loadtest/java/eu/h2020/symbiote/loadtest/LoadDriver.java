@@ -0,0 +1,176 @@
+package eu.h2020.symbiote.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Closed-loop HTTP load generator: each of the given number of threads sends the next request as soon as the
+ * previous one completes.
+ * <p>
+ * Requests sent during the warmup are not measured. A request counts as an error when it fails or its status is
+ * not 2xx; latencies of errors are not recorded.
+ */
+public class LoadDriver implements AutoCloseable {
+    private static final long MAX_LATENCY = TimeUnit.MINUTES.toNanos(1);
+
+    private final CloseableHttpClient client;
+    private final int concurrency;
+
+    /**
+     * @param concurrency number of concurrently sent requests
+     */
+    public LoadDriver(int concurrency) {
+        this.concurrency = concurrency;
+        this.client = HttpClients.custom()
+                .setMaxConnTotal(concurrency)
+                .setMaxConnPerRoute(concurrency)
+                .disableContentCompression()
+                .build();
+    }
+
+    /**
+     * Runs the scenario.
+     *
+     * @param scenario name of the scenario, used in the report
+     * @param requests creates the n-th request of the scenario
+     * @param warmup   duration of the unmeasured warmup
+     * @param duration duration of the measurement
+     * @return measured throughput and latencies
+     * @throws InterruptedException when interrupted while waiting for the threads
+     */
+    public Result run(String scenario, IntFunction<HttpUriRequest> requests, Duration warmup, Duration duration) throws InterruptedException {
+        Recorder recorder = new Recorder(MAX_LATENCY, 3);
+        AtomicLong errors = new AtomicLong();
+        AtomicLong sequence = new AtomicLong();
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        List<Thread> threads = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            Thread thread = new Thread(() -> {
+                long now;
+                while ((now = System.nanoTime()) < end) {
+                    boolean measured = now >= measureFrom;
+                    HttpUriRequest request = requests.apply((int) sequence.getAndIncrement());
+                    boolean success = send(request);
+                    long latency = System.nanoTime() - now;
+                    if (!measured)
+                        continue;
+                    if (success)
+                        recorder.recordValue(Math.min(latency, MAX_LATENCY));
+                    else
+                        errors.incrementAndGet();
+                }
+            }, "loadtest-" + scenario + "-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        return new Result(scenario, recorder.getIntervalHistogram(), errors.get(), duration);
+    }
+
+    @Override
+    public void close() throws IOException {
+        client.close();
+    }
+
+    private boolean send(HttpUriRequest request) {
+        try {
+            HttpResponse response = client.execute(request);
+            EntityUtils.consume(response.getEntity());
+            int status = response.getStatusLine().getStatusCode();
+            return status >= 200 && status < 300;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Throughput and latency percentiles (in milliseconds) of a single scenario.
+     */
+    public static class Result {
+        private final String scenario;
+        private final long requests;
+        private final long errors;
+        private final double throughput;
+        private final double p50;
+        private final double p90;
+        private final double p99;
+        private final double p999;
+        private final double max;
+
+        Result(String scenario, Histogram histogram, long errors, Duration duration) {
+            this.scenario = scenario;
+            this.requests = histogram.getTotalCount();
+            this.errors = errors;
+            this.throughput = requests * 1000.0 / duration.toMillis();
+            this.p50 = millis(histogram.getValueAtPercentile(50));
+            this.p90 = millis(histogram.getValueAtPercentile(90));
+            this.p99 = millis(histogram.getValueAtPercentile(99));
+            this.p999 = millis(histogram.getValueAtPercentile(99.9));
+            this.max = millis(histogram.getMaxValue());
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1e6;
+        }
+
+        public String getScenario() {
+            return scenario;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public double getThroughput() {
+            return throughput;
+        }
+
+        public double getP50() {
+            return p50;
+        }
+
+        public double getP90() {
+            return p90;
+        }
+
+        public double getP99() {
+            return p99;
+        }
+
+        public double getP999() {
+            return p999;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-20s %10d %8d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f",
+                    scenario, requests, errors, throughput, p50, p90, p99, p999, max);
+        }
+    }
+}
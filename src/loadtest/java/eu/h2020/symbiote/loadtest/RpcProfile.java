@@ -0,0 +1,74 @@
+package eu.h2020.symbiote.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Simulated behaviour of a single RPC: service time, share of requests failing with an error reply and share of
+ * requests which are never answered, so that the caller times out.
+ */
+public class RpcProfile {
+    private final LatencyDistribution latency;
+    private final double errorRate;
+    private final double timeoutRate;
+
+    /**
+     * @param latency     distribution of service times
+     * @param errorRate   share of requests answered with an error, from 0 to 1
+     * @param timeoutRate share of requests never answered, from 0 to 1
+     */
+    public RpcProfile(LatencyDistribution latency, double errorRate, double timeoutRate) {
+        if (errorRate < 0 || timeoutRate < 0 || errorRate + timeoutRate > 1)
+            throw new IllegalArgumentException("Error and timeout rates must be from 0 to 1 and can't exceed 1 together");
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.timeoutRate = timeoutRate;
+    }
+
+    /**
+     * Reads profile of the RPC from system properties {@code loadtest.<rpc>.latency}, {@code loadtest.<rpc>.errorRate}
+     * and {@code loadtest.<rpc>.timeoutRate}; missing rates default to {@code loadtest.errorRate} and
+     * {@code loadtest.timeoutRate}, and those to 0.
+     *
+     * @param rpc            name of the RPC
+     * @param defaultLatency latency distribution used when none is configured
+     * @return profile of the RPC
+     */
+    public static RpcProfile fromSystemProperties(String rpc, String defaultLatency) {
+        String prefix = "loadtest." + rpc + ".";
+        return new RpcProfile(
+                LatencyDistribution.parse(System.getProperty(prefix + "latency", defaultLatency)),
+                Double.parseDouble(System.getProperty(prefix + "errorRate", System.getProperty("loadtest.errorRate", "0"))),
+                Double.parseDouble(System.getProperty(prefix + "timeoutRate", System.getProperty("loadtest.timeoutRate", "0"))));
+    }
+
+    /**
+     * Outcome of a single request.
+     */
+    public enum Outcome {
+        SUCCESS, ERROR, TIMEOUT
+    }
+
+    /**
+     * @return randomly chosen outcome of the next request
+     */
+    public Outcome nextOutcome() {
+        double value = ThreadLocalRandom.current().nextDouble();
+        if (value < timeoutRate)
+            return Outcome.TIMEOUT;
+        if (value < timeoutRate + errorRate)
+            return Outcome.ERROR;
+        return Outcome.SUCCESS;
+    }
+
+    /**
+     * @return service time of the next request in milliseconds
+     */
+    public long nextDelay() {
+        return latency.sample();
+    }
+
+    @Override
+    public String toString() {
+        return "latency " + latency + ", errors " + errorRate + ", timeouts " + timeoutRate;
+    }
+}
@@ -0,0 +1,162 @@
+package eu.h2020.symbiote.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+import eu.h2020.symbiote.core.ci.QueryResponse;
+import eu.h2020.symbiote.core.ci.SparqlQueryResponse;
+import eu.h2020.symbiote.core.internal.CoreQueryRequest;
+import eu.h2020.symbiote.core.internal.CoreSparqlQueryRequest;
+import eu.h2020.symbiote.core.internal.cram.ResourceUrlsRequest;
+import eu.h2020.symbiote.core.internal.cram.ResourceUrlsResponse;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Stub of Registry and Core Resource Access Monitor answering RPC requests sent by
+ * {@link eu.h2020.symbiote.communication.RabbitManager} from {@link CoreServicesSimulator}.
+ * <p>
+ * Each RPC behaves according to its {@link RpcProfile}: replies are delayed by the simulated service time without
+ * blocking the consumer, so that any number of requests can be in progress, and some requests may be answered
+ * with an error or not at all. Each routing key is served by several competing consumers, each on its own channel.
+ */
+public class StubCoreServices implements AutoCloseable {
+    private static Log log = LogFactory.getLog(StubCoreServices.class);
+
+    private static final int SIMULATED_ERROR_STATUS = 500;
+    private static final String SIMULATED_ERROR_MESSAGE = "Simulated failure";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Properties config;
+    private final CoreServicesSimulator simulator;
+    private final Connection connection;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Connects to the broker and starts consuming requests.
+     *
+     * @param port         AMQP port of the broker
+     * @param config       rabbit.* properties of Core Interface, used to declare the same exchanges and routing keys
+     * @param simulator    simulator computing the replies
+     * @param search       behaviour of search RPC
+     * @param sparqlSearch behaviour of SPARQL search RPC
+     * @param resourceUrls behaviour of resource URLs RPC
+     * @param consumers    number of concurrent consumers per routing key
+     * @throws IOException      when broker communication fails
+     * @throws TimeoutException when connection to the broker times out
+     */
+    public StubCoreServices(int port, Properties config, CoreServicesSimulator simulator,
+                            RpcProfile search, RpcProfile sparqlSearch, RpcProfile resourceUrls, int consumers) throws IOException, TimeoutException {
+        this.config = config;
+        this.simulator = simulator;
+        this.scheduler = Executors.newScheduledThreadPool(consumers);
+
+        ConnectionFactory factory = new ConnectionFactory();
+        factory.setHost(config.getProperty("rabbit.host"));
+        factory.setPort(port);
+        factory.setUsername(config.getProperty("rabbit.username"));
+        factory.setPassword(config.getProperty("rabbit.password"));
+        this.connection = factory.newConnection();
+
+        String resourceExchange = declareExchange("resource");
+        String cramExchange = declareExchange("cram");
+        for (int i = 0; i < consumers; i++) {
+            consume(resourceExchange, config.getProperty("rabbit.routingKey.resource.searchRequested"), search, this::search);
+            consume(resourceExchange, config.getProperty("rabbit.routingKey.resource.sparqlSearchRequested"), sparqlSearch, this::sparqlSearch);
+            consume(cramExchange, config.getProperty("rabbit.routingKey.cram.getResourceUrls"), resourceUrls, this::resourceUrls);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        connection.close();
+    }
+
+    private Object search(String request, boolean fail) throws IOException {
+        if (fail)
+            return new QueryResponse(SIMULATED_ERROR_STATUS, SIMULATED_ERROR_MESSAGE, null);
+        return simulator.search(mapper.readValue(request, CoreQueryRequest.class));
+    }
+
+    private Object sparqlSearch(String request, boolean fail) throws IOException {
+        if (fail)
+            return new SparqlQueryResponse(SIMULATED_ERROR_STATUS, SIMULATED_ERROR_MESSAGE, null);
+        return simulator.sparqlSearch(mapper.readValue(request, CoreSparqlQueryRequest.class));
+    }
+
+    private Object resourceUrls(String request, boolean fail) throws IOException {
+        if (fail)
+            return new ResourceUrlsResponse(SIMULATED_ERROR_STATUS, SIMULATED_ERROR_MESSAGE, null);
+        return simulator.resourceUrls(mapper.readValue(request, ResourceUrlsRequest.class));
+    }
+
+    private String declareExchange(String exchange) throws IOException {
+        String prefix = "rabbit.exchange." + exchange + ".";
+        String name = config.getProperty(prefix + "name");
+        try (Channel channel = connection.createChannel()) {
+            channel.exchangeDeclare(name,
+                    config.getProperty(prefix + "type"),
+                    Boolean.parseBoolean(config.getProperty(prefix + "durable")),
+                    Boolean.parseBoolean(config.getProperty(prefix + "autodelete")),
+                    Boolean.parseBoolean(config.getProperty(prefix + "internal")),
+                    null);
+        } catch (TimeoutException e) {
+            throw new IOException(e);
+        }
+        return name;
+    }
+
+    private void consume(String exchange, String routingKey, RpcProfile profile, Handler handler) throws IOException {
+        Channel channel = connection.createChannel();
+        String queue = "loadtest." + routingKey;
+        channel.queueDeclare(queue, false, false, true, null);
+        channel.queueBind(queue, exchange, routingKey);
+        channel.basicConsume(queue, true, new DefaultConsumer(channel) {
+            @Override
+            public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) throws IOException {
+                RpcProfile.Outcome outcome = profile.nextOutcome();
+                if (outcome == RpcProfile.Outcome.TIMEOUT)
+                    return;
+
+                byte[] reply;
+                try {
+                    reply = mapper.writeValueAsBytes(handler.handle(new String(body, "UTF-8"), outcome == RpcProfile.Outcome.ERROR));
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Failed to handle request sent to " + routingKey, e);
+                    return;
+                }
+                AMQP.BasicProperties replyProperties = new AMQP.BasicProperties.Builder()
+                        .correlationId(properties.getCorrelationId())
+                        .build();
+                scheduler.schedule(() -> publish(getChannel(), properties.getReplyTo(), replyProperties, reply),
+                        profile.nextDelay(), TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    private void publish(Channel channel, String replyTo, AMQP.BasicProperties properties, byte[] reply) {
+        try {
+            synchronized (channel) {
+                channel.basicPublish("", replyTo, properties, reply);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to send reply to " + replyTo, e);
+        }
+    }
+
+    private interface Handler {
+        Object handle(String request, boolean fail) throws IOException;
+    }
+}
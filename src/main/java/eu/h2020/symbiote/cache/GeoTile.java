@@ -0,0 +1,136 @@
+package eu.h2020.symbiote.cache;
+
+import eu.h2020.symbiote.core.ci.QueryResourceResult;
+import eu.h2020.symbiote.core.ci.QueryResponse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Search results of one geographic tile, indexed by latitude.
+ * <p>
+ * Locations are kept in parallel arrays sorted by latitude, so that a point-radius query only computes exact
+ * distances of resources within the latitude band of the circle.
+ */
+class GeoTile {
+    private static final double EARTH_RADIUS = 6371008.8;
+    private static final double METERS_PER_DEGREE = Math.PI * EARTH_RADIUS / 180;
+
+    private final QueryResponse response;
+    private final double centerLatitude;
+    private final double centerLongitude;
+    private final double radius;
+    private final long expiresAt;
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final int[] positions;
+
+    /**
+     * @param response        search response for the whole tile
+     * @param centerLatitude  latitude of the point the tile was searched around
+     * @param centerLongitude longitude of the point the tile was searched around
+     * @param radius          distance in meters the tile was searched within
+     * @param expiresAt       time after which the tile must not be used
+     */
+    GeoTile(QueryResponse response, double centerLatitude, double centerLongitude, double radius, long expiresAt) {
+        this.response = response;
+        this.centerLatitude = centerLatitude;
+        this.centerLongitude = centerLongitude;
+        this.radius = radius;
+        this.expiresAt = expiresAt;
+
+        List<QueryResourceResult> resources = response.getBody();
+        Integer[] located = new Integer[resources.size()];
+        int count = 0;
+        for (int i = 0; i < resources.size(); i++) {
+            QueryResourceResult resource = resources.get(i);
+            if (resource.getLocationLatitude() != null && resource.getLocationLongitude() != null)
+                located[count++] = i;
+        }
+        located = Arrays.copyOf(located, count);
+        Arrays.sort(located, Comparator.comparingDouble(i -> resources.get(i).getLocationLatitude()));
+
+        this.latitudes = new double[count];
+        this.longitudes = new double[count];
+        this.positions = new int[count];
+        for (int i = 0; i < count; i++) {
+            QueryResourceResult resource = resources.get(located[i]);
+            latitudes[i] = resource.getLocationLatitude();
+            longitudes[i] = resource.getLocationLongitude();
+            positions[i] = located[i];
+        }
+    }
+
+    /**
+     * @param now current time
+     * @return whether the tile is still valid
+     */
+    boolean isValid(long now) {
+        return expiresAt > now;
+    }
+
+    /**
+     * @param latitude    latitude of the query point
+     * @param longitude   longitude of the query point
+     * @param maxDistance query radius in meters
+     * @return whether the query circle lies entirely within the area the tile was searched for
+     */
+    boolean covers(double latitude, double longitude, double maxDistance) {
+        return distance(centerLatitude, centerLongitude, latitude, longitude) + maxDistance <= radius;
+    }
+
+    /**
+     * Finds resources within the given distance from the point, in the order returned for the whole tile.
+     *
+     * @param latitude        latitude of the query point
+     * @param longitude       longitude of the query point
+     * @param maxDistance     query radius in meters
+     * @param serviceResponse service response for this query
+     * @return response with the found resources only
+     */
+    QueryResponse search(double latitude, double longitude, double maxDistance, String serviceResponse) {
+        double band = maxDistance / METERS_PER_DEGREE;
+        List<Integer> found = new ArrayList<>();
+        for (int i = lowerBound(latitude - band); i < latitudes.length && latitudes[i] <= latitude + band; i++) {
+            if (distance(latitude, longitude, latitudes[i], longitudes[i]) <= maxDistance)
+                found.add(positions[i]);
+        }
+        found.sort(null);
+
+        List<QueryResourceResult> resources = new ArrayList<>(found.size());
+        for (int position : found)
+            resources.add(response.getBody().get(position));
+
+        QueryResponse result = new QueryResponse(response.getStatus(), response.getMessage(), resources);
+        result.setServiceResponse(serviceResponse);
+        return result;
+    }
+
+    private int lowerBound(double latitude) {
+        int low = 0;
+        int high = latitudes.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (latitudes[middle] < latitude)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * @return great-circle distance in meters between the points, computed with the haversine formula
+     */
+    static double distance(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double deltaLatitude = Math.toRadians(latitude2 - latitude1);
+        double deltaLongitude = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(deltaLatitude / 2) * Math.sin(deltaLatitude / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+                * Math.sin(deltaLongitude / 2) * Math.sin(deltaLongitude / 2);
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
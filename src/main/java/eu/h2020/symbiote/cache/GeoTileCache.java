@@ -0,0 +1,242 @@
+package eu.h2020.symbiote.cache;
+
+import eu.h2020.symbiote.core.ci.QueryResponse;
+import eu.h2020.symbiote.core.internal.CoreQueryRequest;
+import eu.h2020.symbiote.utils.CoreQueryRequests;
+import eu.h2020.symbiote.utils.CredentialsDigests;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Cache answering point-radius searches from results of the geographic tile the point lies in.
+ * <p>
+ * The world is divided into tiles of symbiote.geoCache.tileSize degrees. The first location query within a tile
+ * searches the Registry around the tile center with a radius covering the whole tile plus
+ * symbiote.geoCache.maxDistance meters; later queries with a point in the same tile and radius up to maxDistance are
+ * answered by filtering these results with exact distances. Only queries whose other parameters and tokens are
+ * equal share a tile; ranked queries, queries with larger radius and queries without location are always sent to the
+ * Registry.
+ * <p>
+ * Service responses are never shared: the Registry has to authorize every requester, so a query answered from a tile
+ * is still sent to the Registry with zero radius, and the cached results are returned with the service response of
+ * that cheap query. If the Registry rejects it, its response is returned instead.
+ * <p>
+ * When created with the no-argument constructor (e.g. in unit tests) the cache is disabled.
+ */
+@Component
+public class GeoTileCache {
+    private static Log log = LogFactory.getLog(GeoTileCache.class);
+
+    public static final String REQUESTS_METRIC = "coreinterface.geocache.requests";
+
+    @Value("${symbiote.geoCache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${symbiote.geoCache.tileSize:0.1}")
+    private double tileSize;
+
+    @Value("${symbiote.geoCache.maxDistance:5000}")
+    private int maxDistance;
+
+    @Value("${symbiote.geoCache.ttl:60000}")
+    private long ttl;
+
+    @Value("${symbiote.geoCache.maxTiles:1000}")
+    private int maxTiles;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, CompletableFuture<GeoTile>> tiles = new LinkedHashMap<String, CompletableFuture<GeoTile>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<GeoTile>> eldest) {
+            return size() > maxTiles;
+        }
+    };
+
+    /**
+     * Creates disabled cache.
+     */
+    public GeoTileCache() {
+        this.meterRegistry = null;
+    }
+
+    /**
+     * Class constructor which autowires MeterRegistry bean, used to expose cache hits.
+     *
+     * @param meterRegistry MeterRegistry bean
+     */
+    @Autowired
+    public GeoTileCache(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Method used to override cache parameters.
+     * Used ONLY for unit testing.
+     *
+     * @param tileSize    size of a tile in degrees
+     * @param maxDistance maximal query radius in meters answered from the cache
+     * @param ttl         time in milliseconds tiles are cached for
+     * @param maxTiles    maximal number of cached tiles
+     */
+    public void setTestParameters(double tileSize, int maxDistance, long ttl, int maxTiles) {
+        this.enabled = true;
+        this.tileSize = tileSize;
+        this.maxDistance = maxDistance;
+        this.ttl = ttl;
+        this.maxTiles = maxTiles;
+        synchronized (tiles) {
+            tiles.clear();
+        }
+    }
+
+    /**
+     * Answers the search from the cached tile if possible, otherwise sends it to the Registry.
+     *
+     * @param queryRequest search query
+     * @param registry     function sending a query to the Registry
+     * @return search response
+     */
+    public QueryResponse search(CoreQueryRequest queryRequest, Function<CoreQueryRequest, QueryResponse> registry) {
+        if (!isApplicable(queryRequest)) {
+            count("bypass");
+            return registry.apply(queryRequest);
+        }
+
+        double latitude = queryRequest.getLocation_lat();
+        double longitude = queryRequest.getLocation_long();
+        long row = (long) Math.floor(latitude / tileSize);
+        long column = (long) Math.floor(longitude / tileSize);
+        String key = row + ":" + column + ":" + CoreQueryRequests.hashWithoutLocation(queryRequest) + ":"
+                + CredentialsDigests.tokensDigest(queryRequest.getSecurityRequest());
+
+        CompletableFuture<GeoTile> future;
+        boolean loader = false;
+        long now = System.currentTimeMillis();
+        synchronized (tiles) {
+            future = tiles.get(key);
+            GeoTile cached = future != null ? future.getNow(null) : null;
+            if (future == null || (future.isDone() && (cached == null || !cached.isValid(now)))) {
+                future = new CompletableFuture<>();
+                tiles.put(key, future);
+                loader = true;
+            }
+        }
+
+        QueryResponse authorization = null;
+        if (loader) {
+            authorization = loadTile(queryRequest, registry, row, column, key, future);
+            if (future.getNow(null) == null)
+                return authorization;
+        }
+
+        GeoTile tile;
+        try {
+            tile = future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw e;
+        }
+        if (tile == null || !tile.covers(latitude, longitude, queryRequest.getMax_distance())) {
+            count("bypass");
+            return registry.apply(queryRequest);
+        }
+
+        if (!loader) {
+            authorization = authorize(queryRequest, registry);
+            if (!isSuccessful(authorization))
+                return authorization;
+        }
+
+        count(loader ? "miss" : "hit");
+        return tile.search(latitude, longitude, queryRequest.getMax_distance(), authorization.getServiceResponse());
+    }
+
+    /**
+     * @param queryRequest search query
+     * @return whether the query can be answered from the cache
+     */
+    public boolean isApplicable(CoreQueryRequest queryRequest) {
+        return enabled
+                && queryRequest.getLocation_lat() != null
+                && queryRequest.getLocation_long() != null
+                && queryRequest.getMax_distance() != null
+                && queryRequest.getMax_distance() <= maxDistance
+                && !Boolean.TRUE.equals(queryRequest.getShould_rank());
+    }
+
+    /**
+     * Searches the whole tile and completes the future with it. Failed responses are not cached; the future is then
+     * completed with null and the response is returned to the caller as it is. If the search throws, the future is
+     * completed exceptionally, so that requests waiting for the tile do not hang.
+     */
+    private QueryResponse loadTile(CoreQueryRequest queryRequest, Function<CoreQueryRequest, QueryResponse> registry,
+                                   long row, long column, String key, CompletableFuture<GeoTile> future) {
+        double centerLatitude = (row + 0.5) * tileSize;
+        double centerLongitude = (column + 0.5) * tileSize;
+        double halfDiagonal = Math.max(
+                GeoTile.distance(centerLatitude, centerLongitude, row * tileSize, column * tileSize),
+                GeoTile.distance(centerLatitude, centerLongitude, (row + 1) * tileSize, column * tileSize));
+        int radius = (int) Math.ceil(halfDiagonal) + maxDistance;
+
+        CoreQueryRequest tileQuery = CoreQueryRequests.copy(queryRequest);
+        tileQuery.setLocation_lat(centerLatitude);
+        tileQuery.setLocation_long(centerLongitude);
+        tileQuery.setMax_distance(radius);
+
+        try {
+            QueryResponse tileResponse = registry.apply(tileQuery);
+            if (!isSuccessful(tileResponse) || tileResponse.getBody() == null) {
+                discard(key, future);
+                future.complete(null);
+                return tileResponse;
+            }
+
+            log.debug("Cached " + tileResponse.getBody().size() + " resources of tile " + row + ":" + column);
+            future.complete(new GeoTile(tileResponse, centerLatitude, centerLongitude, radius, System.currentTimeMillis() + ttl));
+            return tileResponse;
+        } catch (Throwable t) {
+            discard(key, future);
+            future.completeExceptionally(t);
+            throw t;
+        }
+    }
+
+    /**
+     * Sends the query with zero radius to the Registry, which authorizes the requester and signs a service response
+     * for it.
+     */
+    private QueryResponse authorize(CoreQueryRequest queryRequest, Function<CoreQueryRequest, QueryResponse> registry) {
+        CoreQueryRequest authorizationQuery = CoreQueryRequests.copy(queryRequest);
+        authorizationQuery.setMax_distance(0);
+        return registry.apply(authorizationQuery);
+    }
+
+    private static boolean isSuccessful(QueryResponse response) {
+        return response != null && HttpStatus.valueOf(response.getStatus()).is2xxSuccessful();
+    }
+
+    private void discard(String key, CompletableFuture<GeoTile> future) {
+        synchronized (tiles) {
+            tiles.remove(key, future);
+        }
+    }
+
+    private void count(String outcome) {
+        if (meterRegistry != null)
+            meterRegistry.counter(REQUESTS_METRIC, "outcome", outcome).increment();
+    }
+}
@@ -0,0 +1,20 @@
+package eu.h2020.symbiote.communication;
+
+/**
+ * Thrown when a call to an upstream service is rejected because its bulkhead has no free thread or queue slot.
+ */
+public class BulkheadFullException extends RuntimeException {
+    private final UpstreamService upstream;
+
+    /**
+     * @param upstream upstream service whose bulkhead is saturated
+     */
+    public BulkheadFullException(UpstreamService upstream) {
+        super("Too many concurrent requests to " + upstream + ", please try again later");
+        this.upstream = upstream;
+    }
+
+    public UpstreamService getUpstream() {
+        return upstream;
+    }
+}
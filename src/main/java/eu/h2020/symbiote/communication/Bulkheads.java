@@ -0,0 +1,319 @@
+package eu.h2020.symbiote.communication;
+
+import eu.h2020.symbiote.diagnostics.RequestTimings;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.sleuth.Tracer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.SocketTimeoutException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Class isolating calls to each upstream service in its own bounded thread pool.
+ * <p>
+ * Every upstream (see {@link UpstreamService}) gets a fixed number of threads and a bounded queue. When both are
+ * exhausted, further calls to that upstream fail fast with {@link BulkheadFullException}, so a slow upstream can
+ * occupy at most its own pool instead of every Tomcat worker.
+ * <p>
+ * When created with Tracer, the current trace continues in the bulkhead thread, so that spans of upstream calls (e.g.
+ * RPC spans recorded by {@link RabbitManager}) belong to the request which made them. Likewise, phases recorded in the
+ * bulkhead thread are added to {@link RequestTimings} of the request.
+ * <p>
+ * Callers of {@link #execute(UpstreamService, Supplier)} wait for the result at most symbiote.bulkhead.timeout
+ * milliseconds (by default 5 seconds more than the RPC reply timeout, so that an RPC which times out is answered with
+ * its own timeout response rather than cut short by the bulkhead), after which the call is cancelled.
+ * <p>
+ * When created with the no-argument constructor (e.g. in unit tests) no pools exist and calls are executed on the
+ * calling thread.
+ */
+@Component
+public class Bulkheads {
+    private static Log log = LogFactory.getLog(Bulkheads.class);
+
+    public static final String ACTIVE_METRIC = "coreinterface.bulkhead.active";
+    public static final String QUEUED_METRIC = "coreinterface.bulkhead.queued";
+    public static final String UTILIZATION_METRIC = "coreinterface.bulkhead.utilization";
+    public static final String REJECTED_METRIC = "coreinterface.bulkhead.rejected";
+
+    @Value("${symbiote.bulkhead.timeout:#{${spring.rabbitmq.template.reply-timeout:60000} + 5000}}")
+    private long timeout = 65000;
+
+    @Value("${symbiote.bulkhead.aam.threads:20}")
+    private int aamThreads;
+
+    @Value("${symbiote.bulkhead.aam.queue:20}")
+    private int aamQueue;
+
+    @Value("${symbiote.bulkhead.adm.threads:10}")
+    private int admThreads;
+
+    @Value("${symbiote.bulkhead.adm.queue:10}")
+    private int admQueue;
+
+    @Value("${symbiote.bulkhead.btm.threads:10}")
+    private int btmThreads;
+
+    @Value("${symbiote.bulkhead.btm.queue:10}")
+    private int btmQueue;
+
+    @Value("${symbiote.bulkhead.registry.threads:40}")
+    private int registryThreads;
+
+    @Value("${symbiote.bulkhead.registry.queue:40}")
+    private int registryQueue;
+
+    @Value("${symbiote.bulkhead.cram.threads:40}")
+    private int cramThreads;
+
+    @Value("${symbiote.bulkhead.cram.queue:40}")
+    private int cramQueue;
+
+    private final MeterRegistry meterRegistry;
+    private final Tracer tracer;
+    private final Map<UpstreamService, ThreadPoolExecutor> executors = new EnumMap<>(UpstreamService.class);
+
+    /**
+     * Creates bulkheads executing all calls on the calling thread.
+     */
+    public Bulkheads() {
+        this(null, null);
+    }
+
+    /**
+     * Creates bulkheads exposing their utilization, but not propagating traces.
+     *
+     * @param meterRegistry MeterRegistry bean
+     */
+    public Bulkheads(MeterRegistry meterRegistry) {
+        this(meterRegistry, null);
+    }
+
+    /**
+     * Class constructor which autowires MeterRegistry bean, used to expose bulkheads utilization, and Tracer bean,
+     * used to continue traces in bulkhead threads.
+     *
+     * @param meterRegistry MeterRegistry bean
+     * @param tracer        Tracer bean
+     */
+    @Autowired
+    public Bulkheads(MeterRegistry meterRegistry, Tracer tracer) {
+        this.meterRegistry = meterRegistry;
+        this.tracer = tracer;
+    }
+
+    /**
+     * Method used to override pool sizes of all bulkheads.
+     * Used ONLY for unit testing.
+     *
+     * @param threads number of threads of each bulkhead
+     * @param queue   queue capacity of each bulkhead
+     */
+    public void setTestParameters(int threads, int queue) {
+        setTestParameters(threads, queue, timeout);
+    }
+
+    /**
+     * Method used to override pool sizes of all bulkheads and the time callers wait for results.
+     * Used ONLY for unit testing.
+     *
+     * @param threads number of threads of each bulkhead
+     * @param queue   queue capacity of each bulkhead
+     * @param timeout time in milliseconds callers wait for results
+     */
+    public void setTestParameters(int threads, int queue, long timeout) {
+        this.timeout = timeout;
+        this.aamThreads = this.admThreads = this.btmThreads = this.registryThreads = this.cramThreads = threads;
+        this.aamQueue = this.admQueue = this.btmQueue = this.registryQueue = this.cramQueue = queue;
+        init();
+    }
+
+    /**
+     * Method used to create thread pools of all bulkheads.
+     */
+    @PostConstruct
+    public void init() {
+        createExecutor(UpstreamService.AAM, aamThreads, aamQueue);
+        createExecutor(UpstreamService.ADM, admThreads, admQueue);
+        createExecutor(UpstreamService.BTM, btmThreads, btmQueue);
+        createExecutor(UpstreamService.REGISTRY, registryThreads, registryQueue);
+        createExecutor(UpstreamService.CRAM, cramThreads, cramQueue);
+    }
+
+    /**
+     * Cleanup method, used to stop threads of all bulkheads.
+     */
+    @PreDestroy
+    public void cleanup() {
+        executors.values().forEach(ThreadPoolExecutor::shutdownNow);
+    }
+
+    /**
+     * Executes the call in the bulkhead of given upstream and waits for its result.
+     * <p>
+     * Runtime exceptions thrown by the call are rethrown unchanged. A call which does not finish within the timeout is
+     * cancelled and reported as {@link ResourceAccessException} caused by {@link SocketTimeoutException}, i.e. the
+     * same way as a timed out HTTP call.
+     *
+     * @param upstream upstream service the call is made to
+     * @param call     call to execute
+     * @param <T>      type of the result
+     * @return result of the call
+     * @throws BulkheadFullException  when the bulkhead is saturated
+     * @throws ResourceAccessException when the call times out
+     */
+    public <T> T execute(UpstreamService upstream, Supplier<T> call) {
+        Future<T> future = submit(upstream, call);
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            log.warn("Call to " + upstream + " did not finish within " + timeout + " ms, cancelling it");
+            throw new ResourceAccessException("Timed out waiting for " + upstream,
+                    new SocketTimeoutException("No result within " + timeout + " ms"));
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + upstream, e);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * Submits the call to the bulkhead of given upstream without waiting for its result.
+     *
+     * @param upstream upstream service the call is made to
+     * @param call     call to execute
+     * @param <T>      type of the result
+     * @return future result of the call
+     * @throws BulkheadFullException when the bulkhead is saturated
+     */
+    public <T> Future<T> submit(UpstreamService upstream, Supplier<T> call) {
+        Callable<T> task = call::get;
+        ThreadPoolExecutor executor = executors.get(upstream);
+        if (executor == null) {
+            FutureTask<T> futureTask = new FutureTask<>(task);
+            futureTask.run();
+            return futureTask;
+        }
+
+        try {
+            return executor.submit(traced(task));
+        } catch (RejectedExecutionException e) {
+            throw rejected(upstream);
+        }
+    }
+
+    /**
+     * Submits the call to the bulkhead of given upstream, returning future which can be composed with further actions.
+     *
+     * @param upstream upstream service the call is made to
+     * @param call     call to execute
+     * @param <T>      type of the result
+     * @return future result of the call
+     * @throws BulkheadFullException when the bulkhead is saturated
+     */
+    public <T> CompletableFuture<T> submitAsync(UpstreamService upstream, Supplier<T> call) {
+        ThreadPoolExecutor executor = executors.get(upstream);
+        if (executor == null) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            try {
+                future.complete(call.get());
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+
+        try {
+            return CompletableFuture.supplyAsync(traced(call), executor);
+        } catch (RejectedExecutionException e) {
+            throw rejected(upstream);
+        }
+    }
+
+    /**
+     * @param upstream upstream service
+     * @return share of busy threads in the bulkhead of given upstream, 0 when calls are executed on the calling thread
+     */
+    public double getUtilization(UpstreamService upstream) {
+        ThreadPoolExecutor executor = executors.get(upstream);
+        return executor == null ? 0 : (double) executor.getActiveCount() / executor.getMaximumPoolSize();
+    }
+
+    private <T> Callable<T> traced(Callable<T> task) {
+        Callable<T> timed = RequestTimings.wrap(task);
+        return tracer == null ? timed : tracer.wrap(timed);
+    }
+
+    private <T> Supplier<T> traced(Supplier<T> call) {
+        Callable<T> callable = call::get;
+        Callable<T> task = traced(callable);
+        return () -> {
+            try {
+                return task.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    private void createExecutor(UpstreamService upstream, int threads, int queue) {
+        if (executors.containsKey(upstream))
+            executors.remove(upstream).shutdown();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        BlockingQueue<Runnable> workQueue = queue > 0 ? new ArrayBlockingQueue<>(queue) : new SynchronousQueue<>();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, workQueue,
+                runnable -> {
+                    Thread thread = new Thread(runnable, "bulkhead-" + upstream.getName() + "-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        executors.put(upstream, executor);
+
+        if (meterRegistry == null)
+            return;
+
+        Gauge.builder(ACTIVE_METRIC, executor, ThreadPoolExecutor::getActiveCount)
+                .tags("upstream", upstream.getName())
+                .register(meterRegistry);
+        Gauge.builder(QUEUED_METRIC, executor, e -> e.getQueue().size())
+                .tags("upstream", upstream.getName())
+                .register(meterRegistry);
+        Gauge.builder(UTILIZATION_METRIC, upstream, this::getUtilization)
+                .tags("upstream", upstream.getName())
+                .register(meterRegistry);
+    }
+
+    private BulkheadFullException rejected(UpstreamService upstream) {
+        log.warn("Bulkhead of " + upstream + " is saturated, rejecting call");
+        if (meterRegistry != null)
+            meterRegistry.counter(REJECTED_METRIC, "upstream", upstream.getName()).increment();
+        return new BulkheadFullException(upstream);
+    }
+
+    private RuntimeException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException)
+            return (RuntimeException) cause;
+        if (cause instanceof Error)
+            throw (Error) cause;
+        return new IllegalStateException(cause);
+    }
+}
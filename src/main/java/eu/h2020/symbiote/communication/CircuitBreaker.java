@@ -0,0 +1,141 @@
+package eu.h2020.symbiote.communication;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Circuit breaker guarding calls to a single upstream service.
+ * <p>
+ * Outcomes of the last {@code windowSize} calls are kept. Once at least {@code minimumCalls} were recorded and the
+ * share of failures reaches {@code failureRateThreshold} percent, the breaker opens and rejects all calls for
+ * {@code openDuration} milliseconds. Afterwards it lets {@code halfOpenCalls} probe calls through: if all of them
+ * succeed the breaker closes again, a single failure opens it for another {@code openDuration}.
+ */
+public class CircuitBreaker {
+    private static Log log = LogFactory.getLog(CircuitBreaker.class);
+
+    /**
+     * States of the circuit breaker.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final UpstreamService upstream;
+    private final double failureRateThreshold;
+    private final int minimumCalls;
+    private final long openDuration;
+    private final int halfOpenCalls;
+
+    private final boolean[] outcomes;
+    private int recorded;
+    private int position;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    /**
+     * @param upstream             upstream service guarded by the breaker
+     * @param windowSize           number of most recent calls the failure rate is computed from
+     * @param minimumCalls         minimal number of recorded calls before the breaker can open
+     * @param failureRateThreshold failure rate (in percent) at which the breaker opens
+     * @param openDuration         time in milliseconds the breaker stays open before probing the upstream
+     * @param halfOpenCalls        number of probe calls let through when half-open
+     */
+    public CircuitBreaker(UpstreamService upstream, int windowSize, int minimumCalls, double failureRateThreshold,
+                          long openDuration, int halfOpenCalls) {
+        this.upstream = upstream;
+        this.outcomes = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDuration = openDuration;
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    /**
+     * Checks whether a call may be sent to the upstream. Every permitted call must be followed by exactly one of
+     * {@link #onSuccess()}, {@link #onFailure()} or {@link #onIgnored()}.
+     *
+     * @return true if the call is permitted
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openDuration)
+                return false;
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesStarted >= halfOpenCalls)
+                return false;
+            probesStarted++;
+        }
+        return true;
+    }
+
+    /**
+     * Records a successful call.
+     */
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++probesSucceeded >= halfOpenCalls)
+                transitionTo(State.CLOSED);
+            return;
+        }
+        record(false);
+    }
+
+    /**
+     * Records a failed or timed out call.
+     */
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.OPEN);
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && recorded >= minimumCalls && failures * 100.0 / recorded >= failureRateThreshold)
+            transitionTo(State.OPEN);
+    }
+
+    /**
+     * Releases a permitted call whose outcome says nothing about the upstream health (e.g. rejected by bulkhead).
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN && probesStarted > probesSucceeded)
+            probesStarted--;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == outcomes.length) {
+            if (outcomes[position])
+                failures--;
+        } else {
+            recorded++;
+        }
+        outcomes[position] = failure;
+        if (failure)
+            failures++;
+        position = (position + 1) % outcomes.length;
+    }
+
+    private void transitionTo(State newState) {
+        log.info("Circuit breaker of " + upstream + " changed from " + state + " to " + newState);
+        state = newState;
+        probesStarted = 0;
+        probesSucceeded = 0;
+        if (newState == State.OPEN)
+            openedAt = System.currentTimeMillis();
+        if (newState == State.CLOSED) {
+            recorded = 0;
+            position = 0;
+            failures = 0;
+        }
+    }
+}
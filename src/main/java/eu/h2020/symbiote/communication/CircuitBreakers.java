@@ -0,0 +1,159 @@
+package eu.h2020.symbiote.communication;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import javax.annotation.PostConstruct;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Class holding {@link CircuitBreaker} of every upstream service.
+ * <p>
+ * A call counts as failed when it throws {@link HttpServerErrorException} or {@link ResourceAccessException} (I/O
+ * error or timeout), or when it returns null, which is how {@link RabbitManager} reports an RPC timeout. Client errors
+ * (4xx) are answers of a healthy upstream and count as successes, other exceptions (e.g. rejection by a full bulkhead)
+ * are not recorded at all.
+ * <p>
+ * When created with the no-argument constructor (e.g. in unit tests) breakers are disabled and all calls are
+ * permitted.
+ */
+@Component
+public class CircuitBreakers {
+    public static final String STATE_METRIC = "coreinterface.circuitbreaker.state";
+    public static final String REJECTED_METRIC = "coreinterface.circuitbreaker.rejected";
+
+    @Value("${symbiote.circuitBreaker.enabled:true}")
+    private boolean enabled;
+
+    @Value("${symbiote.circuitBreaker.windowSize:20}")
+    private int windowSize;
+
+    @Value("${symbiote.circuitBreaker.minimumCalls:10}")
+    private int minimumCalls;
+
+    @Value("${symbiote.circuitBreaker.failureRateThreshold:50}")
+    private double failureRateThreshold;
+
+    @Value("${symbiote.circuitBreaker.openDuration:30000}")
+    private long openDuration;
+
+    @Value("${symbiote.circuitBreaker.halfOpenCalls:3}")
+    private int halfOpenCalls;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<UpstreamService, CircuitBreaker> breakers = new EnumMap<>(UpstreamService.class);
+
+    /**
+     * Creates disabled circuit breakers, permitting all calls.
+     */
+    public CircuitBreakers() {
+        this.meterRegistry = null;
+    }
+
+    /**
+     * Class constructor which autowires MeterRegistry bean, used to expose breakers state.
+     *
+     * @param meterRegistry MeterRegistry bean
+     */
+    @Autowired
+    public CircuitBreakers(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Method used to override breaker parameters.
+     * Used ONLY for unit testing.
+     *
+     * @param windowSize           number of most recent calls the failure rate is computed from
+     * @param minimumCalls         minimal number of recorded calls before a breaker can open
+     * @param failureRateThreshold failure rate (in percent) at which a breaker opens
+     * @param openDuration         time in milliseconds a breaker stays open before probing the upstream
+     * @param halfOpenCalls        number of probe calls let through when half-open
+     */
+    public void setTestParameters(int windowSize, int minimumCalls, double failureRateThreshold, long openDuration, int halfOpenCalls) {
+        this.enabled = true;
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDuration = openDuration;
+        this.halfOpenCalls = halfOpenCalls;
+        init();
+    }
+
+    /**
+     * Method used to create breakers of all upstream services.
+     */
+    @PostConstruct
+    public void init() {
+        breakers.clear();
+        if (!enabled)
+            return;
+
+        for (UpstreamService upstream : UpstreamService.values()) {
+            CircuitBreaker breaker = new CircuitBreaker(upstream, windowSize, minimumCalls, failureRateThreshold, openDuration, halfOpenCalls);
+            breakers.put(upstream, breaker);
+
+            if (meterRegistry != null)
+                Gauge.builder(STATE_METRIC, breaker, b -> b.getState().ordinal())
+                        .tags("upstream", upstream.getName())
+                        .description("0 - closed, 1 - open, 2 - half-open")
+                        .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Executes the call if the breaker of given upstream permits it and records its outcome.
+     *
+     * @param upstream upstream service the call is made to
+     * @param call     call to execute
+     * @param <T>      type of the result
+     * @return result of the call
+     * @throws CircuitOpenException when the breaker is open
+     */
+    public <T> T execute(UpstreamService upstream, Supplier<T> call) {
+        CircuitBreaker breaker = breakers.get(upstream);
+        if (breaker == null)
+            return call.get();
+
+        if (!breaker.tryAcquire()) {
+            if (meterRegistry != null)
+                meterRegistry.counter(REJECTED_METRIC, "upstream", upstream.getName()).increment();
+            throw new CircuitOpenException(upstream);
+        }
+
+        try {
+            T result = call.get();
+            if (result == null)
+                breaker.onFailure();
+            else
+                breaker.onSuccess();
+            return result;
+        } catch (HttpServerErrorException | ResourceAccessException e) {
+            breaker.onFailure();
+            throw e;
+        } catch (HttpClientErrorException e) {
+            breaker.onSuccess();
+            throw e;
+        } catch (RuntimeException e) {
+            breaker.onIgnored();
+            throw e;
+        }
+    }
+
+    /**
+     * @param upstream upstream service
+     * @return current state of the breaker of given upstream, {@link CircuitBreaker.State#CLOSED} when disabled
+     */
+    public CircuitBreaker.State getState(UpstreamService upstream) {
+        CircuitBreaker breaker = breakers.get(upstream);
+        return breaker == null ? CircuitBreaker.State.CLOSED : breaker.getState();
+    }
+}
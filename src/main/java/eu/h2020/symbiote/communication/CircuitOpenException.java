@@ -0,0 +1,20 @@
+package eu.h2020.symbiote.communication;
+
+/**
+ * Thrown when a call to an upstream service is rejected because its circuit breaker is open.
+ */
+public class CircuitOpenException extends RuntimeException {
+    private final UpstreamService upstream;
+
+    /**
+     * @param upstream upstream service whose circuit breaker is open
+     */
+    public CircuitOpenException(UpstreamService upstream) {
+        super(upstream + " is currently unavailable, please try again later");
+        this.upstream = upstream;
+    }
+
+    public UpstreamService getUpstream() {
+        return upstream;
+    }
+}
@@ -0,0 +1,111 @@
+package eu.h2020.symbiote.communication;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Helper dispatching many independent calls concurrently.
+ * <p>
+ * At most {@code maxConcurrency} calls are in flight at once. Every outcome is reported to the listener on the calling
+ * thread as soon as the call completes, so the listener needs no synchronization and may e.g. write to the response
+ * stream. Calls which have not completed before the deadline are reported with {@link TimeoutException} and their
+ * futures are cancelled. Cancelling does not stop a call which is already running and waiting e.g. for an RPC reply,
+ * so dispatchers should bound such calls by the same deadline, see {@link RabbitManager#withDeadline}.
+ */
+public final class FanOut {
+
+    /**
+     * Listener notified about outcome of every call.
+     *
+     * @param <R> type of call results
+     */
+    @FunctionalInterface
+    public interface Listener<R> {
+        /**
+         * @param index  index of the call input
+         * @param result result of the call, null if it failed
+         * @param error  error thrown by the call (or {@link TimeoutException}), null if it succeeded
+         */
+        void onCompleted(int index, R result, Throwable error);
+    }
+
+    private FanOut() {
+    }
+
+    /**
+     * Dispatches the call for every input and waits until all of them complete or the deadline passes.
+     *
+     * @param inputs         call inputs
+     * @param dispatcher     function starting the call for given input
+     * @param maxConcurrency maximal number of calls in flight
+     * @param timeout        time in milliseconds to wait for all calls
+     * @param listener       listener notified about outcome of every call
+     * @param <T>            type of call inputs
+     * @param <R>            type of call results
+     * @throws InterruptedException when interrupted while waiting
+     */
+    public static <T, R> void execute(List<T> inputs, Function<T, CompletableFuture<R>> dispatcher, int maxConcurrency,
+                                      long timeout, Listener<R> listener) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        BlockingQueue<Completion<R>> completed = new LinkedBlockingQueue<>();
+        List<CompletableFuture<R>> futures = new ArrayList<>(inputs.size());
+        boolean[] reported = new boolean[inputs.size()];
+        int inFlight = 0;
+
+        try {
+            for (int received = 0; received < inputs.size(); received++) {
+                while (futures.size() < inputs.size() && inFlight < Math.max(1, maxConcurrency)) {
+                    int index = futures.size();
+                    futures.add(dispatch(dispatcher, inputs.get(index)));
+                    futures.get(index).whenComplete((result, error) -> completed.add(new Completion<>(index, result, error)));
+                    inFlight++;
+                }
+
+                long remaining = deadline - System.currentTimeMillis();
+                Completion<R> completion = remaining > 0 ? completed.poll(remaining, TimeUnit.MILLISECONDS) : completed.poll();
+                if (completion == null)
+                    break;
+
+                inFlight--;
+                reported[completion.index] = true;
+                listener.onCompleted(completion.index, completion.result, unwrap(completion.error));
+            }
+        } finally {
+            for (CompletableFuture<R> future : futures)
+                future.cancel(true);
+        }
+
+        for (int index = 0; index < inputs.size(); index++) {
+            if (!reported[index])
+                listener.onCompleted(index, null, new TimeoutException("Deadline of " + timeout + " ms exceeded"));
+        }
+    }
+
+    private static <T, R> CompletableFuture<R> dispatch(Function<T, CompletableFuture<R>> dispatcher, T input) {
+        try {
+            return dispatcher.apply(input);
+        } catch (RuntimeException e) {
+            CompletableFuture<R> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static class Completion<R> {
+        private final int index;
+        private final R result;
+        private final Throwable error;
+
+        private Completion(int index, R result, Throwable error) {
+            this.index = index;
+            this.result = result;
+            this.error = error;
+        }
+    }
+}
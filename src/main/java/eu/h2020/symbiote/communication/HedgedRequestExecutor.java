@@ -0,0 +1,187 @@
+package eu.h2020.symbiote.communication;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Class used to execute idempotent upstream reads with optional request hedging.
+ * <p>
+ * When hedging is enabled and the first attempt has not answered within the configured percentile of recently observed
+ * latencies, a second attempt is sent to an alternative instance. The first successful reply is returned and the
+ * other attempt is cancelled. Extra load is capped by a hedging budget: every request deposits
+ * {@code budgetPercent / 100} of a token and every hedge consumes a whole one.
+ * <p>
+ * All attempts are executed in the bulkhead of the contacted upstream; a hedge which does not fit into the bulkhead
+ * is simply not sent. Requests without a distinct alternative instance are never hedged, as a second attempt to the
+ * same instance would only double its load.
+ */
+@Component
+public class HedgedRequestExecutor {
+    private static Log log = LogFactory.getLog(HedgedRequestExecutor.class);
+
+    private static final int LATENCY_WINDOW = 256;
+    private static final double MAX_HEDGE_TOKENS = 10;
+
+    @Value("${symbiote.hedging.enabled:false}")
+    private boolean enabled;
+
+    @Value("${symbiote.hedging.percentile:95}")
+    private double percentile;
+
+    @Value("${symbiote.hedging.minDelay:20}")
+    private long minDelay;
+
+    @Value("${symbiote.hedging.budgetPercent:10}")
+    private double budgetPercent;
+
+    private final Bulkheads bulkheads;
+    private final LatencyTracker latencyTracker = new LatencyTracker(LATENCY_WINDOW);
+
+    private double hedgeTokens;
+
+    /**
+     * Creates executor with hedging disabled, executing requests on the calling thread.
+     */
+    public HedgedRequestExecutor() {
+        this(new Bulkheads());
+    }
+
+    /**
+     * Class constructor which autowires Bulkheads bean.
+     *
+     * @param bulkheads Bulkheads bean
+     */
+    @Autowired
+    public HedgedRequestExecutor(Bulkheads bulkheads) {
+        this.bulkheads = bulkheads;
+    }
+
+    /**
+     * Method used to override hedging parameters.
+     * Used ONLY for unit testing.
+     *
+     * @param enabled       whether hedging is enabled
+     * @param percentile    percentile of recent latencies after which the second attempt is sent
+     * @param minDelay      minimal delay in milliseconds before the second attempt is sent
+     * @param budgetPercent maximal share of requests (in percent) that may be hedged
+     */
+    public void setTestParameters(boolean enabled, double percentile, long minDelay, double budgetPercent) {
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelay = minDelay;
+        this.budgetPercent = budgetPercent;
+    }
+
+    /**
+     * Executes the request against the primary instance, hedging it to the alternative instance if enabled.
+     * <p>
+     * Exceptions thrown by the request (e.g. {@link org.springframework.web.client.HttpStatusCodeException}) are
+     * rethrown unchanged when no attempt succeeds.
+     *
+     * @param upstream   upstream service the request is sent to
+     * @param request    request to execute; receives base URL of the instance to contact
+     * @param primaryUrl base URL of the instance contacted first
+     * @param hedgeUrl   base URL of the instance contacted by the hedged attempt, empty or null if there is none
+     * @param <T>        type of the response
+     * @return response of the first successful attempt
+     */
+    public <T> T execute(UpstreamService upstream, Function<String, T> request, String primaryUrl, String hedgeUrl) {
+        if (!enabled || !canHedge(primaryUrl, hedgeUrl))
+            return bulkheads.execute(upstream, () -> request.apply(primaryUrl));
+
+        depositHedgeToken();
+        long in = System.currentTimeMillis();
+        BlockingQueue<Future<T>> completed = new LinkedBlockingQueue<>();
+        List<Future<T>> attempts = new ArrayList<>(2);
+        attempts.add(submit(upstream, () -> request.apply(primaryUrl), completed));
+
+        try {
+            long delay = hedgeDelay();
+            Future<T> done = delay < 0 ? completed.take() : completed.poll(delay, TimeUnit.MILLISECONDS);
+            if (done == null && tryAcquireHedgeToken()) {
+                log.debug("Hedging request to " + hedgeUrl + " after " + delay + " ms");
+                try {
+                    attempts.add(submit(upstream, () -> request.apply(hedgeUrl), completed));
+                } catch (BulkheadFullException e) {
+                    log.debug("No capacity left for hedged request to " + upstream);
+                }
+            }
+
+            RuntimeException failure = null;
+            for (int pending = attempts.size(); pending > 0; pending--) {
+                if (done == null)
+                    done = completed.take();
+                try {
+                    T result = done.get();
+                    latencyTracker.record(System.currentTimeMillis() - in);
+                    return result;
+                } catch (ExecutionException e) {
+                    if (failure == null)
+                        failure = unwrap(e);
+                }
+                done = null;
+            }
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for hedged request", e);
+        } finally {
+            for (Future<T> attempt : attempts)
+                attempt.cancel(true);
+        }
+    }
+
+    /**
+     * Submits the attempt to the bulkhead of the upstream and puts its future to the queue once it completes.
+     */
+    private <T> Future<T> submit(UpstreamService upstream, Supplier<T> attempt, BlockingQueue<Future<T>> completed) {
+        CompletableFuture<Future<T>> self = new CompletableFuture<>();
+        Future<T> future = bulkheads.submit(upstream, () -> {
+            try {
+                return attempt.get();
+            } finally {
+                self.thenAccept(completed::add);
+            }
+        });
+        self.complete(future);
+        return future;
+    }
+
+    private static boolean canHedge(String primaryUrl, String hedgeUrl) {
+        return hedgeUrl != null && !hedgeUrl.isEmpty() && !hedgeUrl.equals(primaryUrl);
+    }
+
+    private long hedgeDelay() {
+        long recent = latencyTracker.percentile(percentile);
+        return recent < 0 ? -1 : Math.max(minDelay, recent);
+    }
+
+    private synchronized void depositHedgeToken() {
+        hedgeTokens = Math.min(MAX_HEDGE_TOKENS, hedgeTokens + budgetPercent / 100.0);
+    }
+
+    private synchronized boolean tryAcquireHedgeToken() {
+        if (hedgeTokens < 1)
+            return false;
+        hedgeTokens -= 1;
+        return true;
+    }
+
+    private RuntimeException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException)
+            return (RuntimeException) cause;
+        if (cause instanceof Error)
+            throw (Error) cause;
+        return new IllegalStateException(cause);
+    }
+}
@@ -0,0 +1,54 @@
+package eu.h2020.symbiote.communication;
+
+import java.util.Arrays;
+
+/**
+ * Keeps a sliding window of the most recent latency samples and computes percentiles over it.
+ * <p>
+ * The window is a fixed size ring buffer, so memory usage does not depend on the request rate.
+ */
+public class LatencyTracker {
+    /**
+     * Minimal number of samples needed before percentiles are reported.
+     */
+    public static final int MIN_SAMPLES = 10;
+
+    private final long[] samples;
+    private int next;
+    private int count;
+
+    /**
+     * @param windowSize number of most recent samples taken into account
+     */
+    public LatencyTracker(int windowSize) {
+        this.samples = new long[windowSize];
+    }
+
+    /**
+     * Records single latency sample.
+     *
+     * @param millis observed latency in milliseconds
+     */
+    public synchronized void record(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        if (count < samples.length)
+            count++;
+    }
+
+    /**
+     * Computes given percentile of recorded latencies.
+     *
+     * @param percentile percentile to compute, in range (0, 100]
+     * @return latency in milliseconds, or -1 when less than {@link #MIN_SAMPLES} samples were recorded
+     */
+    public synchronized long percentile(double percentile) {
+        if (count < MIN_SAMPLES)
+            return -1;
+
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return sorted[Math.max(0, Math.min(index, count - 1))];
+    }
+}
@@ -0,0 +1,132 @@
+package eu.h2020.symbiote.communication;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Class used to log message payloads (e.g. bodies of RPC requests and responses) at INFO level.
+ * <p>
+ * Each category of payloads has its own logger named {@code eu.h2020.symbiote.payload.<category>}, so that categories
+ * can be switched off with logging.level properties. Only a share of payloads given by sampleRate is logged, each
+ * truncated to maxLength characters; both default to symbiote.logging.payloads.sampleRate and
+ * symbiote.logging.payloads.maxLength and can be overridden per category with
+ * symbiote.logging.payloads.rules.&lt;category&gt;.sampleRate and .maxLength. The payload is rendered only when it is
+ * going to be logged. Setting symbiote.logging.payloads.enabled to false (recommended in production) turns payload
+ * logging off completely.
+ * <p>
+ * When created with the no-argument constructor (e.g. in unit tests) every payload is logged, truncated to the
+ * default length.
+ */
+@Component
+public class PayloadLogger {
+    public static final String LOGGER_PREFIX = "eu.h2020.symbiote.payload.";
+    private static final String RULES_PREFIX = "symbiote.logging.payloads.rules.";
+
+    @Value("${symbiote.logging.payloads.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${symbiote.logging.payloads.sampleRate:1.0}")
+    private double sampleRate = 1.0;
+
+    @Value("${symbiote.logging.payloads.maxLength:400}")
+    private int maxLength = 400;
+
+    private final Environment environment;
+    private final Map<String, Rule> rules = new ConcurrentHashMap<>();
+
+    /**
+     * Creates logger logging all payloads with default truncation.
+     */
+    public PayloadLogger() {
+        this(null);
+    }
+
+    /**
+     * Class constructor which autowires Environment bean, used to read rules of payload categories.
+     *
+     * @param environment Environment bean
+     */
+    @Autowired
+    public PayloadLogger(Environment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * Method used to override logging parameters.
+     * Used ONLY for unit testing.
+     *
+     * @param enabled    whether payloads are logged
+     * @param sampleRate share of payloads logged, from 0 to 1
+     * @param maxLength  maximal number of logged characters of a payload
+     */
+    public void setTestParameters(boolean enabled, double sampleRate, int maxLength) {
+        this.enabled = enabled;
+        this.sampleRate = sampleRate;
+        this.maxLength = maxLength;
+        this.rules.clear();
+    }
+
+    /**
+     * Logs the payload if its category is enabled and it is sampled.
+     *
+     * @param category    category of the payload, e.g. "rpc.request"
+     * @param description description of the payload, e.g. "Sending RPC message to"
+     * @param subject     subject the description refers to, e.g. routing key
+     * @param payload     supplier of the payload, called only when the payload is logged
+     */
+    public void log(String category, String description, Object subject, Supplier<String> payload) {
+        if (!enabled)
+            return;
+
+        Rule rule = rules.computeIfAbsent(category, this::createRule);
+        if (!rule.log.isInfoEnabled() || rule.sampleRate <= 0
+                || rule.sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= rule.sampleRate)
+            return;
+
+        String value = payload.get();
+        if (value != null && value.length() > rule.maxLength)
+            value = value.substring(0, rule.maxLength) + " ... (" + value.length() + " characters)";
+        write(rule.log, description + " " + subject + ": " + value);
+    }
+
+    /**
+     * Writes the message to the log.
+     *
+     * @param log     logger of the payload category
+     * @param message message to write
+     */
+    protected void write(Log log, String message) {
+        log.info(message);
+    }
+
+    private Rule createRule(String category) {
+        double categorySampleRate = sampleRate;
+        int categoryMaxLength = maxLength;
+        if (environment != null) {
+            categorySampleRate = environment.getProperty(RULES_PREFIX + category + ".sampleRate", Double.class, sampleRate);
+            categoryMaxLength = environment.getProperty(RULES_PREFIX + category + ".maxLength", Integer.class, maxLength);
+        }
+        return new Rule(LogFactory.getLog(LOGGER_PREFIX + category), categorySampleRate, categoryMaxLength);
+    }
+
+    private static class Rule {
+        private final Log log;
+        private final double sampleRate;
+        private final int maxLength;
+
+        Rule(Log log, double sampleRate, int maxLength) {
+            this.log = log;
+            this.sampleRate = sampleRate;
+            this.maxLength = maxLength;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package eu.h2020.symbiote.communication;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.protocol.HttpContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Class recording metrics of requests proxied to AAM, ADM and BTM, tagged by upstream and by route (URI pattern of the
+ * Core Interface endpoint).
+ * <p>
+ * Recorded meters:
+ * <ul>
+ * <li>{@value #LATENCY_METRIC} - total time of the proxied call, including time spent waiting in the bulkhead, and
+ * {@value #RESPONSES_METRIC} - number of responses, both tagged also by status returned to the client</li>
+ * <li>{@value #CONNECT_METRIC} - time to open a new connection including TLS handshake, not recorded when a pooled
+ * connection is reused</li>
+ * <li>{@value #FIRST_BYTE_METRIC} - time from sending the request on an open connection to receiving response
+ * headers, i.e. time spent by the upstream</li>
+ * <li>{@value #TRANSFER_METRIC} - time from receiving response headers to reading the whole body</li>
+ * <li>{@value #BYTES_OUT_METRIC} and {@value #BYTES_IN_METRIC} - sizes of request and response bodies</li>
+ * </ul>
+ * Connection, first byte and transfer metrics are recorded only for requests executed within
+ * {@link #bind(UpstreamService, String, Supplier)}, which tells them the upstream and route.
+ * <p>
+ * When created with the no-argument constructor (e.g. in unit tests) nothing is recorded.
+ */
+@Component
+public class ProxyMetrics {
+    public static final String LATENCY_METRIC = "coreinterface.proxy.latency";
+    public static final String RESPONSES_METRIC = "coreinterface.proxy.responses";
+    public static final String CONNECT_METRIC = "coreinterface.proxy.connect";
+    public static final String FIRST_BYTE_METRIC = "coreinterface.proxy.firstByte";
+    public static final String TRANSFER_METRIC = "coreinterface.proxy.transfer";
+    public static final String BYTES_OUT_METRIC = "coreinterface.proxy.bytes.out";
+    public static final String BYTES_IN_METRIC = "coreinterface.proxy.bytes.in";
+
+    private static final String UNKNOWN_ROUTE = "unknown";
+
+    private final MeterRegistry meterRegistry;
+    private final ThreadLocal<Call> currentCall = new ThreadLocal<>();
+
+    /**
+     * Creates metrics which record nothing.
+     */
+    public ProxyMetrics() {
+        this(null);
+    }
+
+    /**
+     * Class constructor which autowires MeterRegistry bean.
+     *
+     * @param meterRegistry MeterRegistry bean
+     */
+    @Autowired
+    public ProxyMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Gets route of the request handled by the current thread.
+     *
+     * @return URI pattern of the endpoint handling the current request, "unknown" outside of request handling
+     */
+    public static String currentRoute() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        Object pattern = attributes != null ? attributes.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) : null;
+        return pattern != null ? pattern.toString() : UNKNOWN_ROUTE;
+    }
+
+    /**
+     * Wraps the request so that HTTP calls it executes record metrics tagged with given upstream and route. The
+     * returned supplier may be executed on any thread, e.g. in a bulkhead.
+     *
+     * @param upstream upstream service the request is sent to
+     * @param route    route of the proxying endpoint, see {@link #currentRoute()}
+     * @param request  request to execute
+     * @param <T>      type of the response
+     * @return wrapped request
+     */
+    public <T> Supplier<T> bind(UpstreamService upstream, String route, Supplier<T> request) {
+        return () -> {
+            Call previous = currentCall.get();
+            currentCall.set(new Call(upstream.getName(), route));
+            try {
+                return request.get();
+            } finally {
+                if (previous != null)
+                    currentCall.set(previous);
+                else
+                    currentCall.remove();
+            }
+        };
+    }
+
+    /**
+     * Records total time and status of the proxied call.
+     *
+     * @param upstream upstream service the request was sent to
+     * @param route    route of the proxying endpoint
+     * @param status   status code returned to the client, or a short description of the failure
+     * @param nanos    duration of the call in nanoseconds
+     */
+    public void record(UpstreamService upstream, String route, String status, long nanos) {
+        if (meterRegistry == null)
+            return;
+
+        Timer.builder(LATENCY_METRIC)
+                .tags("upstream", upstream.getName(), "route", route, "status", status)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        meterRegistry.counter(RESPONSES_METRIC, "upstream", upstream.getName(), "route", route, "status", status).increment();
+    }
+
+    /**
+     * @param status HTTP status
+     * @return value of status tag for the given HTTP status
+     */
+    public static String status(HttpStatus status) {
+        return String.valueOf(status.value());
+    }
+
+    /**
+     * Wraps socket factory of the proxy HTTP client so that connection times are recorded.
+     *
+     * @param socketFactory socket factory to wrap
+     * @return wrapped socket factory
+     */
+    public ConnectionSocketFactory timed(ConnectionSocketFactory socketFactory) {
+        return new ConnectionSocketFactory() {
+            @Override
+            public Socket createSocket(HttpContext context) throws IOException {
+                return socketFactory.createSocket(context);
+            }
+
+            @Override
+            public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+                                        InetSocketAddress localAddress, HttpContext context) throws IOException {
+                long start = System.nanoTime();
+                try {
+                    return socketFactory.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+                } finally {
+                    Call call = currentCall.get();
+                    if (meterRegistry != null && call != null) {
+                        call.connectNanos = System.nanoTime() - start;
+                        timer(CONNECT_METRIC, call).record(call.connectNanos, TimeUnit.NANOSECONDS);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Creates interceptor of the proxy RestTemplate recording time to first byte, transfer time and body sizes.
+     *
+     * @return interceptor
+     */
+    public ClientHttpRequestInterceptor interceptor() {
+        return (request, body, execution) -> {
+            Call call = currentCall.get();
+            if (meterRegistry == null || call == null)
+                return execution.execute(request, body);
+
+            summary(BYTES_OUT_METRIC, call).record(body.length);
+            call.connectNanos = 0;
+            long start = System.nanoTime();
+            ClientHttpResponse response = execution.execute(request, body);
+            long headersReceived = System.nanoTime();
+            timer(FIRST_BYTE_METRIC, call).record(headersReceived - start - call.connectNanos, TimeUnit.NANOSECONDS);
+            return new MeasuredResponse(response, call, headersReceived);
+        };
+    }
+
+    private Timer timer(String name, Call call) {
+        return Timer.builder(name)
+                .tags("upstream", call.upstream, "route", call.route)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private DistributionSummary summary(String name, Call call) {
+        return DistributionSummary.builder(name)
+                .baseUnit("bytes")
+                .tags("upstream", call.upstream, "route", call.route)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Upstream and route of the HTTP call executed by the current thread.
+     */
+    private static class Call {
+        private final String upstream;
+        private final String route;
+        private long connectNanos;
+
+        private Call(String upstream, String route) {
+            this.upstream = upstream;
+            this.route = route;
+        }
+    }
+
+    /**
+     * Response recording transfer time and size of its body once it is read or closed.
+     */
+    private class MeasuredResponse implements ClientHttpResponse {
+        private final ClientHttpResponse response;
+        private final Call call;
+        private final long headersReceived;
+        private InputStream body;
+        private long bytes;
+        private boolean recorded;
+
+        private MeasuredResponse(ClientHttpResponse response, Call call, long headersReceived) {
+            this.response = response;
+            this.call = call;
+            this.headersReceived = headersReceived;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                body = new FilterInputStream(response.getBody()) {
+                    @Override
+                    public int read() throws IOException {
+                        int read = super.read();
+                        if (read < 0)
+                            finished();
+                        else
+                            bytes++;
+                        return read;
+                    }
+
+                    @Override
+                    public int read(byte[] buffer, int offset, int length) throws IOException {
+                        int read = super.read(buffer, offset, length);
+                        if (read < 0)
+                            finished();
+                        else
+                            bytes += read;
+                        return read;
+                    }
+                };
+            }
+            return body;
+        }
+
+        @Override
+        public HttpStatus getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public int getRawStatusCode() throws IOException {
+            return response.getRawStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public void close() {
+            finished();
+            response.close();
+        }
+
+        private void finished() {
+            if (recorded)
+                return;
+            recorded = true;
+            timer(TRANSFER_METRIC, call).record(System.nanoTime() - headersReceived, TimeUnit.NANOSECONDS);
+            summary(BYTES_IN_METRIC, call).record(bytes);
+        }
+    }
+}
@@ -8,18 +8,29 @@ import eu.h2020.symbiote.core.internal.CoreQueryRequest;
 import eu.h2020.symbiote.core.internal.CoreSparqlQueryRequest;
 import eu.h2020.symbiote.core.internal.cram.ResourceUrlsRequest;
 import eu.h2020.symbiote.core.internal.cram.ResourceUrlsResponse;
-import org.apache.commons.lang.StringUtils;
+import eu.h2020.symbiote.diagnostics.JfrEvents;
+import eu.h2020.symbiote.diagnostics.RequestTimings;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.sleuth.Span;
+import org.springframework.cloud.sleuth.Tracer;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 /**
  * Class used for all internal communication using RabbitMQ AMQP implementation.
@@ -31,11 +42,20 @@ import java.util.concurrent.TimeoutException;
 public class RabbitManager {
     private static Log log = LogFactory.getLog(RabbitManager.class);
 
+    private static final int DEFAULT_RPC_TIMEOUT = 60000;
+    private static final String RPC_REQUEST_PAYLOAD = "rpc.request";
+    private static final String RPC_RESPONSE_PAYLOAD = "rpc.response";
+
     private static final String CORE_PARSE_ERROR_MSG = "Error while parsing response value from Core components";
 
+    private static final ThreadLocal<Long> deadline = new ThreadLocal<>();
+
     @Value("${rabbit.host}")
     private String rabbitHost;
 
+    @Value("${rabbit.port:5672}")
+    private int rabbitPort = ConnectionFactory.DEFAULT_AMQP_PORT;
+
     @Value("${rabbit.username}")
     private String rabbitUsername;
 
@@ -45,6 +65,9 @@ public class RabbitManager {
     @Value("${spring.rabbitmq.template.reply-timeout}")
     private Integer rabbitMessageTimeout;
 
+    @Value("${rabbit.rpc.idleChannels:32}")
+    private int rpcIdleChannels = 32;
+
     @Value("${rabbit.exchange.resource.name}")
     private String resourceExchangeName;
 
@@ -95,9 +118,49 @@ public class RabbitManager {
 
     private Connection connection;
     private Channel channel;
+    private Channel resourceEventsChannel;
+    private BlockingDeque<Channel> rpcChannels;
+
+    private final List<ResourceEventListener> resourceEventListeners = new CopyOnWriteArrayList<>();
 
     private Map<String, Object> queueArgs;
 
+    private final RpcMetrics rpcMetrics;
+    private final RpcTracing rpcTracing;
+    private final PayloadLogger payloadLogger;
+
+    /**
+     * Creates RabbitManager which doesn't record metrics nor traces of RPC calls.
+     */
+    public RabbitManager() {
+        this(null);
+    }
+
+    /**
+     * Creates RabbitManager which records metrics, but not traces of RPC calls.
+     *
+     * @param meterRegistry MeterRegistry bean
+     */
+    public RabbitManager(MeterRegistry meterRegistry) {
+        this(meterRegistry, null, new PayloadLogger());
+    }
+
+    /**
+     * Class constructor which autowires MeterRegistry bean, used to record latencies and failures of RPC calls,
+     * Tracer bean, used to record spans of RPC calls and to propagate trace context to their consumers, and
+     * PayloadLogger bean, used to log sent and received messages.
+     *
+     * @param meterRegistry MeterRegistry bean
+     * @param tracer        Tracer bean
+     * @param payloadLogger PayloadLogger bean
+     */
+    @Autowired
+    public RabbitManager(MeterRegistry meterRegistry, Tracer tracer, PayloadLogger payloadLogger) {
+        this.rpcMetrics = new RpcMetrics(meterRegistry, () -> Duration.ofMillis(rpcTimeout()));
+        this.rpcTracing = new RpcTracing(tracer);
+        this.payloadLogger = payloadLogger;
+    }
+
     /**
      * Method used to override connection parameters.
      * Used ONLY for unit testing.
@@ -136,7 +199,7 @@ public class RabbitManager {
      * but before using RabbitManager to send any message.
      */
     public void initCommunication() {
-        log.info("RabbitMQ communication init for " + this.rabbitUsername + "@"+ this.rabbitHost);
+        log.info("RabbitMQ communication init for " + this.rabbitUsername + "@"+ this.rabbitHost + ":" + this.rabbitPort);
 
         queueArgs = new HashMap<>();
         queueArgs.put("x-message-ttl", rabbitMessageTimeout);
@@ -144,10 +207,12 @@ public class RabbitManager {
             ConnectionFactory factory = new ConnectionFactory();
 
             factory.setHost(this.rabbitHost);
+            factory.setPort(this.rabbitPort);
             factory.setUsername(this.rabbitUsername);
             factory.setPassword(this.rabbitPassword);
 
             this.connection = factory.newConnection();
+            this.rpcChannels = new LinkedBlockingDeque<>(Math.max(1, this.rpcIdleChannels));
 
             this.channel = this.connection.createChannel();
             this.channel.exchangeDeclare(this.resourceExchangeName,
@@ -164,11 +229,58 @@ public class RabbitManager {
                     this.cramExchangeInternal,
                     null);
 
+            if (!this.resourceEventListeners.isEmpty())
+                consumeResourceEvents();
         } catch (IOException | TimeoutException e) {
             log.error(e.getMessage(), e);
         }
     }
 
+    /**
+     * Registers listener of resource creation, modification and removal events.
+     * Listeners must be registered before {@link #initCommunication()} is called.
+     *
+     * @param listener listener to notify about resource events
+     */
+    public void addResourceEventListener(ResourceEventListener listener) {
+        this.resourceEventListeners.add(listener);
+    }
+
+    /**
+     * Binds an exclusive queue to resource creation, modification and removal routing keys and dispatches received
+     * events to all listeners. A separate channel is used, so that RPC calls are not blocked by event deliveries.
+     */
+    private void consumeResourceEvents() throws IOException {
+        Map<String, ResourceEventListener.Type> types = new HashMap<>();
+        types.put(this.resourceCreationRequestedRoutingKey, ResourceEventListener.Type.CREATED);
+        types.put(this.resourceModificationRequestedRoutingKey, ResourceEventListener.Type.MODIFIED);
+        types.put(this.resourceRemovalRequestedRoutingKey, ResourceEventListener.Type.REMOVED);
+
+        this.resourceEventsChannel = this.connection.createChannel();
+        String queueName = this.resourceEventsChannel.queueDeclare().getQueue();
+        for (String routingKey : types.keySet())
+            this.resourceEventsChannel.queueBind(queueName, this.resourceExchangeName, routingKey);
+
+        this.resourceEventsChannel.basicConsume(queueName, true, new DefaultConsumer(this.resourceEventsChannel) {
+            @Override
+            public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) {
+                ResourceEventListener.Type type = types.get(envelope.getRoutingKey());
+                if (type == null)
+                    return;
+
+                String message = new String(body);
+                for (ResourceEventListener listener : resourceEventListeners) {
+                    try {
+                        listener.onResourceEvent(type, message);
+                    } catch (RuntimeException e) {
+                        log.error("Resource event listener failed", e);
+                    }
+                }
+            }
+        });
+        log.info("Listening to resource events on queue " + queueName);
+    }
+
     /**
      * Cleanup method, used to close RabbitMQ channel and connection.
      */
@@ -176,6 +288,13 @@ public class RabbitManager {
     public void cleanup() {
         log.info("Closing RabbitMQ channel and connection");
         try {
+            if (this.resourceEventsChannel != null && this.resourceEventsChannel.isOpen())
+                this.resourceEventsChannel.close();
+            if (this.rpcChannels != null) {
+                Channel rpcChannel;
+                while ((rpcChannel = this.rpcChannels.pollFirst()) != null)
+                    closeChannel(rpcChannel);
+            }
             if (this.channel != null && this.channel.isOpen())
                 this.channel.close();
             if (this.connection != null && this.connection.isOpen())
@@ -190,7 +309,12 @@ public class RabbitManager {
      * In this implementation it covers asynchronous Rabbit communication with synchronous one, as it is used by conventional REST facade.
      * Before sending a message, a temporary response queue is declared and its name is passed along with the message.
      * When a consumer handles the message, it returns the result via the response queue.
-     * Since this is a synchronous pattern, it uses timeout of 20 seconds. If the response doesn't come in that time, the method returns with null result.
+     * Since this is a synchronous pattern, it uses timeout configured by spring.rabbitmq.template.reply-timeout (60 seconds if not set). If the response doesn't come in that time, the method returns with null result.
+     * Context of the current trace is sent in B3 headers of the message, see {@link RpcTracing}.
+     * <p>
+     * RPC messages may be sent from many threads at once (e.g. bulkheads or batches). As RabbitMQ channels
+     * must not be shared by concurrent threads, every call borrows a channel of its own for the time of the call. Up to
+     * rabbit.rpc.idleChannels channels are kept open for later calls.
      *
      * @param exchangeName name of the eschange to send message to
      * @param routingKey   routing key to send message to
@@ -198,19 +322,33 @@ public class RabbitManager {
      * @return response from the consumer or null if timeout occurs
      */
     public String sendRpcMessage(String exchangeName, String routingKey, String message, String classType) {
-        QueueingConsumer consumer = new QueueingConsumer(channel);
+        long replyTimeout = replyTimeout();
+        Channel rpcChannel = null;
+        QueueingConsumer consumer = null;
+        long start = rpcMetrics.started(routingKey);
+        Span rpcSpan = rpcTracing.startRpc(exchangeName, routingKey);
+        Object rpcEvent = JfrEvents.beginRpc();
+        String outcome = RpcMetrics.ERROR;
+        byte[] body = message.getBytes();
+        long responseSize = 0;
+        long waitTime = 0;
 
         try {
-            log.info("Sending RPC message: " + message);
+            if (replyTimeout <= 0) {
+                log.info("Deadline passed before sending RPC message to " + routingKey);
+                outcome = RpcMetrics.TIMEOUT;
+                return null;
+            }
 
-            String replyQueueName = UUID.randomUUID().toString();
-            this.channel.queueDeclare(replyQueueName, false, true, true, queueArgs);
+            payloadLogger.log(RPC_REQUEST_PAYLOAD, "Sending RPC message to", routingKey, () -> message);
 
             String correlationId = UUID.randomUUID().toString();
+            String replyQueueName = UUID.randomUUID().toString();
 
             Map<String, Object> headers = new HashMap<>();
             headers.put("__TypeId__", classType);
             headers.put("__ContentTypeId__", Object.class.getCanonicalName());
+            rpcTracing.inject(rpcSpan, headers);
 
             AMQP.BasicProperties props = new AMQP.BasicProperties()
                     .builder()
@@ -220,40 +358,147 @@ public class RabbitManager {
                     .headers(headers)
                     .build();
 
-            this.channel.basicConsume(replyQueueName, true, consumer);
+            Span publishSpan = rpcTracing.start(RpcTracing.PUBLISH_SPAN);
+            long publishStart = System.nanoTime();
+            try {
+                rpcChannel = borrowChannel();
+                consumer = new QueueingConsumer(rpcChannel);
+                rpcChannel.queueDeclare(replyQueueName, false, true, true, queueArgs);
+                rpcChannel.basicConsume(replyQueueName, true, consumer);
+                rpcChannel.basicPublish(exchangeName, routingKey, props, body);
+            } finally {
+                rpcTracing.finish(publishSpan);
+                RequestTimings.record(RequestTimings.PUBLISH, System.nanoTime() - publishStart);
+            }
 
             String responseMsg = null;
 
-            this.channel.basicPublish(exchangeName, routingKey, props, message.getBytes());
-            while (true) {
-                QueueingConsumer.Delivery delivery = consumer.nextDelivery(60000);
-                if (delivery == null) {
-                    log.info("Timeout in response retrieval");
-                    return null;
-                }
-
-                if (delivery.getProperties().getCorrelationId().equals(correlationId)) {
-                    responseMsg = new String(delivery.getBody());
-                    break;
-                } else {
-                    log.info("Wrong correlationID in response message");
+            Span waitSpan = rpcTracing.start(RpcTracing.WAIT_SPAN);
+            long waitStart = System.nanoTime();
+            try {
+                while (true) {
+                    QueueingConsumer.Delivery delivery = consumer.nextDelivery(replyTimeout);
+                    if (delivery == null) {
+                        log.info("Timeout in response retrieval");
+                        outcome = RpcMetrics.TIMEOUT;
+                        return null;
+                    }
+
+                    if (delivery.getProperties().getCorrelationId().equals(correlationId)) {
+                        responseMsg = new String(delivery.getBody());
+                        responseSize = delivery.getBody().length;
+                        break;
+                    } else {
+                        log.info("Wrong correlationID in response message");
+                        rpcMetrics.wrongCorrelationId(routingKey);
+                    }
                 }
+            } finally {
+                rpcTracing.finish(waitSpan);
+                waitTime = System.nanoTime() - waitStart;
+                RequestTimings.record(RequestTimings.WAIT, waitTime);
             }
 
-            log.info("Response received: " + StringUtils.substring(responseMsg,0,400) + " ... ");
+            String response = responseMsg;
+            payloadLogger.log(RPC_RESPONSE_PAYLOAD, "Response received from", routingKey, () -> response);
+            outcome = RpcMetrics.SUCCESS;
             return responseMsg;
         } catch (IOException | InterruptedException e) {
             log.error(e.getMessage(), e);
         } finally {
-            try {
-                this.channel.basicCancel(consumer.getConsumerTag());
-            } catch (IOException e) {
-                log.error(e.getMessage(), e);
-            }
+            rpcMetrics.finished(routingKey, start, outcome);
+            rpcTracing.finishRpc(rpcSpan, outcome);
+            JfrEvents.commitRpc(rpcEvent, exchangeName, routingKey, body.length, responseSize, waitTime, outcome);
+            releaseChannel(rpcChannel, consumer);
         }
         return null;
     }
 
+    /**
+     * @return idle RPC channel, or a new one if there is none
+     */
+    private Channel borrowChannel() throws IOException {
+        Channel rpcChannel;
+        while ((rpcChannel = this.rpcChannels.pollFirst()) != null) {
+            if (rpcChannel.isOpen())
+                return rpcChannel;
+        }
+
+        rpcChannel = this.connection.createChannel();
+        if (rpcChannel == null)
+            throw new IOException("No free channel to send RPC message");
+        return rpcChannel;
+    }
+
+    /**
+     * Cancels the reply consumer and returns the channel to idle channels; channels which failed, or do not fit among
+     * idle channels, are closed.
+     */
+    private void releaseChannel(Channel rpcChannel, QueueingConsumer consumer) {
+        if (rpcChannel == null)
+            return;
+
+        try {
+            if (consumer != null && consumer.getConsumerTag() != null && rpcChannel.isOpen())
+                rpcChannel.basicCancel(consumer.getConsumerTag());
+        } catch (IOException | ShutdownSignalException e) {
+            log.error(e.getMessage(), e);
+            closeChannel(rpcChannel);
+            return;
+        }
+
+        if (!rpcChannel.isOpen() || !this.rpcChannels.offerFirst(rpcChannel))
+            closeChannel(rpcChannel);
+    }
+
+    private void closeChannel(Channel rpcChannel) {
+        try {
+            if (rpcChannel.isOpen())
+                rpcChannel.close();
+        } catch (IOException | TimeoutException | ShutdownSignalException e) {
+            log.debug("Error while closing RPC channel: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Executes the call so that RPC messages it sends on the current thread wait for their replies at most until the
+     * deadline, or the configured reply timeout if it comes sooner. Messages are not sent at all once the deadline has
+     * passed. Used e.g. by concurrent batches, whose calls must not outlive the deadline of the whole batch.
+     *
+     * @param deadline time in milliseconds since epoch after which replies are no longer awaited
+     * @param call     call sending RPC messages
+     * @param <T>      type of the result
+     * @return result of the call
+     */
+    public static <T> T withDeadline(long deadline, Supplier<T> call) {
+        Long previous = RabbitManager.deadline.get();
+        RabbitManager.deadline.set(previous == null ? deadline : Math.min(previous, deadline));
+        try {
+            return call.get();
+        } finally {
+            if (previous == null)
+                RabbitManager.deadline.remove();
+            else
+                RabbitManager.deadline.set(previous);
+        }
+    }
+
+    /**
+     * @return configured time in milliseconds to wait for the reply to an RPC message
+     */
+    private long rpcTimeout() {
+        return rabbitMessageTimeout != null ? rabbitMessageTimeout : DEFAULT_RPC_TIMEOUT;
+    }
+
+    /**
+     * @return time in milliseconds to wait for the reply to an RPC message sent on the current thread
+     */
+    private long replyTimeout() {
+        long timeout = rpcTimeout();
+        Long callDeadline = deadline.get();
+        return callDeadline == null ? timeout : Math.min(timeout, callDeadline - System.currentTimeMillis());
+    }
+
     /**
      * Method used to send RPC request to get specified resources URLs.
      * <p>
@@ -268,14 +513,14 @@ public class RabbitManager {
             log.info("Request for resource URLs");
             ObjectMapper mapper = new ObjectMapper();
             String message = mapper.writeValueAsString(request);
-            log.debug(message);
             String response = sendRpcMessage(this.cramExchangeName, this.getResourceUrlsRoutingKey, message, request.getClass().getCanonicalName());
             if (response == null)
                 return null;
 
-            return mapper.readValue(response, ResourceUrlsResponse.class);
+            return decode(mapper, response, ResourceUrlsResponse.class);
         } catch (IOException e) {
             log.error(CORE_PARSE_ERROR_MSG, e);
+            rpcMetrics.parseFailure(this.getResourceUrlsRoutingKey);
         }
         return null;
     }
@@ -297,9 +542,10 @@ public class RabbitManager {
             String response = sendRpcMessage(this.resourceExchangeName, this.resourceSearchRequestedRoutingKey, message, request.getClass().getCanonicalName());
             if (response == null)
                 return null;
-            return mapper.readValue(response, QueryResponse.class);
+            return decode(mapper, response, QueryResponse.class);
         } catch (IOException e) {
             log.error(CORE_PARSE_ERROR_MSG, e);
+            rpcMetrics.parseFailure(this.resourceSearchRequestedRoutingKey);
         }
         return null;
     }
@@ -321,13 +567,28 @@ public class RabbitManager {
             String response = sendRpcMessage(this.resourceExchangeName, this.resourceSparqlSearchRequestedRoutingKey, message, request.getClass().getCanonicalName());
             if (response == null)
                 return null;
-            return mapper.readValue(response, SparqlQueryResponse.class);
+            return decode(mapper, response, SparqlQueryResponse.class);
         } catch (IOException e) {
             log.error(CORE_PARSE_ERROR_MSG, e);
+            rpcMetrics.parseFailure(this.resourceSparqlSearchRequestedRoutingKey);
         }
         return null;
     }
 
+    private <T> T decode(ObjectMapper mapper, String response, Class<T> type) throws IOException {
+        Span span = rpcTracing.start(RpcTracing.DECODE_SPAN);
+        long decodeStart = System.nanoTime();
+        try {
+            return mapper.readValue(response, type);
+        } catch (IOException e) {
+            rpcTracing.error(span, e.getMessage());
+            throw e;
+        } finally {
+            rpcTracing.finish(span);
+            RequestTimings.record(RequestTimings.DECODE, System.nanoTime() - decodeStart);
+        }
+    }
+
     /**
      * Get current RabbitMQ channel.
      * Used ONLY dor unit testing.
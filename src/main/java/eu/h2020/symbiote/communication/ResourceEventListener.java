@@ -0,0 +1,25 @@
+package eu.h2020.symbiote.communication;
+
+/**
+ * Listener of resource registration events published on the resource exchange, see
+ * {@link RabbitManager#addResourceEventListener(ResourceEventListener)}.
+ */
+public interface ResourceEventListener {
+
+    /**
+     * Type of the resource event, given by its routing key.
+     */
+    enum Type {
+        CREATED,
+        MODIFIED,
+        REMOVED
+    }
+
+    /**
+     * Called on the RabbitMQ consumer thread for every received event, so implementations should return quickly.
+     *
+     * @param type    type of the event
+     * @param message body of the event message
+     */
+    void onResourceEvent(Type type, String message);
+}
@@ -0,0 +1,248 @@
+package eu.h2020.symbiote.communication;
+
+import eu.h2020.symbiote.core.internal.cram.ResourceUrlsRequest;
+import eu.h2020.symbiote.core.internal.cram.ResourceUrlsResponse;
+import eu.h2020.symbiote.security.communication.payloads.SecurityRequest;
+import eu.h2020.symbiote.utils.CredentialsDigests;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Class merging concurrent resource URLs lookups into a single Core Resource Access Monitor RPC.
+ * <p>
+ * Lookups carrying the same credentials which arrive within symbiote.resourceUrls.batching.window milliseconds are
+ * merged into one {@link ResourceUrlsRequest} with the union of their IDs. The first lookup of a batch waits for the
+ * window to pass (or for the batch to reach symbiote.resourceUrls.batching.maxBatchSize IDs) and sends the RPC on its
+ * own thread; every lookup then gets back only the URLs of its own IDs.
+ * <p>
+ * Batching is disabled by default (symbiote.resourceUrls.batching.enabled). Lookups are merged only if all their
+ * X-Auth-* headers are equal, and these include the per-request timestamp and authentication challenge, so separate
+ * client requests practically never share a batch. Merging requests with different challenges isn't possible either,
+ * as the service response signed by Core Resource Access Monitor is bound to the challenge of the request it
+ * answered. Enabling batching thus mostly adds the window to the latency of every lookup.
+ * <p>
+ * When created with the no-argument constructor (e.g. in unit tests) batching is disabled and every lookup is sent on
+ * its own.
+ */
+@Component
+public class ResourceUrlsBatcher {
+    private static Log log = LogFactory.getLog(ResourceUrlsBatcher.class);
+
+    public static final String BATCH_SIZE_METRIC = "coreinterface.resourceUrls.batch.size";
+    public static final String BATCH_REQUESTS_METRIC = "coreinterface.resourceUrls.batch.requests";
+
+    @Value("${symbiote.resourceUrls.batching.enabled:false}")
+    private boolean enabled;
+
+    @Value("${symbiote.resourceUrls.batching.window:5}")
+    private long window;
+
+    @Value("${symbiote.resourceUrls.batching.maxBatchSize:200}")
+    private int maxBatchSize;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Batch> openBatches = new HashMap<>();
+
+    private DistributionSummary batchSize;
+    private DistributionSummary batchRequests;
+
+    /**
+     * Creates batcher with batching disabled.
+     */
+    public ResourceUrlsBatcher() {
+        this.meterRegistry = null;
+    }
+
+    /**
+     * Class constructor which autowires MeterRegistry bean, used to expose batch sizes.
+     *
+     * @param meterRegistry MeterRegistry bean
+     */
+    @Autowired
+    public ResourceUrlsBatcher(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Method used to override batching parameters.
+     * Used ONLY for unit testing.
+     *
+     * @param window       time in milliseconds lookups are collected for
+     * @param maxBatchSize maximal number of IDs in a batch
+     */
+    public void setTestParameters(long window, int maxBatchSize) {
+        this.enabled = true;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+        init();
+    }
+
+    /**
+     * Method used to register batch size metrics.
+     */
+    @PostConstruct
+    public void init() {
+        if (meterRegistry == null)
+            return;
+
+        batchSize = DistributionSummary.builder(BATCH_SIZE_METRIC)
+                .description("Number of resource IDs in one Core Resource Access Monitor RPC")
+                .register(meterRegistry);
+        batchRequests = DistributionSummary.builder(BATCH_REQUESTS_METRIC)
+                .description("Number of client requests merged into one Core Resource Access Monitor RPC")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Looks up URLs of the resources, possibly within a batch shared with concurrent lookups having the same
+     * credentials.
+     * <p>
+     * Runtime exceptions thrown by the RPC are rethrown to every lookup of the batch.
+     *
+     * @param credentialsDigest digest of the credentials, see {@link CredentialsDigests#headersDigest}
+     * @param resourceIds       IDs of resources
+     * @param securityRequest   security request of the client
+     * @param rpc               function sending the request to Core Resource Access Monitor
+     * @return response containing URLs of the given resources only, or null if the RPC timed out
+     */
+    public ResourceUrlsResponse execute(String credentialsDigest, List<String> resourceIds, SecurityRequest securityRequest,
+                                        Function<ResourceUrlsRequest, ResourceUrlsResponse> rpc) {
+        if (!enabled || resourceIds.size() >= maxBatchSize)
+            return rpc.apply(createRequest(resourceIds, securityRequest));
+
+        Batch batch;
+        boolean leader = false;
+        synchronized (openBatches) {
+            batch = openBatches.get(credentialsDigest);
+            if (batch != null && batch.resourceIds.size() + resourceIds.size() > maxBatchSize) {
+                close(batch);
+                batch = null;
+            }
+            if (batch == null) {
+                batch = new Batch(credentialsDigest, securityRequest);
+                openBatches.put(credentialsDigest, batch);
+                leader = true;
+            }
+            batch.resourceIds.addAll(resourceIds);
+            batch.requests++;
+            if (batch.resourceIds.size() >= maxBatchSize)
+                close(batch);
+        }
+
+        if (leader)
+            send(batch, rpc);
+        return forRequest(await(batch), resourceIds);
+    }
+
+    /**
+     * Waits until the batch is closed and sends it.
+     */
+    private void send(Batch batch, Function<ResourceUrlsRequest, ResourceUrlsResponse> rpc) {
+        try {
+            batch.closed.await(window, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<String> resourceIds;
+        int requests;
+        synchronized (openBatches) {
+            close(batch);
+            resourceIds = new ArrayList<>(batch.resourceIds);
+            requests = batch.requests;
+        }
+
+        log.debug("Sending " + resourceIds.size() + " resource IDs of " + requests + " requests in one batch");
+        if (batchSize != null) {
+            batchSize.record(resourceIds.size());
+            batchRequests.record(requests);
+        }
+
+        try {
+            batch.response.complete(rpc.apply(createRequest(resourceIds, batch.securityRequest)));
+        } catch (RuntimeException | Error e) {
+            batch.response.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Removes the batch from open batches, so that no further lookups are added to it.
+     * Must be called while holding the lock of open batches.
+     */
+    private void close(Batch batch) {
+        openBatches.remove(batch.credentialsDigest, batch);
+        batch.closed.countDown();
+    }
+
+    private ResourceUrlsResponse await(Batch batch) {
+        try {
+            return batch.response.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for resource URLs", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Creates response of a single lookup from the response of its batch.
+     */
+    private ResourceUrlsResponse forRequest(ResourceUrlsResponse batchResponse, List<String> resourceIds) {
+        if (batchResponse == null)
+            return null;
+
+        Map<String, String> urls = null;
+        if (batchResponse.getBody() != null) {
+            urls = new HashMap<>();
+            for (String resourceId : resourceIds) {
+                String url = batchResponse.getBody().get(resourceId);
+                if (url != null)
+                    urls.put(resourceId, url);
+            }
+        }
+
+        ResourceUrlsResponse response = new ResourceUrlsResponse(batchResponse.getStatus(), batchResponse.getMessage(), urls);
+        response.setServiceResponse(batchResponse.getServiceResponse());
+        return response;
+    }
+
+    private ResourceUrlsRequest createRequest(List<String> resourceIds, SecurityRequest securityRequest) {
+        ResourceUrlsRequest request = new ResourceUrlsRequest();
+        request.setBody(resourceIds);
+        request.setSecurityRequest(securityRequest);
+        return request;
+    }
+
+    private static class Batch {
+        private final String credentialsDigest;
+        private final SecurityRequest securityRequest;
+        private final Set<String> resourceIds = new LinkedHashSet<>();
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private final CompletableFuture<ResourceUrlsResponse> response = new CompletableFuture<>();
+        private int requests;
+
+        private Batch(String credentialsDigest, SecurityRequest securityRequest) {
+            this.credentialsDigest = credentialsDigest;
+            this.securityRequest = securityRequest;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package eu.h2020.symbiote.communication;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Metrics of RPC calls sent by {@link RabbitManager}, all tagged by routing key.
+ * <p>
+ * Latencies are recorded in timers publishing percentile histograms (exported e.g. as Prometheus histogram buckets, so
+ * that percentiles can be aggregated across instances) together with p50, p95 and p99 computed by the instance.
+ * Timer outcome tag distinguishes replies from timeouts and errors. Timers are built on first use of a routing key and
+ * outcome, so that histogram buckets can be bounded by the RPC timeout configured after construction.
+ * <p>
+ * When created without MeterRegistry nothing is recorded.
+ */
+public class RpcMetrics {
+    public static final String LATENCY_METRIC = "coreinterface.rpc.latency";
+    public static final String IN_FLIGHT_METRIC = "coreinterface.rpc.inFlight";
+    public static final String TIMEOUTS_METRIC = "coreinterface.rpc.timeouts";
+    public static final String PARSE_FAILURES_METRIC = "coreinterface.rpc.parseFailures";
+    public static final String WRONG_CORRELATION_ID_METRIC = "coreinterface.rpc.wrongCorrelationId";
+
+    public static final String SUCCESS = "success";
+    public static final String TIMEOUT = "timeout";
+    public static final String ERROR = "error";
+
+    private final MeterRegistry meterRegistry;
+    private final Supplier<Duration> maximumExpectedLatency;
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Timer> latencies = new ConcurrentHashMap<>();
+
+    /**
+     * @param meterRegistry          registry to report metrics to, null to record nothing
+     * @param maximumExpectedLatency longest latency expected, i.e. the RPC timeout; bounds histogram buckets
+     */
+    public RpcMetrics(MeterRegistry meterRegistry, Duration maximumExpectedLatency) {
+        this(meterRegistry, () -> maximumExpectedLatency);
+    }
+
+    /**
+     * @param meterRegistry          registry to report metrics to, null to record nothing
+     * @param maximumExpectedLatency supplier of the longest latency expected, i.e. the RPC timeout; called when a timer
+     *                               is built
+     */
+    public RpcMetrics(MeterRegistry meterRegistry, Supplier<Duration> maximumExpectedLatency) {
+        this.meterRegistry = meterRegistry;
+        this.maximumExpectedLatency = maximumExpectedLatency;
+    }
+
+    /**
+     * Marks start of the RPC call.
+     *
+     * @param routingKey routing key the call is sent to
+     * @return start time to pass to {@link #finished(String, long, String)}
+     */
+    public long started(String routingKey) {
+        if (meterRegistry != null)
+            inFlightOf(routingKey).incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Records latency of the finished RPC call.
+     *
+     * @param routingKey routing key the call was sent to
+     * @param start      start time returned by {@link #started(String)}
+     * @param outcome    {@link #SUCCESS}, {@link #TIMEOUT} or {@link #ERROR}
+     */
+    public void finished(String routingKey, long start, String outcome) {
+        if (meterRegistry == null)
+            return;
+
+        inFlightOf(routingKey).decrementAndGet();
+        latencyOf(routingKey, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (TIMEOUT.equals(outcome))
+            meterRegistry.counter(TIMEOUTS_METRIC, "routingKey", routingKey).increment();
+    }
+
+    /**
+     * Counts reply which was received with other correlation ID than the one of the request.
+     *
+     * @param routingKey routing key the call was sent to
+     */
+    public void wrongCorrelationId(String routingKey) {
+        if (meterRegistry != null)
+            meterRegistry.counter(WRONG_CORRELATION_ID_METRIC, "routingKey", routingKey).increment();
+    }
+
+    /**
+     * Counts reply which could not be parsed.
+     *
+     * @param routingKey routing key the call was sent to
+     */
+    public void parseFailure(String routingKey) {
+        if (meterRegistry != null)
+            meterRegistry.counter(PARSE_FAILURES_METRIC, "routingKey", routingKey).increment();
+    }
+
+    private Timer latencyOf(String routingKey, String outcome) {
+        return latencies.computeIfAbsent(routingKey + " " + outcome, key -> Timer.builder(LATENCY_METRIC)
+                .tags("routingKey", routingKey, "outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .maximumExpectedValue(maximumExpectedLatency.get())
+                .register(meterRegistry));
+    }
+
+    private AtomicInteger inFlightOf(String routingKey) {
+        return inFlight.computeIfAbsent(routingKey,
+                key -> meterRegistry.gauge(IN_FLIGHT_METRIC, Collections.singletonList(Tag.of("routingKey", key)), new AtomicInteger()));
+    }
+}
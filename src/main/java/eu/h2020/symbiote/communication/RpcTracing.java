@@ -0,0 +1,120 @@
+package eu.h2020.symbiote.communication;
+
+import org.springframework.cloud.sleuth.Span;
+import org.springframework.cloud.sleuth.Tracer;
+
+import java.util.Map;
+
+/**
+ * Client-side tracing of RPC calls sent by {@link RabbitManager}.
+ * <p>
+ * Every call is recorded as "rpc:routingKey" span, with "publish" and "wait" child spans covering sending of the
+ * request and waiting for the reply (i.e. time queued at the broker plus processing by the consumer), and a "decode"
+ * span covering parsing of the reply. Context of the RPC span is sent in B3 headers of the request message
+ * (X-B3-TraceId, X-B3-SpanId, X-B3-ParentSpanId, X-B3-Sampled), so that spans recorded by the consumer become its
+ * children.
+ * <p>
+ * When created without Tracer nothing is recorded and all spans are null.
+ */
+public class RpcTracing {
+    public static final String RPC_SPAN_PREFIX = "rpc:";
+    public static final String PUBLISH_SPAN = "publish";
+    public static final String WAIT_SPAN = "wait";
+    public static final String DECODE_SPAN = "decode";
+
+    public static final String EXCHANGE_TAG = "amqp.exchange";
+    public static final String ROUTING_KEY_TAG = "amqp.routingKey";
+    public static final String OUTCOME_TAG = "rpc.outcome";
+
+    private final Tracer tracer;
+
+    /**
+     * @param tracer tracer used to record spans, null to record nothing
+     */
+    public RpcTracing(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * Starts span of the RPC call, which becomes the current span.
+     *
+     * @param exchangeName exchange the call is sent to
+     * @param routingKey   routing key the call is sent to
+     * @return started span, null when not tracing
+     */
+    public Span startRpc(String exchangeName, String routingKey) {
+        if (tracer == null)
+            return null;
+
+        Span span = tracer.createSpan(RPC_SPAN_PREFIX + routingKey);
+        span.logEvent(Span.CLIENT_SEND);
+        tracer.addTag(EXCHANGE_TAG, exchangeName);
+        tracer.addTag(ROUTING_KEY_TAG, routingKey);
+        return span;
+    }
+
+    /**
+     * Finishes span of the RPC call.
+     *
+     * @param span    span returned by {@link #startRpc(String, String)}
+     * @param outcome {@link RpcMetrics#SUCCESS}, {@link RpcMetrics#TIMEOUT} or {@link RpcMetrics#ERROR}
+     */
+    public void finishRpc(Span span, String outcome) {
+        if (span == null)
+            return;
+
+        span.logEvent(Span.CLIENT_RECV);
+        span.tag(OUTCOME_TAG, outcome);
+        if (!RpcMetrics.SUCCESS.equals(outcome))
+            span.tag(Span.SPAN_ERROR_TAG_NAME, "RPC " + outcome);
+        tracer.close(span);
+    }
+
+    /**
+     * Starts a child of the current span.
+     *
+     * @param name name of the span, e.g. {@link #PUBLISH_SPAN}
+     * @return started span, null when not tracing
+     */
+    public Span start(String name) {
+        return tracer == null ? null : tracer.createSpan(name);
+    }
+
+    /**
+     * Finishes span started by {@link #start(String)}.
+     *
+     * @param span span to finish, may be null
+     */
+    public void finish(Span span) {
+        if (span != null)
+            tracer.close(span);
+    }
+
+    /**
+     * Marks the span as failed.
+     *
+     * @param span  failed span, may be null
+     * @param error description of the error
+     */
+    public void error(Span span, String error) {
+        if (span != null)
+            span.tag(Span.SPAN_ERROR_TAG_NAME, error);
+    }
+
+    /**
+     * Puts context of the span into headers of the message.
+     *
+     * @param span    span whose context is propagated, may be null
+     * @param headers AMQP message headers
+     */
+    public void inject(Span span, Map<String, Object> headers) {
+        if (span == null)
+            return;
+
+        headers.put(Span.TRACE_ID_NAME, span.traceIdString());
+        headers.put(Span.SPAN_ID_NAME, Span.idToHex(span.getSpanId()));
+        if (!span.getParents().isEmpty())
+            headers.put(Span.PARENT_ID_NAME, Span.idToHex(span.getParents().get(0)));
+        headers.put(Span.SAMPLED_NAME, span.isExportable() ? Span.SPAN_SAMPLED : Span.SPAN_NOT_SAMPLED);
+    }
+}
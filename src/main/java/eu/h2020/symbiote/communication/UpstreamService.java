@@ -0,0 +1,38 @@
+package eu.h2020.symbiote.communication;
+
+/**
+ * symbIoTe Core services Core Interface forwards requests to.
+ */
+public enum UpstreamService {
+    /**
+     * Authentication and Authorization Manager, contacted via REST.
+     */
+    AAM,
+
+    /**
+     * Anomaly Detection Module, contacted via REST.
+     */
+    ADM,
+
+    /**
+     * Bartering and Trading Manager, contacted via REST.
+     */
+    BTM,
+
+    /**
+     * Registry search, contacted via RabbitMQ RPC.
+     */
+    REGISTRY,
+
+    /**
+     * Core Resource Access Monitor, contacted via RabbitMQ RPC.
+     */
+    CRAM;
+
+    /**
+     * @return lower case name used in properties and metric tags
+     */
+    public String getName() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,49 @@
+package eu.h2020.symbiote.config;
+
+import eu.h2020.symbiote.filters.GzipResponseFilter;
+import eu.h2020.symbiote.security.commons.SecurityConstants;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Arrays;
+
+/**
+ * Configuration of gzip compression of large JSON responses.
+ * <p>
+ * Compression is negotiated via 'Accept-Encoding' header and applied only to endpoints returning large, repetitive
+ * content: search, SPARQL search, available AAMs and ADM misdeeds. Search subscriptions, which share the /query
+ * prefix, stream Server-Sent Events and are passed through uncompressed.
+ */
+@Configuration
+public class CompressionConfig {
+    private static final String LEGACY_URI_PREFIX = "/coreInterface/v1";
+
+    @Value("${symbiote.compression.enabled:true}")
+    private boolean enabled;
+
+    @Value("${symbiote.compression.minResponseSize:2048}")
+    private int minResponseSize;
+
+    @Value("${symbiote.compression.mimeTypes:application/json,application/xml,text/plain,text/xml,text/turtle,application/sparql-results+json,application/sparql-results+xml}")
+    private String[] mimeTypes;
+
+    @Bean
+    public FilterRegistrationBean gzipResponseFilter(MeterRegistry meterRegistry) {
+        FilterRegistrationBean registration = new FilterRegistrationBean(new GzipResponseFilter(minResponseSize, Arrays.asList(mimeTypes), meterRegistry));
+        registration.setEnabled(enabled);
+        registration.addUrlPatterns(
+                "/query",
+                "/query/*",
+                LEGACY_URI_PREFIX + "/query",
+                "/sparqlQuery",
+                LEGACY_URI_PREFIX + "/sparqlQuery",
+                "/aam" + SecurityConstants.AAM_GET_AVAILABLE_AAMS,
+                SecurityConstants.AAM_GET_AVAILABLE_AAMS,
+                LEGACY_URI_PREFIX + SecurityConstants.AAM_GET_AVAILABLE_AAMS,
+                SecurityConstants.ADM_PREFIX + SecurityConstants.ADM_GET_FEDERATED_MISDEEDS + "/*");
+        return registration;
+    }
+}
@@ -0,0 +1,42 @@
+package eu.h2020.symbiote.config;
+
+import eu.h2020.symbiote.diagnostics.FlightRecorder;
+import eu.h2020.symbiote.diagnostics.FlightRecorderAspect;
+import eu.h2020.symbiote.diagnostics.FlightRecorderEndpoint;
+import eu.h2020.symbiote.filters.FlightRecorderFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Configuration of the flight recorder of slow requests.
+ * <p>
+ * Phases of every request are measured and the slowest recent requests of each endpoint are listed by
+ * /flightrecorder Actuator endpoint. With symbiote.flightRecorder.serverTiming the phases are also sent to clients in
+ * Server-Timing header. Everything can be turned off with symbiote.flightRecorder.enabled=false.
+ */
+@Configuration
+@ConditionalOnProperty(name = "symbiote.flightRecorder.enabled", matchIfMissing = true)
+public class FlightRecorderConfig {
+
+    @Bean
+    public FilterRegistrationBean flightRecorderFilter(FlightRecorder flightRecorder) {
+        FilterRegistrationBean registration = new FilterRegistrationBean(new FlightRecorderFilter(flightRecorder));
+        // inside tracing filter, outside of the other filters
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+
+    @Bean
+    public FlightRecorderAspect flightRecorderAspect(@Value("${symbiote.flightRecorder.serverTiming:false}") boolean serverTiming) {
+        return new FlightRecorderAspect(serverTiming);
+    }
+
+    @Bean
+    public FlightRecorderEndpoint flightRecorderEndpoint(FlightRecorder flightRecorder) {
+        return new FlightRecorderEndpoint(flightRecorder);
+    }
+}
@@ -0,0 +1,65 @@
+package eu.h2020.symbiote.config;
+
+import eu.h2020.symbiote.filters.ProtocolMetricsFilter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.catalina.connector.Connector;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.ProtocolHandler;
+import org.apache.coyote.http2.Http2Protocol;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.embedded.EmbeddedServletContainerCustomizer;
+import org.springframework.boot.context.embedded.tomcat.TomcatEmbeddedServletContainerFactory;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration enabling HTTP/2 on the embedded Tomcat HTTPS connector.
+ * <p>
+ * HTTP/2 is negotiated via ALPN during the TLS handshake, so clients can multiplex concurrent requests over a single
+ * connection instead of paying a TLS handshake per parallel HTTP/1.1 connection. ALPN needs either Tomcat Native
+ * (APR/OpenSSL) or a JRE with ALPN support in JSSE; when neither is present Tomcat logs a warning and clients keep
+ * using HTTP/1.1.
+ * <p>
+ * Number of open connections and of active requests per protocol (each HTTP/2 request being a single stream) are
+ * exposed as metrics.
+ */
+@Configuration
+@ConditionalOnProperty(name = "symbiote.http2.enabled", matchIfMissing = true)
+public class Http2Config {
+    private static Log log = LogFactory.getLog(Http2Config.class);
+
+    public static final String CONNECTIONS_METRIC = "coreinterface.http.connections";
+
+    @Bean
+    public EmbeddedServletContainerCustomizer http2ContainerCustomizer(MeterRegistry meterRegistry) {
+        return container -> {
+            if (!(container instanceof TomcatEmbeddedServletContainerFactory)) {
+                log.warn("HTTP/2 is supported only with embedded Tomcat");
+                return;
+            }
+
+            ((TomcatEmbeddedServletContainerFactory) container).addConnectorCustomizers(connector -> {
+                connector.addUpgradeProtocol(new Http2Protocol());
+                Gauge.builder(CONNECTIONS_METRIC, connector, Http2Config::getConnectionCount)
+                        .tags("port", String.valueOf(connector.getPort()))
+                        .register(meterRegistry);
+            });
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean protocolMetricsFilter(MeterRegistry meterRegistry) {
+        return new FilterRegistrationBean(new ProtocolMetricsFilter(meterRegistry));
+    }
+
+    private static double getConnectionCount(Connector connector) {
+        ProtocolHandler protocolHandler = connector.getProtocolHandler();
+        if (protocolHandler instanceof AbstractProtocol)
+            return ((AbstractProtocol<?>) protocolHandler).getConnectionCount();
+        return Double.NaN;
+    }
+}
@@ -0,0 +1,23 @@
+package eu.h2020.symbiote.config;
+
+import eu.h2020.symbiote.core.ci.QueryResourceResult;
+import eu.h2020.symbiote.utils.FieldProjection;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration of the ObjectMapper used for HTTP responses.
+ * <p>
+ * Registers field projection filter on {@link QueryResourceResult}, see {@link FieldProjection}.
+ */
+@Configuration
+public class JacksonConfig {
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer fieldProjectionCustomizer() {
+        return builder -> builder
+                .mixIn(QueryResourceResult.class, FieldProjection.QueryResourceResultMixIn.class)
+                .filters(FieldProjection.ALL_FIELDS);
+    }
+}
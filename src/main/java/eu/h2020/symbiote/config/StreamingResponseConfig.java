@@ -0,0 +1,53 @@
+package eu.h2020.symbiote.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.AsyncHandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBodyReturnValueHandler;
+
+import java.util.List;
+
+/**
+ * Configuration allowing endpoints declared to return a raw {@link ResponseEntity} to stream their body.
+ * <p>
+ * Spring recognizes {@link StreamingResponseBody} only by the declared generic type of the ResponseEntity, while
+ * endpoints such as search return either a JSON body or a stream depending on 'Accept' header. The handler registered
+ * here inspects the actual body instead.
+ */
+@Configuration
+public class StreamingResponseConfig extends WebMvcConfigurerAdapter {
+
+    @Override
+    public void addReturnValueHandlers(List<HandlerMethodReturnValueHandler> returnValueHandlers) {
+        returnValueHandlers.add(new StreamingResponseEntityReturnValueHandler());
+    }
+
+    /**
+     * Handler of ResponseEntity whose body is {@link StreamingResponseBody}. Being an asynchronous handler, it is
+     * consulted before the default ResponseEntity handling.
+     */
+    static class StreamingResponseEntityReturnValueHandler implements AsyncHandlerMethodReturnValueHandler {
+        private final StreamingResponseBodyReturnValueHandler delegate = new StreamingResponseBodyReturnValueHandler();
+
+        @Override
+        public boolean isAsyncReturnValue(Object returnValue, MethodParameter returnType) {
+            return returnValue instanceof ResponseEntity && ((ResponseEntity<?>) returnValue).getBody() instanceof StreamingResponseBody;
+        }
+
+        @Override
+        public boolean supportsReturnType(MethodParameter returnType) {
+            return ResponseEntity.class.isAssignableFrom(returnType.getParameterType());
+        }
+
+        @Override
+        public void handleReturnValue(Object returnValue, MethodParameter returnType, ModelAndViewContainer mavContainer, NativeWebRequest webRequest) throws Exception {
+            delegate.handleReturnValue(returnValue, returnType, mavContainer, webRequest);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package eu.h2020.symbiote.config;
+
+import eu.h2020.symbiote.tracing.TailSamplingSpanReporter;
+import eu.h2020.symbiote.tracing.TraceSampler;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.cloud.sleuth.Sampler;
+import org.springframework.cloud.sleuth.SpanReporter;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * Configuration of trace sampling.
+ * <p>
+ * New traces are sampled by {@link TraceSampler} with probability symbiote.tracing.probability, but at most
+ * symbiote.tracing.rate traces per second. Unless symbiote.tracing.tail.enabled is false, every span reporter is
+ * wrapped in {@link TailSamplingSpanReporter}, which additionally exports traces of requests slower than
+ * symbiote.tracing.tail.slowThreshold milliseconds or failed.
+ */
+@Configuration
+public class TracingConfig {
+
+    @Bean
+    public Sampler defaultSampler(@Value("${symbiote.tracing.probability:1.0}") double probability,
+                                  @Value("${symbiote.tracing.rate:10}") int rate) {
+        return new TraceSampler(probability, rate);
+    }
+
+    @Bean
+    public static BeanPostProcessor tailSamplingPostProcessor() {
+        return new TailSamplingPostProcessor();
+    }
+
+    /**
+     * Wraps span reporters in {@link TailSamplingSpanReporter}. Its dependencies are looked up only when the reporter
+     * is created, so that registering this post processor doesn't initialize them too early.
+     */
+    static class TailSamplingPostProcessor implements BeanPostProcessor, BeanFactoryAware, EnvironmentAware {
+        private BeanFactory beanFactory;
+        private Environment environment;
+
+        @Override
+        public void setBeanFactory(BeanFactory beanFactory) {
+            this.beanFactory = beanFactory;
+        }
+
+        @Override
+        public void setEnvironment(Environment environment) {
+            this.environment = environment;
+        }
+
+        @Override
+        public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+            return bean;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+            if (!(bean instanceof SpanReporter) || bean instanceof TailSamplingSpanReporter
+                    || !environment.getProperty("symbiote.tracing.tail.enabled", Boolean.class, true))
+                return bean;
+
+            return new TailSamplingSpanReporter((SpanReporter) bean,
+                    beanFactory.getBean(MeterRegistry.class),
+                    environment.getProperty("symbiote.tracing.tail.slowThreshold", Long.class, 1000L),
+                    environment.getProperty("symbiote.tracing.tail.maxTraces", Integer.class, 1000),
+                    environment.getProperty("symbiote.tracing.tail.maxAge", Long.class, 60000L));
+        }
+    }
+}
@@ -1,8 +1,24 @@
 package eu.h2020.symbiote.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import eu.h2020.symbiote.cache.GeoTileCache;
+import eu.h2020.symbiote.communication.BulkheadFullException;
+import eu.h2020.symbiote.communication.Bulkheads;
+import eu.h2020.symbiote.communication.CircuitBreakers;
+import eu.h2020.symbiote.communication.CircuitOpenException;
+import eu.h2020.symbiote.communication.FanOut;
+import eu.h2020.symbiote.communication.HedgedRequestExecutor;
+import eu.h2020.symbiote.communication.ProxyMetrics;
 import eu.h2020.symbiote.communication.RabbitManager;
+import eu.h2020.symbiote.communication.ResourceUrlsBatcher;
+import eu.h2020.symbiote.communication.UpstreamService;
 import eu.h2020.symbiote.core.cci.AbstractResponseSecured;
 import eu.h2020.symbiote.core.cci.ResourceRegistryResponse;
+import eu.h2020.symbiote.core.ci.QueryResourceResult;
 import eu.h2020.symbiote.core.ci.QueryResponse;
 import eu.h2020.symbiote.core.ci.SparqlQueryRequest;
 import eu.h2020.symbiote.core.ci.SparqlQueryResponse;
@@ -10,27 +26,63 @@ import eu.h2020.symbiote.core.internal.CoreQueryRequest;
 import eu.h2020.symbiote.core.internal.CoreSparqlQueryRequest;
 import eu.h2020.symbiote.core.internal.cram.ResourceUrlsRequest;
 import eu.h2020.symbiote.core.internal.cram.ResourceUrlsResponse;
+import eu.h2020.symbiote.diagnostics.JfrEvents;
+import eu.h2020.symbiote.diagnostics.RequestTimings;
+import eu.h2020.symbiote.filters.GzipResponseFilter;
+import eu.h2020.symbiote.model.BatchQueryResult;
+import eu.h2020.symbiote.model.BulkResourceUrlsResponse;
+import eu.h2020.symbiote.model.ExtendedQueryResponse;
+import eu.h2020.symbiote.model.QueryOptions;
+import eu.h2020.symbiote.model.QueryResourceResultWithUrl;
+import eu.h2020.symbiote.model.ResourceUrlFailure;
 import eu.h2020.symbiote.security.commons.SecurityConstants;
 import eu.h2020.symbiote.security.commons.enums.ManagementStatus;
 import eu.h2020.symbiote.security.commons.enums.ValidationStatus;
 import eu.h2020.symbiote.security.commons.exceptions.custom.InvalidArgumentsException;
 import eu.h2020.symbiote.security.communication.payloads.*;
+import eu.h2020.symbiote.subscriptions.SubscriptionManager;
+import eu.h2020.symbiote.utils.CoreQueryRequests;
+import eu.h2020.symbiote.utils.CredentialsDigests;
+import eu.h2020.symbiote.utils.FieldProjection;
+import eu.h2020.symbiote.utils.MediaTypes;
+import eu.h2020.symbiote.utils.QueryCursor;
 import io.swagger.annotations.*;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.http.client.HttpClient;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
-
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.io.UnsupportedEncodingException;
+import java.net.SocketTimeoutException;
 import java.net.URLDecoder;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -48,21 +100,78 @@ public class CoreInterfaceController {
     private static final String BTM_PREFIX = "/btm";
     private static final String ERROR_PROXY_STATUS_MSG = "Error status code in proxy communication: ";
     private static final String ERROR_GATEWAY_TIMEOUT = "Timeout occured when contacting symbIoTe Core services";
+    private static final String ERROR_INVALID_CURSOR = "Invalid cursor, it doesn't belong to this query";
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int STREAM_FLUSH_INTERVAL = 50;
 
     public static final Log log = LogFactory.getLog(CoreInterfaceController.class);
 
     private final RabbitManager rabbitManager;
     private RestTemplate restTemplate;
+    private HedgedRequestExecutor hedgedRequestExecutor;
+    private Bulkheads bulkheads;
+    private CircuitBreakers circuitBreakers;
+    private ResourceUrlsBatcher resourceUrlsBatcher;
+    private GeoTileCache geoTileCache;
+    private SubscriptionManager subscriptionManager;
+    private ProxyMetrics proxyMetrics;
 
     @Value("${symbiote.aamUrl}")
     private String aamUrl;
 
+    @Value("${symbiote.aamHedgeUrl:}")
+    private String aamHedgeUrl;
+
     @Value("${symbiote.admUrl}")
     private String admUrl;
 
     @Value("${symbiote.btmUrl}")
     private String btmUrl;
 
+    @Value("${symbiote.compression.passThrough:true}")
+    private boolean compressionPassThrough;
+
+    @Value("${symbiote.proxy.connectTimeout:5000}")
+    private int proxyConnectTimeout;
+
+    @Value("${symbiote.proxy.readTimeout:30000}")
+    private int proxyReadTimeout;
+
+    @Value("${symbiote.proxy.maxConnections:200}")
+    private int proxyMaxConnections;
+
+    @Value("${symbiote.batch.maxQueries:100}")
+    private int batchMaxQueries = 100;
+
+    @Value("${symbiote.batch.maxConcurrency:10}")
+    private int batchMaxConcurrency = 10;
+
+    @Value("${symbiote.batch.timeout:20000}")
+    private long batchTimeout = 20000;
+
+    @Value("${symbiote.resourceUrls.chunkSize:50}")
+    private int resourceUrlsChunkSize = 50;
+
+    @Value("${symbiote.resourceUrls.maxConcurrency:4}")
+    private int resourceUrlsMaxConcurrency = 4;
+
+    @Value("${symbiote.resourceUrls.timeout:20000}")
+    private long resourceUrlsTimeout = 20000;
+
+    @Value("${symbiote.resourceUrls.maxIds:10000}")
+    private int resourceUrlsMaxIds = 10000;
+
+    @Value("${symbiote.query.fanOutTimeout:10000}")
+    private long queryFanOutTimeout = 10000;
+
+    @Value("${symbiote.query.defaultLimit:100}")
+    private int queryDefaultLimit = 100;
+
+    @Value("${symbiote.query.maxLimit:1000}")
+    private int queryMaxLimit = 1000;
+
+    private final ObjectMapper mapper = FieldProjection.configure(new ObjectMapper());
+
     /**
      * Class constructor which autowires RabbitManager bean.
      *
@@ -72,6 +181,110 @@ public class CoreInterfaceController {
     public CoreInterfaceController(RabbitManager rabbitManager) {
         this.rabbitManager = rabbitManager;
         this.restTemplate = new RestTemplate();
+        this.hedgedRequestExecutor = new HedgedRequestExecutor();
+        this.bulkheads = new Bulkheads();
+        this.circuitBreakers = new CircuitBreakers();
+        this.resourceUrlsBatcher = new ResourceUrlsBatcher();
+        this.geoTileCache = new GeoTileCache();
+        this.subscriptionManager = new SubscriptionManager();
+        this.proxyMetrics = new ProxyMetrics();
+    }
+
+    /**
+     * Method used to set up HTTP client of proxied requests, its connect and read timeouts and metrics.
+     * <p>
+     * Connections are pooled, up to symbiote.proxy.maxConnections per upstream. The client neither decompresses
+     * responses, as compressed ones are passed through, nor keeps cookies, as it is shared by all clients.
+     */
+    @PostConstruct
+    public void init() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", this.proxyMetrics.timed(PlainConnectionSocketFactory.getSocketFactory()))
+                .register("https", this.proxyMetrics.timed(SSLConnectionSocketFactory.getSocketFactory()))
+                .build());
+        connectionManager.setMaxTotal(proxyMaxConnections * UpstreamService.values().length);
+        connectionManager.setDefaultMaxPerRoute(proxyMaxConnections);
+        HttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .disableContentCompression()
+                .disableCookieManagement()
+                .build();
+
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        requestFactory.setConnectTimeout(proxyConnectTimeout);
+        requestFactory.setReadTimeout(proxyReadTimeout);
+        this.restTemplate.setRequestFactory(requestFactory);
+        this.restTemplate.getInterceptors().add(this.proxyMetrics.interceptor());
+    }
+
+    /**
+     * Sets bulkheads isolating calls to each upstream service.
+     *
+     * @param bulkheads Bulkheads bean
+     */
+    @Autowired
+    public void setBulkheads(Bulkheads bulkheads) {
+        this.bulkheads = bulkheads;
+    }
+
+    /**
+     * Sets circuit breakers guarding calls to each upstream service.
+     *
+     * @param circuitBreakers CircuitBreakers bean
+     */
+    @Autowired
+    public void setCircuitBreakers(CircuitBreakers circuitBreakers) {
+        this.circuitBreakers = circuitBreakers;
+    }
+
+    /**
+     * Sets executor used to hedge idempotent AAM reads.
+     *
+     * @param hedgedRequestExecutor HedgedRequestExecutor bean
+     */
+    @Autowired
+    public void setHedgedRequestExecutor(HedgedRequestExecutor hedgedRequestExecutor) {
+        this.hedgedRequestExecutor = hedgedRequestExecutor;
+    }
+
+    /**
+     * Sets batcher merging concurrent resource URLs lookups.
+     *
+     * @param resourceUrlsBatcher ResourceUrlsBatcher bean
+     */
+    @Autowired
+    public void setResourceUrlsBatcher(ResourceUrlsBatcher resourceUrlsBatcher) {
+        this.resourceUrlsBatcher = resourceUrlsBatcher;
+    }
+
+    /**
+     * Sets cache answering location queries from results of their geographic tile.
+     *
+     * @param geoTileCache GeoTileCache bean
+     */
+    @Autowired
+    public void setGeoTileCache(GeoTileCache geoTileCache) {
+        this.geoTileCache = geoTileCache;
+    }
+
+    /**
+     * Sets manager of continuous query subscriptions.
+     *
+     * @param subscriptionManager SubscriptionManager bean
+     */
+    @Autowired
+    public void setSubscriptionManager(SubscriptionManager subscriptionManager) {
+        this.subscriptionManager = subscriptionManager;
+    }
+
+    /**
+     * Sets metrics of proxied requests.
+     *
+     * @param proxyMetrics ProxyMetrics bean
+     */
+    @Autowired
+    public void setProxyMetrics(ProxyMetrics proxyMetrics) {
+        this.proxyMetrics = proxyMetrics;
     }
 
     private ResponseEntity handleBadSecurityHeaders(InvalidArgumentsException e) {
@@ -122,8 +335,16 @@ public class CoreInterfaceController {
      * optional. When passing multiple parameters, including multiple observed_properties, they are all linked with
      * logical AND operator. In "text" parameters (name, description, platformName, owner, locationName), * can be used
      * as a wildcard in the beginning or/and in the end of value.
+     * <p>
+     * Results can be paged with limit parameter. When more results are available, 'X-Next-Cursor' response header
+     * contains an opaque cursor which, passed as cursor parameter together with the same query, returns the next page.
+     * Pages are not snapshots: every page runs the whole query in the Registry again (which also authorizes the caller
+     * and signs the service response) and returns the results at the cursor's offset, so fetching N pages costs N
+     * searches, and resources registered or removed in the meantime shift the following pages.
+     * If the client accepts {@value MediaTypes#APPLICATION_NDJSON_VALUE}, found resources are streamed one per line.
      *
-     * @param platformId        symbIoTe ID of a platform that resource belongs to
+     * @param platformId        symbIoTe ID of a platform that resource belongs to; when multiple IDs are passed, every
+     *                          platform is searched concurrently and the results are merged
      * @param platformName      name of a platform that resource belongs to
      * @param owner             owner of the resource
      * @param name              name of the resource
@@ -136,18 +357,23 @@ public class CoreInterfaceController {
      * @param observed_property property observed by resource; can be set multiple times to indicate more than one
      *                          observed property
      * @param resource_type     type of queried resource
+     * @param options           options controlling how the results are returned, e.g. withUrls to get Interworking
+     *                          Interface URLs of found resources in the same response, limit and cursor to page them,
+     *                          fields to return only some attributes of found resources (e.g. id,name,locatedAt)
      * @param httpHeaders       request headers
      * @return query result as body or null along with appropriate error HTTP status code
      */
+    @CrossOrigin(exposedHeaders = {NEXT_CURSOR_HEADER})
     @RequestMapping(method = RequestMethod.GET,
             value = "/query")
     @ApiOperation(value = "Query for resources",
-            notes = "Search for resources using defined query parameters",
+            notes = "Search for resources using defined query parameters. Results can be paged with limit and cursor; " +
+                    "every page runs the whole query again, so pages may skip or repeat resources registered or removed in the meantime",
             response = QueryResponse.class)
     @ApiResponses(value = {
             @ApiResponse(code = 500, message = "Query execution error on server side")})
-    public ResponseEntity query(@ApiParam(value = "ID of a platform that resource belongs to") @RequestParam(value = "platform_id", required = false) String platform_id,
-                                @ApiParam(value = "ID of a platform that resource belongs to") @RequestParam(value = "platformId", required = false) String platformId,
+    public ResponseEntity query(@ApiParam(value = "ID of a platform that resource belongs to; can be passed multiple times to search multiple platforms at once") @RequestParam(value = "platform_id", required = false) String[] platform_id,
+                                @ApiParam(value = "ID of a platform that resource belongs to; can be passed multiple times to search multiple platforms at once") @RequestParam(value = "platformId", required = false) String[] platformId,
                                 @ApiParam(value = "name of a platform that resource belongs to") @RequestParam(value = "platform_name", required = false) String platform_name,
                                 @ApiParam(value = "name of a platform that resource belongs to") @RequestParam(value = "platformName", required = false) String platformName,
                                 @ApiParam(value = "owner of a platform that resource belongs to") @RequestParam(value = "owner", required = false) String owner,
@@ -170,6 +396,7 @@ public class CoreInterfaceController {
                                 @ApiParam(value = "type of a resource") @RequestParam(value = "resourceType", required = false) String resourceType,
                                 @ApiParam(value = "whether results should be ranked") @RequestParam(value = "should_rank", required = false) Boolean should_rank,
                                 @ApiParam(value = "whether results should be ranked") @RequestParam(value = "shouldRank", required = false) Boolean shouldRank,
+                                @ModelAttribute QueryOptions options,
                                 @ApiParam(value = "Headers, containing X-Auth-Timestamp, X-Auth-Size and X-Auth-{1..n} fields", required = true) @RequestHeader HttpHeaders httpHeaders) {
 
         try {
@@ -178,46 +405,478 @@ public class CoreInterfaceController {
                 throw new InvalidArgumentsException();
             SecurityRequest securityRequest = new SecurityRequest(httpHeaders.toSingleValueMap());
 
-            CoreQueryRequest queryRequest = new CoreQueryRequest();
-            queryRequest.setPlatform_id(platformId != null ? platformId : platform_id);
-            queryRequest.setPlatform_name(platformName != null ? platformName : platform_name);
-            queryRequest.setOwner(owner);
-            queryRequest.setName(name);
-            queryRequest.setId(id);
-            queryRequest.setDescription(description);
-            queryRequest.setLocation_name(locationName != null ? locationName : location_name);
-            queryRequest.setLocation_lat(locationLatitude != null ? locationLatitude : location_lat);
-            queryRequest.setLocation_long(locationLongitude != null ? locationLongitude : location_long);
-            queryRequest.setMax_distance(maxDistance != null ? maxDistance : max_distance);
-            queryRequest.setResource_type(resourceType != null ? resourceType : resource_type);
-            queryRequest.setShould_rank(shouldRank != null ? shouldRank : should_rank);
-            queryRequest.setSecurityRequest(securityRequest);
-
-            if (observedProperty != null) {
-                queryRequest.setObserved_property(Arrays.asList(observedProperty).stream().map(s -> decodeUrlParameters(s)).collect(Collectors.toList()));
-            } else if (observed_property != null) {
-                queryRequest.setObserved_property(Arrays.asList(observed_property).stream().map(s -> decodeUrlParameters(s)).collect(Collectors.toList()));
+            QueryCursor cursor = null;
+            Integer limit = options != null ? options.getLimit() : null;
+            if (options != null && options.getCursor() != null) {
+                try {
+                    cursor = QueryCursor.decode(options.getCursor());
+                } catch (IllegalArgumentException e) {
+                    return new ResponseEntity<>(new QueryResponse(HttpStatus.BAD_REQUEST.value(), ERROR_INVALID_CURSOR, null), HttpStatus.BAD_REQUEST);
+                }
+                if (limit == null)
+                    limit = queryDefaultLimit;
+            }
+            if (limit != null && (limit < 1 || limit > queryMaxLimit))
+                return new ResponseEntity<>(new QueryResponse(HttpStatus.BAD_REQUEST.value(), "Limit must be between 1 and " + queryMaxLimit, null), HttpStatus.BAD_REQUEST);
+
+            String[] platformIds = toPlatformIds(platform_id, platformId);
+            CoreQueryRequest queryRequest = toQueryRequest(platformIds, platform_name, platformName, owner, name, id,
+                    description, location_name, locationName, location_lat, locationLatitude, location_long, locationLongitude,
+                    max_distance, maxDistance, observed_property, observedProperty, observed_property_iri, observedPropertyIri,
+                    resource_type, resourceType, should_rank, shouldRank, securityRequest);
+
+            String queryHash = QueryCursor.hash(platformIds, queryRequest.getPlatform_name(), owner, name, id,
+                    description, queryRequest.getLocation_name(), queryRequest.getLocation_lat(), queryRequest.getLocation_long(),
+                    queryRequest.getMax_distance(), queryRequest.getObserved_property(), queryRequest.getObserved_property_iri(),
+                    queryRequest.getResource_type(), queryRequest.getShould_rank());
+            if (cursor != null && !cursor.getQueryHash().equals(queryHash))
+                return new ResponseEntity<>(new QueryResponse(HttpStatus.BAD_REQUEST.value(), ERROR_INVALID_CURSOR, null), HttpStatus.BAD_REQUEST);
+
+            QueryResponse resources = platformIds.length > 1 ? searchPlatforms(queryRequest, platformIds)
+                    : geoTileCache.search(queryRequest, query -> guarded(UpstreamService.REGISTRY, () -> this.rabbitManager.sendSearchRequest(query)));
+            if (resources == null) {
+                return new ResponseEntity<>(new QueryResponse(HttpStatus.GATEWAY_TIMEOUT.value(), ERROR_GATEWAY_TIMEOUT, null), getServiceResponseHeaders(resources), HttpStatus.GATEWAY_TIMEOUT);
+            }
+
+            boolean successful = resources.getBody() != null && HttpStatus.valueOf(resources.getStatus()).is2xxSuccessful();
+            String nextCursor = null;
+            if (limit != null && successful) {
+                int offset = cursor != null ? cursor.getOffset() : 0;
+                int size = resources.getBody().size();
+                if (offset + limit < size)
+                    nextCursor = new QueryCursor(offset + limit, queryHash).encode();
+                resources = page(resources, Math.min(offset, size), Math.min(offset + limit, size));
             }
 
+            if (options != null && options.isWithUrls() && successful)
+                resources = withResourceUrls(resources, securityRequest);
+
+            HttpHeaders responseHeaders = getServiceResponseHeaders(resources);
+            if (nextCursor != null)
+                responseHeaders.set(NEXT_CURSOR_HEADER, nextCursor);
 
-            if (observedPropertyIri != null) {
-                queryRequest.setObserved_property_iri(Arrays.asList(observedPropertyIri).stream().map(s -> decodeUrlParameters(s)).collect(Collectors.toList()));
-            } else if (observedPropertyIri != null) {
-                queryRequest.setObserved_property_iri(Arrays.asList(observed_property_iri).stream().map(s -> decodeUrlParameters(s)).collect(Collectors.toList()));
+            String[] fields = options != null ? options.getFields() : null;
+            log.debug("Returning search query in total " + (System.currentTimeMillis() - in) + " ms.");
+            if (successful && MediaTypes.acceptsNdJson(httpHeaders.getAccept())) {
+                responseHeaders.setContentType(MediaTypes.APPLICATION_NDJSON);
+                return new ResponseEntity<>(streamResources(resources, FieldProjection.filterFor(fields)), responseHeaders, HttpStatus.valueOf(resources.getStatus()));
             }
+            return new ResponseEntity<>(projected(resources, fields), responseHeaders, HttpStatus.valueOf(resources.getStatus()));
+        } catch (InvalidArgumentsException e) {
+            return handleBadSecurityHeaders(e);
+        } catch (BulkheadFullException | CircuitOpenException e) {
+            log.warn(e.getMessage());
+            return new ResponseEntity<>(new QueryResponse(HttpStatus.SERVICE_UNAVAILABLE.value(), e.getMessage(), null), HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (ResourceAccessException e) {
+            log.warn(e.getMessage());
+            return new ResponseEntity<>(new QueryResponse(HttpStatus.GATEWAY_TIMEOUT.value(), ERROR_GATEWAY_TIMEOUT, null), HttpStatus.GATEWAY_TIMEOUT);
+        }
+    }
 
-            QueryResponse resources = this.rabbitManager.sendSearchRequest(queryRequest);
-            if (resources == null) {
-                return new ResponseEntity<>(new QueryResponse(HttpStatus.GATEWAY_TIMEOUT.value(), ERROR_GATEWAY_TIMEOUT, null), getServiceResponseHeaders(resources), HttpStatus.GATEWAY_TIMEOUT);
+    /**
+     * Executes search query with default options, see
+     * {@link #query(String[], String[], String, String, String, String, String, String, String, String, Double, Double, Double, Double, Integer, Integer, String[], String[], String[], String[], String, String, Boolean, Boolean, QueryOptions, HttpHeaders)}.
+     */
+    public ResponseEntity query(String platform_id, String platformId, String platform_name, String platformName, String owner,
+                                String name, String id, String description, String location_name, String locationName,
+                                Double location_lat, Double locationLatitude, Double location_long, Double locationLongitude,
+                                Integer max_distance, Integer maxDistance, String[] observed_property, String[] observedProperty,
+                                String[] observed_property_iri, String[] observedPropertyIri, String resource_type, String resourceType,
+                                Boolean should_rank, Boolean shouldRank, HttpHeaders httpHeaders) {
+        return query(platform_id != null ? new String[]{platform_id} : null, platformId != null ? new String[]{platformId} : null, platform_name, platformName, owner, name, id, description, location_name, locationName, location_lat, locationLatitude, location_long, locationLongitude, max_distance, maxDistance, observed_property, observedProperty, observed_property_iri, observedPropertyIri, resource_type, resourceType, should_rank, shouldRank, new QueryOptions(), httpHeaders);
+    }
+
+    /**
+     * Endpoint subscribing to results of a query, so that clients don't need to poll {@link #query} to notice new
+     * resources. Query parameters are the same as of the search query.
+     * <p>
+     * Search response, including the Registry's service response, is sent immediately as "results" Server-Sent
+     * Event. Whenever resources are registered,
+     * modified or removed so that the results change, resources which started to match the query are sent as "added"
+     * event and IDs of resources which no longer match it as "removed" event. Subscriptions end after
+     * symbiote.subscriptions.maxDuration milliseconds, see {@link SubscriptionManager}.
+     *
+     * @param httpHeaders request headers
+     * @return stream of events, or empty body along with appropriate error HTTP status code; invalid security headers
+     * are reported as a single "error" event
+     */
+    @RequestMapping(method = RequestMethod.GET,
+            value = "/query/subscription",
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ApiOperation(value = "Subscribe to query results",
+            notes = "Sends the initial results and then additions and removals of resources matching the query as Server-Sent Events")
+    @ApiResponses(value = {
+            @ApiResponse(code = 503, message = "Too many active subscriptions or Registry unavailable")})
+    public ResponseEntity<SseEmitter> subscribe(@ApiParam(value = "ID of a platform that resource belongs to; can be passed multiple times to subscribe to multiple platforms at once") @RequestParam(value = "platform_id", required = false) String[] platform_id,
+                                                @ApiParam(value = "ID of a platform that resource belongs to; can be passed multiple times to subscribe to multiple platforms at once") @RequestParam(value = "platformId", required = false) String[] platformId,
+                                                @ApiParam(value = "name of a platform that resource belongs to") @RequestParam(value = "platform_name", required = false) String platform_name,
+                                                @ApiParam(value = "name of a platform that resource belongs to") @RequestParam(value = "platformName", required = false) String platformName,
+                                                @ApiParam(value = "owner of a platform that resource belongs to") @RequestParam(value = "owner", required = false) String owner,
+                                                @ApiParam(value = "name of a resource") @RequestParam(value = "name", required = false) String name,
+                                                @ApiParam(value = "ID of a resource") @RequestParam(value = "id", required = false) String id,
+                                                @ApiParam(value = "description of a resource") @RequestParam(value = "description", required = false) String description,
+                                                @ApiParam(value = "name of resource's location") @RequestParam(value = "location_name", required = false) String location_name,
+                                                @ApiParam(value = "name of resource's location") @RequestParam(value = "locationName", required = false) String locationName,
+                                                @ApiParam(value = "latitude of resource's location") @RequestParam(value = "location_lat", required = false) Double location_lat,
+                                                @ApiParam(value = "latitude of resource's location") @RequestParam(value = "locationLatitude", required = false) Double locationLatitude,
+                                                @ApiParam(value = "longitude of resource's location") @RequestParam(value = "location_long", required = false) Double location_long,
+                                                @ApiParam(value = "longitude of resource's location") @RequestParam(value = "locationLongitude", required = false) Double locationLongitude,
+                                                @ApiParam(value = "maximum radius from specified latitude and longitude to look for resources") @RequestParam(value = "max_distance", required = false) Integer max_distance,
+                                                @ApiParam(value = "maximum radius from specified latitude and longitude to look for resources") @RequestParam(value = "maxDistance", required = false) Integer maxDistance,
+                                                @ApiParam(value = "recource's observed property; can be passed multiple times (acts as AND)") @RequestParam(value = "observed_property", required = false) String[] observed_property,
+                                                @ApiParam(value = "recource's observed property; can be passed multiple times (acts as AND)") @RequestParam(value = "observedProperty", required = false) String[] observedProperty,
+                                                @ApiParam(value = "recource's observed property by using full IRI; can be passed multiple times (acts as AND)") @RequestParam(value = "observed_property_iri", required = false) String[] observed_property_iri,
+                                                @ApiParam(value = "recource's observed property by using full IRI; can be passed multiple times (acts as AND)") @RequestParam(value = "observedPropertyIri", required = false) String[] observedPropertyIri,
+                                                @ApiParam(value = "type of a resource") @RequestParam(value = "resource_type", required = false) String resource_type,
+                                                @ApiParam(value = "type of a resource") @RequestParam(value = "resourceType", required = false) String resourceType,
+                                                @ApiParam(value = "whether results should be ranked") @RequestParam(value = "should_rank", required = false) Boolean should_rank,
+                                                @ApiParam(value = "whether results should be ranked") @RequestParam(value = "shouldRank", required = false) Boolean shouldRank,
+                                                @ApiParam(value = "Headers, containing X-Auth-Timestamp, X-Auth-Size and X-Auth-{1..n} fields", required = true) @RequestHeader HttpHeaders httpHeaders) {
+        try {
+            if (httpHeaders == null)
+                throw new InvalidArgumentsException();
+            if (!subscriptionManager.isEnabled())
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            if (!subscriptionManager.hasCapacity()) {
+                log.warn("Too many active subscriptions, rejecting subscription");
+                return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
             }
+            SecurityRequest securityRequest = new SecurityRequest(httpHeaders.toSingleValueMap());
 
-            log.debug("Returning search query in total " + (System.currentTimeMillis() - in) + " ms.");
-            return new ResponseEntity<>(resources, getServiceResponseHeaders(resources), HttpStatus.valueOf(resources.getStatus()));
+            String[] platformIds = toPlatformIds(platform_id, platformId);
+            CoreQueryRequest queryRequest = toQueryRequest(platformIds, platform_name, platformName, owner, name, id,
+                    description, location_name, locationName, location_lat, locationLatitude, location_long, locationLongitude,
+                    max_distance, maxDistance, observed_property, observedProperty, observed_property_iri, observedPropertyIri,
+                    resource_type, resourceType, should_rank, shouldRank, securityRequest);
+
+            // Subscriptions bypass the tile cache, as re-queries must see the latest Registry state
+            Function<CoreQueryRequest, QueryResponse> search = platformIds.length > 1 ? query -> searchPlatforms(query, platformIds)
+                    : query -> guarded(UpstreamService.REGISTRY, () -> this.rabbitManager.sendSearchRequest(query));
+            QueryResponse resources = search.apply(queryRequest);
+            if (resources == null)
+                return new ResponseEntity<>(HttpStatus.GATEWAY_TIMEOUT);
+            if (resources.getBody() == null || !HttpStatus.valueOf(resources.getStatus()).is2xxSuccessful())
+                return new ResponseEntity<>(HttpStatus.valueOf(resources.getStatus()));
+
+            SseEmitter emitter = subscriptionManager.subscribe(queryRequest, platformIds, resources, search);
+            if (emitter == null) {
+                log.warn("Too many active subscriptions, rejecting subscription");
+                return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            return new ResponseEntity<>(emitter, HttpStatus.OK);
+        } catch (InvalidArgumentsException e) {
+            return toErrorEvent(handleBadSecurityHeaders(e));
+        } catch (BulkheadFullException | CircuitOpenException e) {
+            log.warn(e.getMessage());
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (ResourceAccessException e) {
+            log.warn(e.getMessage());
+            return new ResponseEntity<>(HttpStatus.GATEWAY_TIMEOUT);
+        }
+    }
+
+    /**
+     * Converts error response into a stream of a single "error" event carrying its body, as subscription endpoint
+     * produces Server-Sent Events only.
+     */
+    private ResponseEntity<SseEmitter> toErrorEvent(ResponseEntity<?> error) {
+        SseEmitter emitter = new SseEmitter();
+        try {
+            emitter.send(SseEmitter.event().name(SubscriptionManager.ERROR_EVENT).data(error.getBody(), MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return new ResponseEntity<>(emitter, error.getHeaders(), error.getStatusCode());
+    }
+
+    /**
+     * Gets distinct non-empty platform IDs passed in either of the parameters.
+     */
+    static String[] toPlatformIds(String[] platform_id, String[] platformId) {
+        return Arrays.stream(platformId != null ? platformId : platform_id != null ? platform_id : new String[0])
+                .filter(platform -> platform != null && !platform.isEmpty())
+                .distinct()
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Creates Registry query from search parameters, see {@link #query}. Platform ID is set only if a single one is
+     * passed, queries of multiple platforms are sent per platform.
+     */
+    static CoreQueryRequest toQueryRequest(String[] platformIds, String platform_name, String platformName, String owner,
+                                           String name, String id, String description, String location_name, String locationName,
+                                           Double location_lat, Double locationLatitude, Double location_long, Double locationLongitude,
+                                           Integer max_distance, Integer maxDistance, String[] observed_property, String[] observedProperty,
+                                           String[] observed_property_iri, String[] observedPropertyIri, String resource_type, String resourceType,
+                                           Boolean should_rank, Boolean shouldRank, SecurityRequest securityRequest) {
+        CoreQueryRequest queryRequest = new CoreQueryRequest();
+        queryRequest.setPlatform_id(platformIds.length == 1 ? platformIds[0] : null);
+        queryRequest.setPlatform_name(platformName != null ? platformName : platform_name);
+        queryRequest.setOwner(owner);
+        queryRequest.setName(name);
+        queryRequest.setId(id);
+        queryRequest.setDescription(description);
+        queryRequest.setLocation_name(locationName != null ? locationName : location_name);
+        queryRequest.setLocation_lat(locationLatitude != null ? locationLatitude : location_lat);
+        queryRequest.setLocation_long(locationLongitude != null ? locationLongitude : location_long);
+        queryRequest.setMax_distance(maxDistance != null ? maxDistance : max_distance);
+        queryRequest.setResource_type(resourceType != null ? resourceType : resource_type);
+        queryRequest.setShould_rank(shouldRank != null ? shouldRank : should_rank);
+        queryRequest.setSecurityRequest(securityRequest);
+
+        if (observedProperty != null) {
+            queryRequest.setObserved_property(Arrays.asList(observedProperty).stream().map(s -> decodeUrlParameters(s)).collect(Collectors.toList()));
+        } else if (observed_property != null) {
+            queryRequest.setObserved_property(Arrays.asList(observed_property).stream().map(s -> decodeUrlParameters(s)).collect(Collectors.toList()));
+        }
+
+        if (observedPropertyIri != null) {
+            queryRequest.setObserved_property_iri(Arrays.asList(observedPropertyIri).stream().map(s -> decodeUrlParameters(s)).collect(Collectors.toList()));
+        } else if (observed_property_iri != null) {
+            queryRequest.setObserved_property_iri(Arrays.asList(observed_property_iri).stream().map(s -> decodeUrlParameters(s)).collect(Collectors.toList()));
+        }
+        return queryRequest;
+    }
+
+    /**
+     * Searches multiple platforms by sending one query per platform concurrently and merging their results.
+     * <p>
+     * Results are ordered by platforms as passed by the client (or by ranking if requested) and resources returned by
+     * more platform queries are included only once. Platforms whose queries failed or didn't complete within
+     * symbiote.query.fanOutTimeout milliseconds are listed in unansweredPlatforms; if no platform answered, status of
+     * the first failure is returned.
+     */
+    private QueryResponse searchPlatforms(CoreQueryRequest queryRequest, String[] platformIds) {
+        List<CoreQueryRequest> queries = Arrays.stream(platformIds)
+                .map(platformId -> {
+                    CoreQueryRequest platformQuery = CoreQueryRequests.copy(queryRequest);
+                    platformQuery.setPlatform_id(platformId);
+                    return platformQuery;
+                })
+                .collect(Collectors.toList());
+        QueryResponse[] responses = new QueryResponse[queries.size()];
+        executeBatch(queries, batchMaxConcurrency, queryFanOutTimeout, (index, response) -> responses[index] = response);
+
+        List<QueryResourceResult> results = new ArrayList<>();
+        Set<String> resourceIds = new HashSet<>();
+        List<String> unansweredPlatforms = new ArrayList<>();
+        QueryResponse firstAnswer = null;
+        QueryResponse firstFailure = null;
+        for (int index = 0; index < responses.length; index++) {
+            QueryResponse response = responses[index];
+            if (response.getBody() == null || !HttpStatus.valueOf(response.getStatus()).is2xxSuccessful()) {
+                unansweredPlatforms.add(platformIds[index]);
+                if (firstFailure == null)
+                    firstFailure = response;
+                continue;
+            }
+
+            if (firstAnswer == null)
+                firstAnswer = response;
+            for (QueryResourceResult resource : response.getBody()) {
+                if (resource.getId() == null || resourceIds.add(resource.getId()))
+                    results.add(resource);
+            }
+        }
+
+        if (firstAnswer == null)
+            return firstFailure;
+        if (Boolean.TRUE.equals(queryRequest.getShould_rank()))
+            results.sort(Comparator.comparingDouble(QueryResourceResult::getRanking).reversed());
+
+        ExtendedQueryResponse merged = new ExtendedQueryResponse(new QueryResponse(firstAnswer.getStatus(),
+                unansweredPlatforms.isEmpty() ? firstAnswer.getMessage() : "Some platforms did not answer: " + String.join(", ", unansweredPlatforms),
+                results));
+        merged.setServiceResponse(firstAnswer.getServiceResponse());
+        if (!unansweredPlatforms.isEmpty())
+            merged.setUnansweredPlatforms(unansweredPlatforms);
+        return merged;
+    }
+
+    /**
+     * Extends search results with Interworking Interface URLs of found resources, obtained from Core Resource Access
+     * Monitor within the same request.
+     */
+    private QueryResponse withResourceUrls(QueryResponse resources, SecurityRequest securityRequest) {
+        List<String> resourceIds = resources.getBody().stream()
+                .map(QueryResourceResult::getId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+
+        ExtendedQueryResponse response = new ExtendedQueryResponse(resources);
+        ResourceUrlsResponse urls = getResourceUrlsInChunks(resourceIds, securityRequest);
+        response.setResourceUrls(urls.getBody());
+        response.setResourceUrlsServiceResponse(urls.getServiceResponse());
+        if (!HttpStatus.valueOf(urls.getStatus()).is2xxSuccessful()) {
+            response.setResourceUrlsStatus(urls.getStatus());
+            response.setResourceUrlsMessage(urls.getMessage());
+        }
+        return response;
+    }
+
+    /**
+     * Creates response containing only results from the given range.
+     */
+    private QueryResponse page(QueryResponse resources, int from, int to) {
+        QueryResponse page = new QueryResponse(resources.getStatus(), resources.getMessage(), new ArrayList<>(resources.getBody().subList(from, to)));
+        page.setServiceResponse(resources.getServiceResponse());
+        if (resources instanceof ExtendedQueryResponse) {
+            ExtendedQueryResponse extendedPage = new ExtendedQueryResponse(page);
+            extendedPage.setUnansweredPlatforms(((ExtendedQueryResponse) resources).getUnansweredPlatforms());
+            return extendedPage;
+        }
+        return page;
+    }
+
+    /**
+     * Wraps the body so that search results in it are serialized only with requested fields, if any.
+     */
+    private Object projected(Object body, String[] fields) {
+        if (fields == null || fields.length == 0)
+            return body;
+
+        MappingJacksonValue projected = new MappingJacksonValue(body);
+        projected.setFilters(FieldProjection.filterFor(fields));
+        return projected;
+    }
+
+    /**
+     * Creates body writing found resources one per line as they are serialized, so that the client receives the first
+     * results before the rest is written. If resource URLs were requested, each line also contains resourceUrl field.
+     */
+    private StreamingResponseBody streamResources(QueryResponse resources, FilterProvider filters) {
+        Map<String, String> resourceUrls = resources instanceof ExtendedQueryResponse ? ((ExtendedQueryResponse) resources).getResourceUrls() : null;
+        ObjectWriter writer = mapper.writer(filters).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        return outputStream -> {
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(outputStream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+                int written = 0;
+                for (QueryResourceResult resource : resources.getBody()) {
+                    if (resourceUrls != null)
+                        writer.writeValue(generator, new QueryResourceResultWithUrl(resource, resourceUrls.get(resource.getId())));
+                    else
+                        writer.writeValue(generator, resource);
+                    generator.writeRaw('\n');
+                    if (written++ % STREAM_FLUSH_INTERVAL == 0)
+                        generator.flush();
+                }
+            }
+        };
+    }
+
+    /**
+     * Endpoint executing multiple search queries in a single request.
+     * <p>
+     * Queries are sent to the Registry concurrently (at most symbiote.batch.maxConcurrency at once) and all of them
+     * must complete within symbiote.batch.timeout milliseconds; queries which don't are answered with 504 status.
+     * Every query has its own status in the result, while the batch itself is answered with 200.
+     * <p>
+     * If the client accepts {@value MediaTypes#APPLICATION_NDJSON_VALUE}, results are streamed one per line in the
+     * order in which queries complete. Otherwise all results are returned in one JSON array ordered as the queries.
+     *
+     * @param queries     queries having the same fields as parameters of {@link #query}
+     * @param fields      attributes of found resources which should be returned, all of them if not specified
+     * @param httpHeaders request headers
+     * @return results of all queries
+     */
+    @ApiOperation(value = "Batch query for resources",
+            notes = "Executes multiple search queries concurrently. Results are returned in the order of queries, or streamed as newline delimited JSON in the order of completion when application/x-ndjson is accepted",
+            response = BatchQueryResult.class,
+            responseContainer = "List")
+    @ApiResponses(value = {
+            @ApiResponse(code = 400, message = "Too many queries in a batch", response = QueryResponse.class)})
+    @RequestMapping(method = RequestMethod.POST,
+            value = "/query/batch")
+    public ResponseEntity batchQuery(@ApiParam(value = "Queries with the same fields as parameters of a single query", required = true) @RequestBody List<CoreQueryRequest> queries,
+                                     @ApiParam(value = "attributes of found resources to return, e.g. id,name,locatedAt") @RequestParam(value = "fields", required = false) String[] fields,
+                                     @ApiParam(value = "Headers, containing X-Auth-Timestamp, X-Auth-Size and X-Auth-{1..n} fields", required = true) @RequestHeader HttpHeaders httpHeaders) {
+        try {
+            if (httpHeaders == null)
+                throw new InvalidArgumentsException();
+            SecurityRequest securityRequest = new SecurityRequest(httpHeaders.toSingleValueMap());
+
+            if (queries == null || queries.isEmpty() || queries.size() > batchMaxQueries)
+                return new ResponseEntity<>(new QueryResponse(HttpStatus.BAD_REQUEST.value(), "Batch has to contain from 1 to " + batchMaxQueries + " queries", null), HttpStatus.BAD_REQUEST);
+            queries.forEach(query -> query.setSecurityRequest(securityRequest));
+
+            if (MediaTypes.acceptsNdJson(httpHeaders.getAccept())) {
+                ObjectWriter writer = mapper.writer(FieldProjection.filterFor(fields));
+                StreamingResponseBody body = outputStream -> {
+                    try {
+                        executeBatch(queries, batchMaxConcurrency, batchTimeout, (index, response) -> {
+                            try {
+                                outputStream.write(writer.writeValueAsBytes(new BatchQueryResult(index, response)));
+                                outputStream.write('\n');
+                                outputStream.flush();
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+                    } catch (UncheckedIOException e) {
+                        throw e.getCause();
+                    }
+                };
+                return ResponseEntity.ok().contentType(MediaTypes.APPLICATION_NDJSON).body(body);
+            }
+
+            BatchQueryResult[] results = new BatchQueryResult[queries.size()];
+            executeBatch(queries, batchMaxConcurrency, batchTimeout, (index, response) -> results[index] = new BatchQueryResult(index, response));
+            return new ResponseEntity<>(projected(Arrays.asList(results), fields), HttpStatus.OK);
         } catch (InvalidArgumentsException e) {
             return handleBadSecurityHeaders(e);
         }
     }
 
+    /**
+     * Executes batch of search queries returning all attributes of found resources, see
+     * {@link #batchQuery(List, String[], HttpHeaders)}.
+     */
+    public ResponseEntity batchQuery(List<CoreQueryRequest> queries, HttpHeaders httpHeaders) {
+        return batchQuery(queries, null, httpHeaders);
+    }
+
+    /**
+     * Sends all queries to the Registry (at most maxConcurrency at once) and passes response of each of them to the
+     * consumer once it is available; queries not completed within timeout milliseconds are answered with 504 status
+     * and their RPC calls stop waiting for replies. Consumer is always called on the calling thread, exactly once for
+     * every query.
+     */
+    private void executeBatch(List<CoreQueryRequest> queries, int maxConcurrency, long timeout, BiConsumer<Integer, QueryResponse> consumer) {
+        boolean[] answered = new boolean[queries.size()];
+        long deadline = System.currentTimeMillis() + timeout;
+        try {
+            FanOut.execute(queries,
+                    query -> this.bulkheads.submitAsync(UpstreamService.REGISTRY, () -> RabbitManager.withDeadline(deadline,
+                            () -> this.circuitBreakers.execute(UpstreamService.REGISTRY, () -> this.rabbitManager.sendSearchRequest(query)))),
+                    maxConcurrency, timeout,
+                    (index, response, error) -> {
+                        answered[index] = true;
+                        consumer.accept(index, toQueryResponse(response, error));
+                    });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (int index = 0; index < answered.length; index++) {
+                if (!answered[index])
+                    consumer.accept(index, toQueryResponse(null, e));
+            }
+        }
+    }
+
+    private QueryResponse toQueryResponse(QueryResponse response, Throwable error) {
+        if (error instanceof BulkheadFullException || error instanceof CircuitOpenException)
+            return new QueryResponse(HttpStatus.SERVICE_UNAVAILABLE.value(), error.getMessage(), null);
+        if (error instanceof TimeoutException || error instanceof ResourceAccessException || (error == null && response == null))
+            return new QueryResponse(HttpStatus.GATEWAY_TIMEOUT.value(), ERROR_GATEWAY_TIMEOUT, null);
+        if (error != null) {
+            log.error("Error while executing batch query", error);
+            return new QueryResponse(HttpStatus.INTERNAL_SERVER_ERROR.value(), "Query execution error: " + error.getMessage(), null);
+        }
+        return response;
+    }
+
     @Deprecated
     @RequestMapping(method = RequestMethod.POST,
             value = LEGACY_URI_PREFIX + "/sparqlQuery")
@@ -255,7 +914,7 @@ public class CoreInterfaceController {
             request.setBody(sparqlQuery.getSparqlQuery());
             request.setOutputFormat(sparqlQuery.getOutputFormat());
             request.setBaseModel(sparqlQuery.getBaseModel());
-            SparqlQueryResponse sparqlQueryResponse = this.rabbitManager.sendSparqlSearchRequest(request);
+            SparqlQueryResponse sparqlQueryResponse = guarded(UpstreamService.REGISTRY, () -> this.rabbitManager.sendSparqlSearchRequest(request));
             if (sparqlQueryResponse == null) {
                 return new ResponseEntity<>(new SparqlQueryResponse(HttpStatus.GATEWAY_TIMEOUT.value(), ERROR_GATEWAY_TIMEOUT, null), getServiceResponseHeaders(sparqlQueryResponse), HttpStatus.GATEWAY_TIMEOUT);
             }
@@ -263,6 +922,12 @@ public class CoreInterfaceController {
             return new ResponseEntity<>(sparqlQueryResponse, getServiceResponseHeaders(sparqlQueryResponse), HttpStatus.valueOf(sparqlQueryResponse.getStatus()));
         } catch (InvalidArgumentsException e) {
             return handleBadSecurityHeaders(e);
+        } catch (BulkheadFullException | CircuitOpenException e) {
+            log.warn(e.getMessage());
+            return new ResponseEntity<>(new SparqlQueryResponse(HttpStatus.SERVICE_UNAVAILABLE.value(), e.getMessage(), null), HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (ResourceAccessException e) {
+            log.warn(e.getMessage());
+            return new ResponseEntity<>(new SparqlQueryResponse(HttpStatus.GATEWAY_TIMEOUT.value(), ERROR_GATEWAY_TIMEOUT, null), HttpStatus.GATEWAY_TIMEOUT);
         }
     }
 
@@ -307,11 +972,9 @@ public class CoreInterfaceController {
                 throw new InvalidArgumentsException();
             SecurityRequest securityRequest = new SecurityRequest(httpHeaders.toSingleValueMap());
 
-            ResourceUrlsRequest request = new ResourceUrlsRequest();
-            request.setBody(Arrays.asList(resourceId));
-            request.setSecurityRequest(securityRequest);
-
-            ResourceUrlsResponse response = this.rabbitManager.sendResourceUrlsRequest(request);
+            ResourceUrlsResponse response = resourceUrlsBatcher.execute(CredentialsDigests.headersDigest(httpHeaders),
+                    Arrays.asList(resourceId), securityRequest,
+                    request -> guarded(UpstreamService.CRAM, () -> this.rabbitManager.sendResourceUrlsRequest(request)));
             if (response == null) {
                 return new ResponseEntity<>(new ResourceUrlsResponse(HttpStatus.GATEWAY_TIMEOUT.value(), ERROR_GATEWAY_TIMEOUT, null), getServiceResponseHeaders(response), HttpStatus.GATEWAY_TIMEOUT);
             }
@@ -319,7 +982,126 @@ public class CoreInterfaceController {
             return new ResponseEntity<>(response, getServiceResponseHeaders(response), HttpStatus.valueOf(response.getStatus()));
         } catch (InvalidArgumentsException e) {
             return handleBadSecurityHeaders(e);
+        } catch (BulkheadFullException | CircuitOpenException e) {
+            log.warn(e.getMessage());
+            return new ResponseEntity<>(new ResourceUrlsResponse(HttpStatus.SERVICE_UNAVAILABLE.value(), e.getMessage(), null), HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (ResourceAccessException e) {
+            log.warn(e.getMessage());
+            return new ResponseEntity<>(new ResourceUrlsResponse(HttpStatus.GATEWAY_TIMEOUT.value(), ERROR_GATEWAY_TIMEOUT, null), HttpStatus.GATEWAY_TIMEOUT);
+        }
+    }
+
+    /**
+     * Endpoint for querying URLs of many resources' Interworking Interface at once.
+     * <p>
+     * IDs are passed in the request body, so their number is not limited by URL length. They are split into chunks of
+     * symbiote.resourceUrls.chunkSize which are requested from Core Resource Access Monitor in parallel. IDs of chunks
+     * which failed or didn't complete in time are listed in failures along with the reason, while URLs of the other
+     * resources are still returned. The request fails as a whole only if no chunk succeeded. All chunks are sent with
+     * the same security request, so the service response of the first chunk answered by Core Resource Access Monitor
+     * is returned for the whole request.
+     *
+     * @param resourceIds IDs of resources to get Interworking Interface URLs
+     * @param httpHeaders request headers
+     * @return map containing entries in a form of {"resourceId1":"InterworkingInterfaceUrl1", ... } and failures
+     */
+    @ApiOperation(value = "Get URLs of many resources",
+            notes = "Gets URLs of resources specified by IDs passed in the body. IDs which couldn't be looked up are returned in failures"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Returns requested URLs along with per resource failures", response = BulkResourceUrlsResponse.class),
+            @ApiResponse(code = 400, message = "No or too many IDs")
+    })
+    @RequestMapping(method = RequestMethod.POST,
+            value = "/resourceUrls")
+    public ResponseEntity postResourceUrls(@ApiParam(value = "Resource IDs", required = true) @RequestBody List<String> resourceIds,
+                                           @ApiParam(value = "Headers, containing X-Auth-Timestamp, X-Auth-Size and X-Auth-{1..n} fields", required = true) @RequestHeader HttpHeaders httpHeaders) {
+        try {
+            if (httpHeaders == null)
+                throw new InvalidArgumentsException();
+            SecurityRequest securityRequest = new SecurityRequest(httpHeaders.toSingleValueMap());
+
+            if (resourceIds == null || resourceIds.isEmpty() || resourceIds.size() > resourceUrlsMaxIds)
+                return new ResponseEntity<>(new BulkResourceUrlsResponse(HttpStatus.BAD_REQUEST.value(), "Request has to contain from 1 to " + resourceUrlsMaxIds + " IDs", null, null), HttpStatus.BAD_REQUEST);
+
+            List<String> distinctIds = resourceIds.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+            BulkResourceUrlsResponse response = getResourceUrlsInChunks(distinctIds, securityRequest);
+            if (response.getFailures().size() < distinctIds.size()) {
+                response.setStatus(HttpStatus.OK.value());
+                if (!response.getFailures().isEmpty())
+                    response.setMessage("URLs of " + response.getFailures().size() + " resources couldn't be obtained");
+            }
+            return new ResponseEntity<>(response, getServiceResponseHeaders(response), HttpStatus.valueOf(response.getStatus()));
+        } catch (InvalidArgumentsException e) {
+            return handleBadSecurityHeaders(e);
+        }
+    }
+
+    /**
+     * Gets URLs of resources from Core Resource Access Monitor, splitting large sets of IDs into chunks of
+     * symbiote.resourceUrls.chunkSize which are requested in parallel.
+     *
+     * @param resourceIds     IDs of resources
+     * @param securityRequest security request of the client
+     * @return merged URLs of all chunks along with IDs of failed chunks; status and message of the first failed chunk
+     * if any of them failed; service response of the first chunk (in order of IDs) which carried one
+     */
+    private BulkResourceUrlsResponse getResourceUrlsInChunks(List<String> resourceIds, SecurityRequest securityRequest) {
+        int chunkSize = Math.max(1, resourceUrlsChunkSize);
+        List<List<String>> chunks = new ArrayList<>();
+        for (int from = 0; from < resourceIds.size(); from += chunkSize)
+            chunks.add(new ArrayList<>(resourceIds.subList(from, Math.min(resourceIds.size(), from + chunkSize))));
+
+        Map<String, String> urls = new HashMap<>();
+        Map<String, ResourceUrlFailure> failedIds = new HashMap<>();
+        List<ResourceUrlsResponse> failures = new ArrayList<>();
+        String[] serviceResponses = new String[chunks.size()];
+        long deadline = System.currentTimeMillis() + resourceUrlsTimeout;
+        try {
+            FanOut.execute(chunks,
+                    chunk -> {
+                        ResourceUrlsRequest request = new ResourceUrlsRequest();
+                        request.setBody(chunk);
+                        request.setSecurityRequest(securityRequest);
+                        return this.bulkheads.submitAsync(UpstreamService.CRAM, () -> RabbitManager.withDeadline(deadline,
+                                () -> this.circuitBreakers.execute(UpstreamService.CRAM, () -> this.rabbitManager.sendResourceUrlsRequest(request))));
+                    },
+                    resourceUrlsMaxConcurrency, resourceUrlsTimeout,
+                    (index, response, error) -> {
+                        ResourceUrlsResponse chunkResponse = toResourceUrlsResponse(response, error);
+                        serviceResponses[index] = chunkResponse.getServiceResponse();
+                        if (chunkResponse.getBody() != null)
+                            urls.putAll(chunkResponse.getBody());
+                        if (!HttpStatus.valueOf(chunkResponse.getStatus()).is2xxSuccessful()) {
+                            failures.add(chunkResponse);
+                            ResourceUrlFailure failure = new ResourceUrlFailure(chunkResponse.getStatus(), chunkResponse.getMessage());
+                            chunks.get(index).forEach(id -> failedIds.put(id, failure));
+                        }
+                    });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ResourceUrlsResponse interrupted = toResourceUrlsResponse(null, e);
+            failures.add(interrupted);
+            ResourceUrlFailure failure = new ResourceUrlFailure(interrupted.getStatus(), interrupted.getMessage());
+            resourceIds.stream().filter(id -> !urls.containsKey(id)).forEach(id -> failedIds.putIfAbsent(id, failure));
         }
+
+        BulkResourceUrlsResponse response = failures.isEmpty() ? new BulkResourceUrlsResponse(HttpStatus.OK.value(), "", urls, failedIds)
+                : new BulkResourceUrlsResponse(failures.get(0).getStatus(), failures.get(0).getMessage(), urls, failedIds);
+        response.setServiceResponse(Arrays.stream(serviceResponses).filter(Objects::nonNull).findFirst().orElse(null));
+        return response;
+    }
+
+    private ResourceUrlsResponse toResourceUrlsResponse(ResourceUrlsResponse response, Throwable error) {
+        if (error instanceof BulkheadFullException || error instanceof CircuitOpenException)
+            return new ResourceUrlsResponse(HttpStatus.SERVICE_UNAVAILABLE.value(), error.getMessage(), null);
+        if (error instanceof TimeoutException || error instanceof ResourceAccessException || (error == null && response == null))
+            return new ResourceUrlsResponse(HttpStatus.GATEWAY_TIMEOUT.value(), ERROR_GATEWAY_TIMEOUT, null);
+        if (error != null) {
+            log.error("Error while getting resource URLs", error);
+            return new ResourceUrlsResponse(HttpStatus.INTERNAL_SERVER_ERROR.value(), "Error while getting resource URLs: " + error.getMessage(), null);
+        }
+        return response;
     }
 
     private HttpHeaders getServiceResponseHeaders(AbstractResponseSecured response) {
@@ -361,17 +1143,16 @@ public class CoreInterfaceController {
             value = AAM_PREFIX + SecurityConstants.AAM_GET_AVAILABLE_AAMS)
     public ResponseEntity getAvailableAAMs() {
         log.debug("Get Available AAMS request");
-        try {
-            ResponseEntity<String> entity = this.restTemplate.getForEntity(this.aamUrl + SecurityConstants.AAM_GET_AVAILABLE_AAMS, String.class);
-
-            HttpHeaders headers = stripTransferEncoding(entity.getHeaders());
-
-            return new ResponseEntity<>(entity.getBody(), headers, entity.getStatusCode());
-        } catch (HttpStatusCodeException e) {
-            log.info(ERROR_PROXY_STATUS_MSG + e.getStatusCode());
-            log.debug(e);
-            return new ResponseEntity<>(e.getResponseBodyAsString(), e.getStatusCode());
+        if (passThroughCompression()) {
+            HttpEntity<String> requestEntity = new HttpEntity<>(null, acceptGzipHeaders());
+            return forward(UpstreamService.AAM, () -> this.circuitBreakers.execute(UpstreamService.AAM, () -> this.hedgedRequestExecutor.execute(UpstreamService.AAM,
+                    measured(UpstreamService.AAM, baseUrl -> this.restTemplate.exchange(baseUrl + SecurityConstants.AAM_GET_AVAILABLE_AAMS, HttpMethod.GET, requestEntity, byte[].class)),
+                    this.aamUrl, this.aamHedgeUrl)));
         }
+
+        return forward(UpstreamService.AAM, () -> this.circuitBreakers.execute(UpstreamService.AAM, () -> this.hedgedRequestExecutor.execute(UpstreamService.AAM,
+                measured(UpstreamService.AAM, baseUrl -> this.restTemplate.getForEntity(baseUrl + SecurityConstants.AAM_GET_AVAILABLE_AAMS, String.class)),
+                this.aamUrl, this.aamHedgeUrl)));
     }
 
     @Deprecated
@@ -407,17 +1188,9 @@ public class CoreInterfaceController {
     public ResponseEntity getComponentCertificate(@ApiParam(value = "Component identifier", required = true) @PathVariable String componentIdentifier,
                                                   @ApiParam(value = "Platform identifier", required = true) @PathVariable String platformIdentifier) {
         log.debug("Get component certificate request");
-        try {
-            ResponseEntity<String> entity = this.restTemplate.getForEntity(this.aamUrl + SecurityConstants.AAM_GET_COMPONENT_CERTIFICATE + "/platform/" + platformIdentifier + "/component/" + componentIdentifier, String.class);
-
-            HttpHeaders headers = stripTransferEncoding(entity.getHeaders());
-
-            return new ResponseEntity<>(entity.getBody(), headers, entity.getStatusCode());
-        } catch (HttpStatusCodeException e) {
-            log.info(ERROR_PROXY_STATUS_MSG + e.getStatusCode());
-            log.debug(e);
-            return new ResponseEntity<>(e.getResponseBodyAsString(), e.getStatusCode());
-        }
+        return forward(UpstreamService.AAM, () -> this.circuitBreakers.execute(UpstreamService.AAM, () -> this.hedgedRequestExecutor.execute(UpstreamService.AAM,
+                measured(UpstreamService.AAM, baseUrl -> this.restTemplate.getForEntity(baseUrl + SecurityConstants.AAM_GET_COMPONENT_CERTIFICATE + "/platform/" + platformIdentifier + "/component/" + componentIdentifier, String.class)),
+                this.aamUrl, this.aamHedgeUrl)));
     }
 
     @Deprecated
@@ -449,19 +1222,9 @@ public class CoreInterfaceController {
             value = AAM_PREFIX + SecurityConstants.AAM_SIGN_CERTIFICATE_REQUEST)
     public ResponseEntity signCertificateRequest(@ApiParam(value = "Request required to sign a certificate for given (username, clientId) tupple", required = true) @RequestBody CertificateRequest certificateRequest) {
         log.debug("Sign certificate request");
-        try {
-            HttpEntity<CertificateRequest> entity = new HttpEntity<>(certificateRequest, null);
-
-            ResponseEntity<String> stringResponseEntity = this.restTemplate.postForEntity(this.aamUrl + SecurityConstants.AAM_SIGN_CERTIFICATE_REQUEST, entity, String.class);
+        HttpEntity<CertificateRequest> entity = new HttpEntity<>(certificateRequest, null);
 
-            HttpHeaders headers = stripTransferEncoding(stringResponseEntity.getHeaders());
-
-            return new ResponseEntity<>(stringResponseEntity.getBody(), headers, stringResponseEntity.getStatusCode());
-        } catch (HttpStatusCodeException e) {
-            log.info(ERROR_PROXY_STATUS_MSG + e.getStatusCode());
-            log.debug(e);
-            return new ResponseEntity<>(e.getResponseBodyAsString(), e.getStatusCode());
-        }
+        return proxy(UpstreamService.AAM, () -> this.restTemplate.postForEntity(this.aamUrl + SecurityConstants.AAM_SIGN_CERTIFICATE_REQUEST, entity, String.class));
     }
 
     @Deprecated
@@ -494,19 +1257,9 @@ public class CoreInterfaceController {
             value = AAM_PREFIX + SecurityConstants.AAM_REVOKE_CREDENTIALS)
     public ResponseEntity revokeCredentials(@ApiParam(name = "Revocation Request", value = "Depending on it's fields, token or certificate can be revoked", required = true) @RequestBody RevocationRequest revocationRequest) {
         log.debug("Revoke credentials");
-        try {
-            HttpEntity<RevocationRequest> entity = new HttpEntity<>(revocationRequest, null);
+        HttpEntity<RevocationRequest> entity = new HttpEntity<>(revocationRequest, null);
 
-            ResponseEntity<String> stringResponseEntity = this.restTemplate.postForEntity(this.aamUrl + SecurityConstants.AAM_REVOKE_CREDENTIALS, entity, String.class);
-
-            HttpHeaders headers = stripTransferEncoding(stringResponseEntity.getHeaders());
-
-            return new ResponseEntity<>(stringResponseEntity.getBody(), headers, stringResponseEntity.getStatusCode());
-        } catch (HttpStatusCodeException e) {
-            log.info(ERROR_PROXY_STATUS_MSG + e.getStatusCode());
-            log.debug(e);
-            return new ResponseEntity<>(e.getResponseBodyAsString(), e.getStatusCode());
-        }
+        return proxy(UpstreamService.AAM, () -> this.restTemplate.postForEntity(this.aamUrl + SecurityConstants.AAM_REVOKE_CREDENTIALS, entity, String.class));
     }
 
     @Deprecated
@@ -535,17 +1288,7 @@ public class CoreInterfaceController {
             value = AAM_PREFIX + SecurityConstants.AAM_GET_GUEST_TOKEN)
     public ResponseEntity getGuestToken() {
         log.debug("Get guest token");
-        try {
-            ResponseEntity<String> stringResponseEntity = this.restTemplate.postForEntity(this.aamUrl + SecurityConstants.AAM_GET_GUEST_TOKEN, null, String.class);
-
-            HttpHeaders headers = stripTransferEncoding(stringResponseEntity.getHeaders());
-
-            return new ResponseEntity<>(stringResponseEntity.getBody(), headers, stringResponseEntity.getStatusCode());
-        } catch (HttpStatusCodeException e) {
-            log.info(ERROR_PROXY_STATUS_MSG + e.getStatusCode());
-            log.debug(e);
-            return new ResponseEntity<>(e.getResponseBodyAsString(), e.getStatusCode());
-        }
+        return proxy(UpstreamService.AAM, () -> this.restTemplate.postForEntity(this.aamUrl + SecurityConstants.AAM_GET_GUEST_TOKEN, null, String.class));
     }
 
     @Deprecated
@@ -578,21 +1321,11 @@ public class CoreInterfaceController {
             value = AAM_PREFIX + SecurityConstants.AAM_GET_HOME_TOKEN)
     public ResponseEntity getHomeToken(@ApiParam(value = "Login request", required = true) @RequestHeader(SecurityConstants.TOKEN_HEADER_NAME) String loginRequest) {
         log.debug("Get home token");
-        try {
-            HttpHeaders httpHeaders = new HttpHeaders();
-            httpHeaders.add(SecurityConstants.TOKEN_HEADER_NAME, loginRequest);
-            HttpEntity<String> entity = new HttpEntity<>(null, httpHeaders);
-
-            ResponseEntity<String> stringResponseEntity = this.restTemplate.postForEntity(this.aamUrl + SecurityConstants.AAM_GET_HOME_TOKEN, entity, String.class);
-
-            HttpHeaders headers = stripTransferEncoding(stringResponseEntity.getHeaders());
+        HttpHeaders httpHeaders = new HttpHeaders();
+        httpHeaders.add(SecurityConstants.TOKEN_HEADER_NAME, loginRequest);
+        HttpEntity<String> entity = new HttpEntity<>(null, httpHeaders);
 
-            return new ResponseEntity<>(stringResponseEntity.getBody(), headers, stringResponseEntity.getStatusCode());
-        } catch (HttpStatusCodeException e) {
-            log.info(ERROR_PROXY_STATUS_MSG + e.getStatusCode());
-            log.debug(e);
-            return new ResponseEntity<>(e.getResponseBodyAsString(), e.getStatusCode());
-        }
+        return proxy(UpstreamService.AAM, () -> this.restTemplate.postForEntity(this.aamUrl + SecurityConstants.AAM_GET_HOME_TOKEN, entity, String.class));
     }
 
     @Deprecated
@@ -632,23 +1365,13 @@ public class CoreInterfaceController {
                                           @ApiParam(value = "Client certificate") @RequestHeader(name = SecurityConstants.CLIENT_CERTIFICATE_HEADER_NAME, defaultValue = "") String clientCertificate,
                                           @ApiParam(value = "AAM certificate") @RequestHeader(name = SecurityConstants.AAM_CERTIFICATE_HEADER_NAME, defaultValue = "") String aamCertificate) {
         log.debug("Get foreign token");
-        try {
-            HttpHeaders httpHeaders = new HttpHeaders();
-            httpHeaders.add(SecurityConstants.TOKEN_HEADER_NAME, remoteHomeToken);
-            httpHeaders.add(SecurityConstants.CLIENT_CERTIFICATE_HEADER_NAME, clientCertificate);
-            httpHeaders.add(SecurityConstants.AAM_CERTIFICATE_HEADER_NAME, aamCertificate);
-            HttpEntity<String> entity = new HttpEntity<>(null, httpHeaders);
-
-            ResponseEntity<String> stringResponseEntity = this.restTemplate.postForEntity(this.aamUrl + SecurityConstants.AAM_GET_FOREIGN_TOKEN, entity, String.class);
-
-            HttpHeaders headers = stripTransferEncoding(stringResponseEntity.getHeaders());
+        HttpHeaders httpHeaders = new HttpHeaders();
+        httpHeaders.add(SecurityConstants.TOKEN_HEADER_NAME, remoteHomeToken);
+        httpHeaders.add(SecurityConstants.CLIENT_CERTIFICATE_HEADER_NAME, clientCertificate);
+        httpHeaders.add(SecurityConstants.AAM_CERTIFICATE_HEADER_NAME, aamCertificate);
+        HttpEntity<String> entity = new HttpEntity<>(null, httpHeaders);
 
-            return new ResponseEntity<>(stringResponseEntity.getBody(), headers, stringResponseEntity.getStatusCode());
-        } catch (HttpStatusCodeException e) {
-            log.info(ERROR_PROXY_STATUS_MSG + e.getStatusCode());
-            log.debug(e);
-            return new ResponseEntity<>(e.getResponseBodyAsString(), e.getStatusCode());
-        }
+        return proxy(UpstreamService.AAM, () -> this.restTemplate.postForEntity(this.aamUrl + SecurityConstants.AAM_GET_FOREIGN_TOKEN, entity, String.class));
     }
 
     @Deprecated
@@ -689,24 +1412,14 @@ public class CoreInterfaceController {
                                               @ApiParam(value = "used for Offline scenarios") @RequestHeader(name = SecurityConstants.AAM_CERTIFICATE_HEADER_NAME, defaultValue = "") String clientCertificateSigningAAMCertificate,
                                               @ApiParam(value = "used for Offline scenarios") @RequestHeader(name = SecurityConstants.FOREIGN_TOKEN_ISSUING_AAM_CERTIFICATE, defaultValue = "") String foreignTokenIssuingAAMCertificate) {
         log.debug("Validate token/certificate");
-        try {
-            HttpHeaders httpHeaders = new HttpHeaders();
-            httpHeaders.add(SecurityConstants.TOKEN_HEADER_NAME, token);
-            httpHeaders.add(SecurityConstants.CLIENT_CERTIFICATE_HEADER_NAME, clientCertificate);
-            httpHeaders.add(SecurityConstants.AAM_CERTIFICATE_HEADER_NAME, clientCertificateSigningAAMCertificate);
-            httpHeaders.add(SecurityConstants.FOREIGN_TOKEN_ISSUING_AAM_CERTIFICATE, foreignTokenIssuingAAMCertificate);
-            HttpEntity<String> entity = new HttpEntity<>(null, httpHeaders);
-
-            ResponseEntity<String> stringResponseEntity = this.restTemplate.postForEntity(this.aamUrl + SecurityConstants.AAM_VALIDATE_CREDENTIALS, entity, String.class);
-
-            HttpHeaders headers = stripTransferEncoding(stringResponseEntity.getHeaders());
+        HttpHeaders httpHeaders = new HttpHeaders();
+        httpHeaders.add(SecurityConstants.TOKEN_HEADER_NAME, token);
+        httpHeaders.add(SecurityConstants.CLIENT_CERTIFICATE_HEADER_NAME, clientCertificate);
+        httpHeaders.add(SecurityConstants.AAM_CERTIFICATE_HEADER_NAME, clientCertificateSigningAAMCertificate);
+        httpHeaders.add(SecurityConstants.FOREIGN_TOKEN_ISSUING_AAM_CERTIFICATE, foreignTokenIssuingAAMCertificate);
+        HttpEntity<String> entity = new HttpEntity<>(null, httpHeaders);
 
-            return new ResponseEntity<>(stringResponseEntity.getBody(), headers, stringResponseEntity.getStatusCode());
-        } catch (HttpStatusCodeException e) {
-            log.info(ERROR_PROXY_STATUS_MSG + e.getStatusCode());
-            log.debug(e);
-            return new ResponseEntity<>(e.getResponseBodyAsString(), e.getStatusCode());
-        }
+        return proxy(UpstreamService.AAM, () -> this.restTemplate.postForEntity(this.aamUrl + SecurityConstants.AAM_VALIDATE_CREDENTIALS, entity, String.class));
     }
 
     @Deprecated
@@ -735,19 +1448,9 @@ public class CoreInterfaceController {
             value = AAM_PREFIX + SecurityConstants.AAM_GET_USER_DETAILS)
     public ResponseEntity getUserDetails(@ApiParam(name = "User Management Request", value = "required to initialize user's management operation", required = true) @RequestBody Credentials credentials) {
         log.debug("Get user details");
-        try {
-            HttpEntity<Credentials> entity = new HttpEntity<>(credentials, null);
-
-            ResponseEntity<String> stringResponseEntity = this.restTemplate.postForEntity(this.aamUrl + SecurityConstants.AAM_GET_USER_DETAILS, entity, String.class);
+        HttpEntity<Credentials> entity = new HttpEntity<>(credentials, null);
 
-            HttpHeaders headers = stripTransferEncoding(stringResponseEntity.getHeaders());
-
-            return new ResponseEntity<>(stringResponseEntity.getBody(), headers, stringResponseEntity.getStatusCode());
-        } catch (HttpStatusCodeException e) {
-            log.info(ERROR_PROXY_STATUS_MSG + e.getStatusCode());
-            log.debug(e);
-            return new ResponseEntity<>(e.getResponseBodyAsString(), e.getStatusCode());
-        }
+        return proxy(UpstreamService.AAM, () -> this.restTemplate.postForEntity(this.aamUrl + SecurityConstants.AAM_GET_USER_DETAILS, entity, String.class));
     }
 
     /* -------------------------------------------- */
@@ -771,17 +1474,7 @@ public class CoreInterfaceController {
             value = SecurityConstants.ADM_PREFIX + SecurityConstants.ADM_LOG_FAILED_FEDERATION_AUTHORIZATION)
     public ResponseEntity handleFailFederationAuthorizationReport(@ApiParam(name = "FailedFederationAuthorizationReport", required = true) @RequestBody FailedFederationAuthorizationReport failedFederationAuthorizationReport) {
         log.debug("Handle fail federation authorization report");
-        try {
-            ResponseEntity<String> stringResponseEntity = this.restTemplate.postForEntity(this.admUrl + SecurityConstants.ADM_LOG_FAILED_FEDERATION_AUTHORIZATION, failedFederationAuthorizationReport, String.class);
-
-            HttpHeaders headers = stripTransferEncoding(stringResponseEntity.getHeaders());
-
-            return new ResponseEntity<>(stringResponseEntity.getBody(), headers, stringResponseEntity.getStatusCode());
-        } catch (HttpStatusCodeException e) {
-            log.info(ERROR_PROXY_STATUS_MSG + e.getStatusCode());
-            log.debug(e);
-            return new ResponseEntity<>(e.getResponseBodyAsString(), e.getStatusCode());
-        }
+        return proxy(UpstreamService.ADM, () -> this.restTemplate.postForEntity(this.admUrl + SecurityConstants.ADM_LOG_FAILED_FEDERATION_AUTHORIZATION, failedFederationAuthorizationReport, String.class));
     }
 
     /**
@@ -804,25 +1497,18 @@ public class CoreInterfaceController {
                                                        @ApiParam(value = "Platform filter") @RequestParam(name = "platformId", required = false) String platformIdFilter,
                                                        @ApiParam(value = "Search Origin Platform filter") @RequestParam(name = "searchOriginPlatformId", required = false) String singleSearchOriginPlatformFilter) {
         log.debug("Get misdeeds group by platform");
-        try {
-            HttpEntity<String> entity = new HttpEntity<>(null, httpHeaders);
-
-            Map<String, String> params = new HashMap<>();
-            if (platformIdFilter != null)
-                params.put("platformId", platformIdFilter);
-            if (singleSearchOriginPlatformFilter != null)
-                params.put("searchOriginPlatformId", singleSearchOriginPlatformFilter);
+        HttpEntity<String> entity = new HttpEntity<>(null, httpHeaders);
 
-            ResponseEntity<String> stringResponseEntity = this.restTemplate.exchange(this.admUrl + SecurityConstants.ADM_GET_FEDERATED_MISDEEDS + "/bySearchOriginPlatform", HttpMethod.GET, entity, String.class, params);
+        Map<String, String> params = new HashMap<>();
+        if (platformIdFilter != null)
+            params.put("platformId", platformIdFilter);
+        if (singleSearchOriginPlatformFilter != null)
+            params.put("searchOriginPlatformId", singleSearchOriginPlatformFilter);
 
-            HttpHeaders headers = stripTransferEncoding(stringResponseEntity.getHeaders());
+        if (passThroughCompression())
+            return proxy(UpstreamService.ADM, () -> this.restTemplate.exchange(this.admUrl + SecurityConstants.ADM_GET_FEDERATED_MISDEEDS + "/bySearchOriginPlatform", HttpMethod.GET, withGzipAcceptEncoding(entity), byte[].class, params));
 
-            return new ResponseEntity<>(stringResponseEntity.getBody(), headers, stringResponseEntity.getStatusCode());
-        } catch (HttpStatusCodeException e) {
-            log.info(ERROR_PROXY_STATUS_MSG + e.getStatusCode());
-            log.debug(e);
-            return new ResponseEntity<>(e.getResponseBodyAsString(), e.getStatusCode());
-        }
+        return proxy(UpstreamService.ADM, () -> this.restTemplate.exchange(this.admUrl + SecurityConstants.ADM_GET_FEDERATED_MISDEEDS + "/bySearchOriginPlatform", HttpMethod.GET, withoutAcceptEncoding(entity), String.class, params));
     }
 
     /**
@@ -845,23 +1531,16 @@ public class CoreInterfaceController {
                                                          @ApiParam(value = "Platform filter") @RequestParam(name = "platformId", required = false) String platformIdFilter,
                                                          @ApiParam(value = "Federation filter") @RequestParam(name = "federationId", required = false) String federationIdFilter) {
         log.debug("Get misdeeds group by federation");
-        try {
-            HttpEntity<String> entity = new HttpEntity<>(null, httpHeaders);
-            Map<String, String> params = new HashMap<>();
-            if (platformIdFilter != null)
-                params.put("platformId", platformIdFilter);
-            if (federationIdFilter != null)
-                params.put("federationId", federationIdFilter);
-            ResponseEntity<String> stringResponseEntity = this.restTemplate.exchange(this.admUrl + SecurityConstants.ADM_GET_FEDERATED_MISDEEDS + "/byFederation", HttpMethod.GET, entity, String.class, params);
-
-            HttpHeaders headers = stripTransferEncoding(stringResponseEntity.getHeaders());
-
-            return new ResponseEntity<>(stringResponseEntity.getBody(), headers, stringResponseEntity.getStatusCode());
-        } catch (HttpStatusCodeException e) {
-            log.info(ERROR_PROXY_STATUS_MSG + e.getStatusCode());
-            log.debug(e);
-            return new ResponseEntity<>(e.getResponseBodyAsString(), e.getStatusCode());
-        }
+        HttpEntity<String> entity = new HttpEntity<>(null, httpHeaders);
+        Map<String, String> params = new HashMap<>();
+        if (platformIdFilter != null)
+            params.put("platformId", platformIdFilter);
+        if (federationIdFilter != null)
+            params.put("federationId", federationIdFilter);
+        if (passThroughCompression())
+            return proxy(UpstreamService.ADM, () -> this.restTemplate.exchange(this.admUrl + SecurityConstants.ADM_GET_FEDERATED_MISDEEDS + "/byFederation", HttpMethod.GET, withGzipAcceptEncoding(entity), byte[].class, params));
+
+        return proxy(UpstreamService.ADM, () -> this.restTemplate.exchange(this.admUrl + SecurityConstants.ADM_GET_FEDERATED_MISDEEDS + "/byFederation", HttpMethod.GET, withoutAcceptEncoding(entity), String.class, params));
     }
 
     /* -------------------------------------------- */
@@ -877,19 +1556,9 @@ public class CoreInterfaceController {
     public ResponseEntity registerCoupon(@ApiParam(value = "Security headers", required = true) @RequestHeader HttpHeaders httpHeaders,
                                          @RequestHeader(SecurityConstants.COUPON_HEADER_NAME) String couponString) {
         log.debug("Register coupon");
-        try {
-            HttpEntity<String> entity = new HttpEntity<>(couponString, httpHeaders);
+        HttpEntity<String> entity = new HttpEntity<>(couponString, httpHeaders);
 
-            ResponseEntity<String> stringResponseEntity = this.restTemplate.exchange(this.btmUrl + SecurityConstants.BTM_REGISTER_COUPON, HttpMethod.POST, entity, String.class);
-
-            HttpHeaders headers = stripTransferEncoding(stringResponseEntity.getHeaders());
-
-            return new ResponseEntity<>(stringResponseEntity.getBody(), headers, stringResponseEntity.getStatusCode());
-        } catch (HttpStatusCodeException e) {
-            log.info(ERROR_PROXY_STATUS_MSG + e.getStatusCode());
-            log.debug(e);
-            return new ResponseEntity<>(e.getResponseBodyAsString(), e.getStatusCode());
-        }
+        return proxy(UpstreamService.BTM, () -> this.restTemplate.exchange(this.btmUrl + SecurityConstants.BTM_REGISTER_COUPON, HttpMethod.POST, entity, String.class));
     }
 
     @ApiOperation(value = "CouponEntity validation in Core BTM")
@@ -900,19 +1569,9 @@ public class CoreInterfaceController {
     public ResponseEntity isCouponValid(@ApiParam(value = "Security headers", required = true) @RequestHeader HttpHeaders httpHeaders,
                                          @RequestHeader(SecurityConstants.COUPON_HEADER_NAME) String couponString) {
         log.debug("Is coupon valid");
-        try {
-            HttpEntity<String> entity = new HttpEntity<>(couponString, httpHeaders);
-
-            ResponseEntity<String> stringResponseEntity = this.restTemplate.exchange(this.btmUrl + SecurityConstants.BTM_IS_COUPON_VALID, HttpMethod.POST, entity, String.class);
-
-            HttpHeaders headers = stripTransferEncoding(stringResponseEntity.getHeaders());
+        HttpEntity<String> entity = new HttpEntity<>(couponString, httpHeaders);
 
-            return new ResponseEntity<>(stringResponseEntity.getBody(), headers, stringResponseEntity.getStatusCode());
-        } catch (HttpStatusCodeException e) {
-            log.info(ERROR_PROXY_STATUS_MSG + e.getStatusCode());
-            log.debug(e);
-            return new ResponseEntity<>(e.getResponseBodyAsString(), e.getStatusCode());
-        }
+        return proxy(UpstreamService.BTM, () -> this.restTemplate.exchange(this.btmUrl + SecurityConstants.BTM_IS_COUPON_VALID, HttpMethod.POST, entity, String.class));
     }
 
     @ApiOperation(value = "Consume coupon in the Core BTM")
@@ -923,19 +1582,9 @@ public class CoreInterfaceController {
     public ResponseEntity consumeCoupon(@ApiParam(value = "Security headers", required = true) @RequestHeader HttpHeaders httpHeaders,
                                          @RequestHeader(SecurityConstants.COUPON_HEADER_NAME) String couponString) {
         log.debug("Consume coupon");
-        try {
-            HttpEntity<String> entity = new HttpEntity<>(null, httpHeaders);
-
-            ResponseEntity<String> stringResponseEntity = this.restTemplate.exchange(this.btmUrl + SecurityConstants.BTM_CONSUME_COUPON, HttpMethod.POST, entity, String.class);
+        HttpEntity<String> entity = new HttpEntity<>(null, httpHeaders);
 
-            HttpHeaders headers = stripTransferEncoding(stringResponseEntity.getHeaders());
-
-            return new ResponseEntity<>(stringResponseEntity.getBody(), headers, stringResponseEntity.getStatusCode());
-        } catch (HttpStatusCodeException e) {
-            log.info(ERROR_PROXY_STATUS_MSG + e.getStatusCode());
-            log.debug(e);
-            return new ResponseEntity<>(e.getResponseBodyAsString(), e.getStatusCode());
-        }
+        return proxy(UpstreamService.BTM, () -> this.restTemplate.exchange(this.btmUrl + SecurityConstants.BTM_CONSUME_COUPON, HttpMethod.POST, entity, String.class));
     }
 
     @ApiOperation(value = "Cleanup all consumed coupons before provided timestamp")
@@ -943,19 +1592,9 @@ public class CoreInterfaceController {
             value = BTM_PREFIX + SecurityConstants.BTM_CLEANUP_COUPONS)
     public ResponseEntity cleanupConsumedCoupons(@RequestBody String timestamp) {
         log.debug("Cleanup consumed coupons");
-        try {
-            HttpEntity<String> entity = new HttpEntity<>(timestamp, getHeaders());
+        HttpEntity<String> entity = new HttpEntity<>(timestamp, getHeaders());
 
-            ResponseEntity<String> stringResponseEntity = this.restTemplate.exchange(this.btmUrl + SecurityConstants.BTM_CLEANUP_COUPONS, HttpMethod.POST, entity, String.class);
-
-            HttpHeaders headers = stripTransferEncoding(stringResponseEntity.getHeaders());
-
-            return new ResponseEntity<>(stringResponseEntity.getBody(), headers, stringResponseEntity.getStatusCode());
-        } catch (HttpStatusCodeException e) {
-            log.info(ERROR_PROXY_STATUS_MSG + e.getStatusCode());
-            log.debug(e);
-            return new ResponseEntity<>(e.getResponseBodyAsString(), e.getStatusCode());
-        }
+        return proxy(UpstreamService.BTM, () -> this.restTemplate.exchange(this.btmUrl + SecurityConstants.BTM_CLEANUP_COUPONS, HttpMethod.POST, entity, String.class));
     }
 
     @ApiOperation(value = "List used coupons")
@@ -965,29 +1604,101 @@ public class CoreInterfaceController {
             value = BTM_PREFIX + "/couponusage")
     public ResponseEntity couponUsage(@RequestBody String filter) {
         log.debug("Coupon usage");
-        try {
-            HttpEntity<String> entity = new HttpEntity<>(filter, getHeaders());
+        HttpEntity<String> entity = new HttpEntity<>(filter, getHeaders());
 
-            ResponseEntity<String> stringResponseEntity = this.restTemplate.exchange(this.btmUrl + "/couponusage", HttpMethod.POST, entity, String.class);
+        return proxy(UpstreamService.BTM, () -> this.restTemplate.exchange(this.btmUrl + "/couponusage", HttpMethod.POST, entity, String.class));
+    }
 
-            HttpHeaders headers = stripTransferEncoding(stringResponseEntity.getHeaders());
 
-            return new ResponseEntity<>(stringResponseEntity.getBody(), headers, stringResponseEntity.getStatusCode());
+    /**
+     * Executes the call to given upstream service guarded by its circuit breaker and in its bulkhead.
+     *
+     * @param upstream upstream service the call is made to
+     * @param call     call to execute
+     * @return result of the call
+     * @throws CircuitOpenException  when the circuit breaker of the upstream is open
+     * @throws BulkheadFullException when the bulkhead of the upstream is saturated
+     */
+    private <T> T guarded(UpstreamService upstream, Supplier<T> call) {
+        return this.circuitBreakers.execute(upstream, () -> this.bulkheads.execute(upstream, call));
+    }
+
+    /**
+     * Executes proxied request guarded by the circuit breaker and bulkhead of given upstream service and forwards its
+     * response.
+     *
+     * @param upstream upstream service the request is sent to
+     * @param request  request to execute
+     * @return upstream response or error, see {@link #forward(UpstreamService, Supplier)}
+     */
+    private <T> ResponseEntity proxy(UpstreamService upstream, Supplier<ResponseEntity<T>> request) {
+        Supplier<ResponseEntity<T>> boundRequest = this.proxyMetrics.bind(upstream, ProxyMetrics.currentRoute(), request);
+        return forward(upstream, () -> guarded(upstream, boundRequest));
+    }
+
+    /**
+     * Wraps request to given upstream so that its HTTP call records metrics tagged with the route of the current request.
+     */
+    private <T> Function<String, T> measured(UpstreamService upstream, Function<String, T> request) {
+        String route = ProxyMetrics.currentRoute();
+        return baseUrl -> this.proxyMetrics.bind(upstream, route, () -> request.apply(baseUrl)).get();
+    }
+
+    /**
+     * Executes proxied request, records its latency and status and forwards its response to the client.
+     *
+     * @param upstream upstream service the request is sent to
+     * @param request  request to execute
+     * @return upstream response, upstream error, 503 if the upstream is unavailable or 504 on upstream timeout
+     */
+    private <T> ResponseEntity forward(UpstreamService upstream, Supplier<ResponseEntity<T>> request) {
+        String route = ProxyMetrics.currentRoute();
+        Object proxyEvent = JfrEvents.beginProxy();
+        long in = System.nanoTime();
+        String status = "error";
+        try {
+            ResponseEntity<T> entity = request.get();
+            status = ProxyMetrics.status(entity.getStatusCode());
+
+            HttpHeaders headers = stripTransferEncoding(entity.getHeaders());
+
+            return new ResponseEntity<>(entity.getBody(), headers, entity.getStatusCode());
         } catch (HttpStatusCodeException e) {
-            log.info(ERROR_PROXY_STATUS_MSG + e.getStatusCode());
+            status = ProxyMetrics.status(e.getStatusCode());
+            if (e.getStatusCode().is5xxServerError())
+                log.warn(ERROR_PROXY_STATUS_MSG + e.getStatusCode() + " from " + upstream);
+            else
+                log.info(ERROR_PROXY_STATUS_MSG + e.getStatusCode());
             log.debug(e);
             return new ResponseEntity<>(e.getResponseBodyAsString(), e.getStatusCode());
+        } catch (BulkheadFullException | CircuitOpenException e) {
+            status = "rejected";
+            log.warn(e.getMessage());
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (ResourceAccessException e) {
+            log.warn("Error in proxy communication: " + e.getMessage());
+            log.debug(e);
+            if (e.getCause() instanceof SocketTimeoutException || e.getCause() instanceof ConnectTimeoutException) {
+                status = "timeout";
+                return new ResponseEntity<>(ERROR_GATEWAY_TIMEOUT, HttpStatus.GATEWAY_TIMEOUT);
+            }
+            status = "ioError";
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+        } finally {
+            long elapsed = System.nanoTime() - in;
+            this.proxyMetrics.record(upstream, route, status, elapsed);
+            RequestTimings.record(RequestTimings.UPSTREAM, elapsed);
+            JfrEvents.commitProxy(proxyEvent, upstream.getName(), route, status);
         }
     }
 
-
     /**
      * Method used to strip 'Transfer-encoding' header and use 'Content-length' instead.
      *
      * @param headers headers to strip 'Transfer-encoding' from
      * @return headers without 'Transfer-encoding' field
      */
-    private HttpHeaders stripTransferEncoding(HttpHeaders headers) {
+    static HttpHeaders stripTransferEncoding(HttpHeaders headers) {
         if (headers == null)
             return null;
 
@@ -1013,7 +1724,7 @@ public class CoreInterfaceController {
         this.restTemplate = restTemplate;
     }
 
-    private String decodeUrlParameters(String s) {
+    static String decodeUrlParameters(String s) {
         String result = "";
         try {
             result = URLDecoder.decode(s, "UTF-8");
@@ -1023,6 +1734,59 @@ public class CoreInterfaceController {
         return result;
     }
 
+    /**
+     * Checks whether compressed upstream responses can be forwarded as-is, i.e. pass-through is enabled and the client
+     * accepts gzip encoding.
+     *
+     * @return true if upstream should be asked for gzip encoded response
+     */
+    private boolean passThroughCompression() {
+        if (!compressionPassThrough)
+            return false;
+
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes instanceof ServletRequestAttributes
+                && GzipResponseFilter.acceptsGzip(((ServletRequestAttributes) attributes).getRequest());
+    }
+
+    private HttpHeaders acceptGzipHeaders() {
+        HttpHeaders httpHeaders = new HttpHeaders();
+        httpHeaders.set(HttpHeaders.ACCEPT_ENCODING, GzipResponseFilter.GZIP);
+        return httpHeaders;
+    }
+
+    /**
+     * Replaces 'Accept-Encoding' header forwarded from the client with gzip, the only encoding which is passed through.
+     * The client may accept other encodings too (e.g. br), which upstream responses must not be encoded with.
+     *
+     * @param entity entity with headers forwarded from the client
+     * @return entity accepting only gzip encoding
+     */
+    private HttpEntity<String> withGzipAcceptEncoding(HttpEntity<String> entity) {
+        HttpHeaders httpHeaders = new HttpHeaders();
+        if (entity.getHeaders() != null)
+            httpHeaders.putAll(entity.getHeaders());
+        httpHeaders.set(HttpHeaders.ACCEPT_ENCODING, GzipResponseFilter.GZIP);
+        return new HttpEntity<>(entity.getBody(), httpHeaders);
+    }
+
+    /**
+     * Removes 'Accept-Encoding' header forwarded from the client, so that upstream returns uncompressed body which can be
+     * read as String.
+     *
+     * @param entity entity with headers forwarded from the client
+     * @return entity without 'Accept-Encoding' header
+     */
+    private HttpEntity<String> withoutAcceptEncoding(HttpEntity<String> entity) {
+        if (entity.getHeaders() == null || !entity.getHeaders().containsKey(HttpHeaders.ACCEPT_ENCODING))
+            return entity;
+
+        HttpHeaders httpHeaders = new HttpHeaders();
+        httpHeaders.putAll(entity.getHeaders());
+        httpHeaders.remove(HttpHeaders.ACCEPT_ENCODING);
+        return new HttpEntity<>(entity.getBody(), httpHeaders);
+    }
+
     private HttpHeaders getHeaders() {
         HttpHeaders httpHeaders = new HttpHeaders();
         httpHeaders.set("Accept", MediaType.APPLICATION_JSON_VALUE);
@@ -0,0 +1,167 @@
+package eu.h2020.symbiote.diagnostics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Class keeping timing breakdowns (see {@link RequestTimings}) of the slowest recent requests of each endpoint.
+ * <p>
+ * Every endpoint has a fixed-size ring of symbiote.flightRecorder.size slots. A finished request takes an empty slot,
+ * a slot whose request is older than symbiote.flightRecorder.window milliseconds, or the slot of the fastest kept
+ * request if it was slower than that one. Slots are replaced by compare-and-set, so recording never blocks; under
+ * contention a request may occasionally not be kept.
+ */
+@Component
+public class FlightRecorder {
+    private static final int MAX_ATTEMPTS = 3;
+
+    @Value("${symbiote.flightRecorder.size:20}")
+    private int size = 20;
+
+    @Value("${symbiote.flightRecorder.window:600000}")
+    private long window = 600000;
+
+    private final Map<String, AtomicReferenceArray<Record>> rings = new ConcurrentHashMap<>();
+
+    /**
+     * Method used to override parameters of the recorder.
+     * Used ONLY for unit testing.
+     *
+     * @param size   number of requests kept per endpoint
+     * @param window time in milliseconds after which kept requests may be replaced by faster ones
+     */
+    public void setTestParameters(int size, long window) {
+        this.size = size;
+        this.window = window;
+        this.rings.clear();
+    }
+
+    /**
+     * Offers the finished request to the ring of its endpoint.
+     *
+     * @param record finished request
+     */
+    public void record(Record record) {
+        AtomicReferenceArray<Record> ring = rings.computeIfAbsent(record.getEndpoint(), endpoint -> new AtomicReferenceArray<>(size));
+        long oldest = record.getTimestamp() - window;
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            int victim = -1;
+            Record victimRecord = null;
+            for (int i = 0; i < ring.length(); i++) {
+                Record kept = ring.get(i);
+                if (kept == null || kept.getTimestamp() < oldest) {
+                    victim = i;
+                    victimRecord = kept;
+                    break;
+                }
+                if (victimRecord == null || kept.getDuration() < victimRecord.getDuration()) {
+                    victim = i;
+                    victimRecord = kept;
+                }
+            }
+
+            if (victimRecord != null && victimRecord.getTimestamp() >= oldest && victimRecord.getDuration() >= record.getDuration())
+                return;
+            if (ring.compareAndSet(victim, victimRecord, record))
+                return;
+        }
+    }
+
+    /**
+     * @return kept requests of each endpoint within the window, slowest first; endpoints sorted by name
+     */
+    public Map<String, List<Record>> getSlowest() {
+        long oldest = System.currentTimeMillis() - window;
+        Map<String, List<Record>> slowest = new TreeMap<>();
+        rings.forEach((endpoint, ring) -> {
+            List<Record> records = new ArrayList<>(ring.length());
+            for (int i = 0; i < ring.length(); i++) {
+                Record kept = ring.get(i);
+                if (kept != null && kept.getTimestamp() >= oldest)
+                    records.add(kept);
+            }
+            records.sort(Comparator.comparingDouble(Record::getDuration).reversed());
+            if (!records.isEmpty())
+                slowest.put(endpoint, records);
+        });
+        return slowest;
+    }
+
+    /**
+     * Timing breakdown of a finished request. Durations are in milliseconds.
+     */
+    public static class Record {
+        private final String endpoint;
+        private final String uri;
+        private final int status;
+        private final long timestamp;
+        private final double duration;
+        private final Map<String, Double> phases;
+
+        /**
+         * @param endpoint  HTTP method and route of the endpoint, e.g. "GET /query"
+         * @param uri       requested URI, without query string
+         * @param status    response status
+         * @param timestamp time when the request finished, in milliseconds since epoch
+         * @param duration  duration of the request
+         * @param phases    durations of phases of the request
+         */
+        public Record(String endpoint, String uri, int status, long timestamp, double duration, Map<String, Double> phases) {
+            this.endpoint = endpoint;
+            this.uri = uri;
+            this.status = status;
+            this.timestamp = timestamp;
+            this.duration = duration;
+            this.phases = phases;
+        }
+
+        /**
+         * Creates record of the request which has just finished.
+         *
+         * @param endpoint HTTP method and route of the endpoint, e.g. "GET /query"
+         * @param uri      requested URI, without query string
+         * @param status   response status
+         * @param timings  timings of the request
+         * @return record of the request
+         */
+        public static Record of(String endpoint, String uri, int status, RequestTimings timings) {
+            Map<String, Double> phases = new LinkedHashMap<>();
+            timings.getPhases().forEach((phase, nanos) -> phases.put(phase, RequestTimings.toMillis(nanos)));
+            return new Record(endpoint, uri, status, System.currentTimeMillis(), RequestTimings.toMillis(timings.getElapsed()), phases);
+        }
+
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        public String getUri() {
+            return uri;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public double getDuration() {
+            return duration;
+        }
+
+        public Map<String, Double> getPhases() {
+            return phases;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package eu.h2020.symbiote.diagnostics;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Aspect measuring handler methods of REST controllers.
+ * <p>
+ * Time from the start of the request until the handler method is called (routing, other filters and argument
+ * binding, including deserialization of request body) is recorded as {@link RequestTimings#BINDING} phase and
+ * execution of the method as {@link RequestTimings#HANDLER} phase. When Server-Timing header is enabled, phases
+ * recorded so far are added to the response after the handler method returns, i.e. before its body is written.
+ */
+@Aspect
+public class FlightRecorderAspect {
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    private final boolean serverTiming;
+
+    /**
+     * @param serverTiming whether Server-Timing header is added to responses
+     */
+    public FlightRecorderAspect(boolean serverTiming) {
+        this.serverTiming = serverTiming;
+    }
+
+    @Around("@within(org.springframework.web.bind.annotation.RestController) && @annotation(org.springframework.web.bind.annotation.RequestMapping)")
+    public Object measureHandler(ProceedingJoinPoint joinPoint) throws Throwable {
+        RequestTimings timings = RequestTimings.current();
+        if (timings == null)
+            return joinPoint.proceed();
+
+        timings.add(RequestTimings.BINDING, timings.getElapsed());
+        long in = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            timings.add(RequestTimings.HANDLER, System.nanoTime() - in);
+            timings.handled();
+            if (serverTiming)
+                addServerTiming(timings);
+        }
+    }
+
+    private static void addServerTiming(RequestTimings timings) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes))
+            return;
+
+        HttpServletResponse response = ((ServletRequestAttributes) attributes).getResponse();
+        if (response != null && !response.isCommitted())
+            response.addHeader(SERVER_TIMING_HEADER, timings.toServerTiming());
+    }
+}
@@ -0,0 +1,27 @@
+package eu.h2020.symbiote.diagnostics;
+
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Actuator endpoint (/flightrecorder) listing timing breakdowns of the slowest recent requests of each endpoint,
+ * see {@link FlightRecorder}.
+ */
+public class FlightRecorderEndpoint extends AbstractEndpoint<Map<String, List<FlightRecorder.Record>>> {
+    private final FlightRecorder flightRecorder;
+
+    /**
+     * @param flightRecorder recorder of slow requests
+     */
+    public FlightRecorderEndpoint(FlightRecorder flightRecorder) {
+        super("flightrecorder");
+        this.flightRecorder = flightRecorder;
+    }
+
+    @Override
+    public Map<String, List<FlightRecorder.Record>> invoke() {
+        return flightRecorder.getSlowest();
+    }
+}
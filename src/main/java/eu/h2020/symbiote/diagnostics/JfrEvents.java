@@ -0,0 +1,104 @@
+package eu.h2020.symbiote.diagnostics;
+
+/**
+ * Emits custom Java Flight Recorder events of Core Interface operations, so that business-level slowness can be lined
+ * up with GC, lock and I/O events of the same recording.
+ * <p>
+ * Emitted events (category symbIoTe / Core Interface):
+ * <ul>
+ * <li>eu.h2020.symbiote.Rpc - RPC call sent through the broker, with routing key, payload sizes, time spent waiting
+ * for the reply and outcome</li>
+ * <li>eu.h2020.symbiote.Proxy - request proxied to an upstream service, with upstream, route, requested path and
+ * status returned to the client</li>
+ * </ul>
+ * An event is started by {@code begin*} method, which returns an opaque token, and finished by the matching
+ * {@code commit*} method. When the running JVM has no JFR (e.g. Java 8 older than 8u262), or no recording has the
+ * event enabled, tokens are null and nothing is allocated or done.
+ * <p>
+ * Event classes live in the optional jfr source set, which is built only by JDKs providing jdk.jfr, so that the
+ * project still compiles on older Java 8 builds. They are loaded reflectively through {@link Recorder}; when they are
+ * missing from the build, events are not emitted either.
+ */
+public final class JfrEvents {
+    private static final String RECORDER_CLASS = "eu.h2020.symbiote.diagnostics.JfrRecorder";
+    private static final Recorder RECORDER = load();
+
+    private JfrEvents() {
+    }
+
+    /**
+     * @return whether the running JVM supports JFR events
+     */
+    public static boolean isAvailable() {
+        return RECORDER != null;
+    }
+
+    /**
+     * Starts event of an RPC call.
+     *
+     * @return token to pass to {@link #commitRpc}, null when JFR is not available or the event is disabled
+     */
+    public static Object beginRpc() {
+        return RECORDER != null ? RECORDER.beginRpc() : null;
+    }
+
+    /**
+     * Finishes event of an RPC call and commits it if enabled.
+     *
+     * @param token        token returned by {@link #beginRpc()}
+     * @param exchange     exchange the request was published to
+     * @param routingKey   routing key of the request
+     * @param requestSize  size of the request in bytes
+     * @param responseSize size of the response in bytes, 0 if there is none
+     * @param waitNanos    time spent waiting for the reply in nanoseconds
+     * @param outcome      outcome of the call, see {@link eu.h2020.symbiote.communication.RpcMetrics}
+     */
+    public static void commitRpc(Object token, String exchange, String routingKey, long requestSize, long responseSize, long waitNanos, String outcome) {
+        if (token != null)
+            RECORDER.commitRpc(token, exchange, routingKey, requestSize, responseSize, waitNanos, outcome);
+    }
+
+    /**
+     * Starts event of a proxied request.
+     *
+     * @return token to pass to {@link #commitProxy}, null when JFR is not available or the event is disabled
+     */
+    public static Object beginProxy() {
+        return RECORDER != null ? RECORDER.beginProxy() : null;
+    }
+
+    /**
+     * Finishes event of a proxied request and commits it if enabled. Path is taken from the current HTTP request.
+     *
+     * @param token    token returned by {@link #beginProxy()}
+     * @param upstream name of the upstream service
+     * @param route    route of the proxying endpoint
+     * @param status   status returned to the client, see {@link eu.h2020.symbiote.communication.ProxyMetrics#status}
+     */
+    public static void commitProxy(Object token, String upstream, String route, String status) {
+        if (token != null)
+            RECORDER.commitProxy(token, upstream, route, status);
+    }
+
+    private static Recorder load() {
+        try {
+            Class.forName("jdk.jfr.Event", false, JfrEvents.class.getClassLoader());
+            return (Recorder) Class.forName(RECORDER_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Emitter of the events, implemented in the jfr source set.
+     */
+    interface Recorder {
+        Object beginRpc();
+
+        void commitRpc(Object token, String exchange, String routingKey, long requestSize, long responseSize, long waitNanos, String outcome);
+
+        Object beginProxy();
+
+        void commitProxy(Object token, String upstream, String route, String status);
+    }
+}
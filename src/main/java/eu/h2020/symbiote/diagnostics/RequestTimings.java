@@ -0,0 +1,154 @@
+package eu.h2020.symbiote.diagnostics;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Breakdown of time spent by the current HTTP request in its phases, e.g. argument binding, broker publish or waiting
+ * for the reply.
+ * <p>
+ * Timings of the request are bound to the thread serving it by {@link eu.h2020.symbiote.filters.FlightRecorderFilter}
+ * and carried over to other threads working for the request by {@link #wrap(Callable)}. Durations of a phase
+ * occurring several times (e.g. two RPC calls) are summed. Outside of a request all static methods do nothing.
+ */
+public class RequestTimings {
+    public static final String BINDING = "binding";
+    public static final String HANDLER = "handler";
+    public static final String PUBLISH = "publish";
+    public static final String WAIT = "wait";
+    public static final String DECODE = "decode";
+    public static final String UPSTREAM = "upstream";
+    public static final String WRITE = "write";
+
+    private static final ThreadLocal<RequestTimings> current = new ThreadLocal<>();
+
+    private final long start = System.nanoTime();
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private volatile long handled;
+
+    /**
+     * Starts timings of a request served by the current thread.
+     *
+     * @return started timings
+     */
+    public static RequestTimings start() {
+        RequestTimings timings = new RequestTimings();
+        current.set(timings);
+        return timings;
+    }
+
+    /**
+     * Unbinds timings from the current thread.
+     */
+    public static void end() {
+        current.remove();
+    }
+
+    /**
+     * @return timings of the request served by the current thread, null if there is none
+     */
+    public static RequestTimings current() {
+        return current.get();
+    }
+
+    /**
+     * Adds duration of the phase to timings of the current request.
+     *
+     * @param phase name of the phase
+     * @param nanos duration in nanoseconds
+     */
+    public static void record(String phase, long nanos) {
+        RequestTimings timings = current.get();
+        if (timings != null)
+            timings.add(phase, nanos);
+    }
+
+    /**
+     * Wraps the task so that phases it records on any thread are added to timings of the current request.
+     *
+     * @param task task to wrap
+     * @param <T>  type of the result
+     * @return wrapped task, or the task itself outside of a request
+     */
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        RequestTimings timings = current.get();
+        if (timings == null)
+            return task;
+
+        return () -> {
+            RequestTimings previous = current.get();
+            current.set(timings);
+            try {
+                return task.call();
+            } finally {
+                if (previous == null)
+                    current.remove();
+                else
+                    current.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Adds duration of the phase.
+     *
+     * @param phase name of the phase
+     * @param nanos duration in nanoseconds
+     */
+    public synchronized void add(String phase, long nanos) {
+        phases.merge(phase, nanos, Long::sum);
+    }
+
+    /**
+     * Marks that the handler method returned, so that writing of the response starts.
+     */
+    public void handled() {
+        this.handled = System.nanoTime();
+    }
+
+    /**
+     * Marks that the response was written, adding {@link #WRITE} phase if the handler method returned before.
+     */
+    public void finish() {
+        if (handled != 0)
+            add(WRITE, System.nanoTime() - handled);
+    }
+
+    /**
+     * @return nanoseconds elapsed since the request started
+     */
+    public long getElapsed() {
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * @return durations of phases in nanoseconds, in order of their first occurrence
+     */
+    public synchronized Map<String, Long> getPhases() {
+        return new LinkedHashMap<>(phases);
+    }
+
+    /**
+     * @return phases as value of Server-Timing header, e.g. {@code binding;dur=0.412, wait;dur=18.300}
+     */
+    public String toServerTiming() {
+        StringBuilder header = new StringBuilder();
+        for (Map.Entry<String, Long> phase : getPhases().entrySet()) {
+            if (header.length() > 0)
+                header.append(", ");
+            header.append(phase.getKey()).append(";dur=").append(String.format(Locale.ROOT, "%.3f", toMillis(phase.getValue())));
+        }
+        return header.toString();
+    }
+
+    /**
+     * @param nanos duration in nanoseconds
+     * @return duration in milliseconds
+     */
+    public static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,49 @@
+package eu.h2020.symbiote.filters;
+
+import eu.h2020.symbiote.diagnostics.FlightRecorder;
+import eu.h2020.symbiote.diagnostics.RequestTimings;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Filter measuring phases of each request (see {@link RequestTimings}) and offering them to {@link FlightRecorder}
+ * once the response is written.
+ * <p>
+ * Requests are recorded under their HTTP method and route, e.g. "GET /query"; requests not mapped to any handler
+ * under "unknown" route. Asynchronously processed requests (e.g. subscriptions or streamed responses) are not
+ * recorded.
+ */
+public class FlightRecorderFilter extends OncePerRequestFilter {
+    private static final String UNKNOWN_ROUTE = "unknown";
+
+    private final FlightRecorder flightRecorder;
+
+    /**
+     * @param flightRecorder recorder to offer finished requests to
+     */
+    public FlightRecorderFilter(FlightRecorder flightRecorder) {
+        this.flightRecorder = flightRecorder;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        RequestTimings timings = RequestTimings.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestTimings.end();
+            if (!isAsyncStarted(request)) {
+                timings.finish();
+                Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                String endpoint = request.getMethod() + " " + (route != null ? route : UNKNOWN_ROUTE);
+                flightRecorder.record(FlightRecorder.Record.of(endpoint, request.getRequestURI(), response.getStatus(), timings));
+            }
+        }
+    }
+}
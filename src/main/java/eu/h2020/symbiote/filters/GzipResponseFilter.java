@@ -0,0 +1,197 @@
+package eu.h2020.symbiote.filters;
+
+import eu.h2020.symbiote.utils.MediaTypes;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Filter compressing responses with gzip when the client accepts it.
+ * <p>
+ * Only responses of at least {@code minResponseSize} bytes and of one of the allowed MIME types are compressed.
+ * Responses which already carry a 'Content-Encoding' header (e.g. compressed responses forwarded from upstream
+ * services) and streamed NDJSON responses are passed through unchanged, as are responses which gzip would not make
+ * smaller. Number of bytes saved is reported per endpoint.
+ * <p>
+ * Streamed responses (NDJSON and Server-Sent Events) are written after the request thread returns, so they can't be
+ * buffered and compressed. Requests accepting them are not filtered at all; if a request turns asynchronous anyway,
+ * whatever was buffered is sent as-is and the rest of the response is written directly to the client.
+ * <p>
+ * Every response the filter handles varies by 'Accept-Encoding', whether it ends up compressed or not, so it is
+ * marked as such for caches.
+ */
+public class GzipResponseFilter extends OncePerRequestFilter {
+    private static Log log = LogFactory.getLog(GzipResponseFilter.class);
+
+    public static final String GZIP = "gzip";
+    public static final String BYTES_SAVED_METRIC = "coreinterface.compression.bytes.saved";
+    public static final String PASS_THROUGH_METRIC = "coreinterface.compression.passthrough";
+
+    private final int minResponseSize;
+    private final List<MediaType> mimeTypes;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * @param minResponseSize minimal size of response body (in bytes) to be compressed
+     * @param mimeTypes       MIME types of responses which can be compressed
+     * @param meterRegistry   registry to report saved bytes to
+     */
+    public GzipResponseFilter(int minResponseSize, List<String> mimeTypes, MeterRegistry meterRegistry) {
+        this.minResponseSize = minResponseSize;
+        this.mimeTypes = mimeTypes.stream().map(MediaType::parseMediaType).collect(Collectors.toList());
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Checks whether the client accepts gzip encoded responses.
+     *
+     * @param request incoming request
+     * @return true if 'Accept-Encoding' header contains gzip without zero quality
+     */
+    public static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null)
+            return false;
+
+        for (String encoding : acceptEncoding.split(",")) {
+            String[] parts = encoding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase(GZIP))
+                return parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+        }
+        return false;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        return MediaTypes.acceptsNdJson(accept) || MediaTypes.acceptsEventStream(accept);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (!acceptsGzip(request)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        BufferingResponseWrapper wrapper = new BufferingResponseWrapper(response);
+        filterChain.doFilter(request, wrapper);
+
+        if (isAsyncStarted(request)) {
+            log.debug("Response of " + getEndpoint(request) + " is streamed asynchronously, not compressing it");
+            wrapper.passThrough();
+            return;
+        }
+
+        String endpoint = getEndpoint(request);
+        if (wrapper.getHeader(HttpHeaders.CONTENT_ENCODING) != null) {
+            meterRegistry.counter(PASS_THROUGH_METRIC, "endpoint", endpoint).increment();
+            wrapper.copyBodyToResponse();
+            return;
+        }
+
+        byte[] body = wrapper.getContentAsByteArray();
+        if (body.length < minResponseSize || !isCompressible(wrapper.getContentType())) {
+            wrapper.copyBodyToResponse();
+            return;
+        }
+
+        byte[] compressed = compress(body);
+        if (compressed.length >= body.length) {
+            log.debug("Response of " + endpoint + " is not compressible, sending " + body.length + " bytes as-is");
+            wrapper.copyBodyToResponse();
+            return;
+        }
+
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+        response.setContentLength(compressed.length);
+        response.getOutputStream().write(compressed);
+
+        log.debug("Compressed response of " + endpoint + " from " + body.length + " to " + compressed.length + " bytes");
+        meterRegistry.counter(BYTES_SAVED_METRIC, "endpoint", endpoint).increment(body.length - compressed.length);
+    }
+
+    private boolean isCompressible(String contentType) {
+        if (contentType == null)
+            return false;
+
+        try {
+            MediaType mediaType = MediaType.parseMediaType(contentType);
+            return mimeTypes.stream().anyMatch(allowed -> allowed.includes(mediaType));
+        } catch (InvalidMediaTypeException e) {
+            log.debug("Not compressing response with invalid content type " + contentType);
+            return false;
+        }
+    }
+
+    private String getEndpoint(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? pattern.toString() : request.getRequestURI();
+    }
+
+    private byte[] compress(byte[] body) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            gzipOutputStream.write(body);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Response wrapper buffering the body until the filter decides whether to compress it, or writing it directly to
+     * the client once {@link #passThrough()} was called.
+     */
+    private static class BufferingResponseWrapper extends ContentCachingResponseWrapper {
+        private boolean passThrough;
+
+        BufferingResponseWrapper(HttpServletResponse response) {
+            super(response);
+        }
+
+        /**
+         * Sends the buffered part of the body and stops buffering, so that later writes and flushes reach the client.
+         */
+        void passThrough() throws IOException {
+            copyBodyToResponse(false);
+            getResponse().flushBuffer();
+            this.passThrough = true;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            return passThrough ? getResponse().getOutputStream() : super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            return passThrough ? getResponse().getWriter() : super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (passThrough)
+                getResponse().flushBuffer();
+            else
+                super.flushBuffer();
+        }
+    }
+}
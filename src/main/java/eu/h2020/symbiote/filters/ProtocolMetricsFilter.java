@@ -0,0 +1,91 @@
+package eu.h2020.symbiote.filters;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Filter counting requests per HTTP protocol version.
+ * <p>
+ * With HTTP/2 every request is carried by its own stream, so the number of active "HTTP/2.0" requests is the number
+ * of open streams. Asynchronously processed requests (e.g. Server-Sent Events subscriptions or streamed responses)
+ * stay active until their asynchronous processing completes.
+ */
+public class ProtocolMetricsFilter extends OncePerRequestFilter {
+    public static final String REQUESTS_METRIC = "coreinterface.http.requests";
+    public static final String ACTIVE_REQUESTS_METRIC = "coreinterface.http.requests.active";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AtomicInteger> activeRequests = new ConcurrentHashMap<>();
+
+    /**
+     * @param meterRegistry registry to report request counts to
+     */
+    public ProtocolMetricsFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String protocol = request.getProtocol();
+        AtomicInteger active = activeRequests.computeIfAbsent(protocol,
+                key -> meterRegistry.gauge(ACTIVE_REQUESTS_METRIC, Collections.singletonList(Tag.of("protocol", key)), new AtomicInteger()));
+
+        meterRegistry.counter(REQUESTS_METRIC, "protocol", protocol).increment();
+        active.incrementAndGet();
+        boolean async = false;
+        try {
+            filterChain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new CompletionListener(active));
+                async = true;
+            }
+        } finally {
+            if (!async)
+                active.decrementAndGet();
+        }
+    }
+
+    /**
+     * Listener ending an asynchronously processed request once its processing completes.
+     */
+    private static class CompletionListener implements AsyncListener {
+        private final AtomicInteger active;
+
+        CompletionListener(AtomicInteger active) {
+            this.active = active;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            active.decrementAndGet();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            // onComplete follows
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            // onComplete follows
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
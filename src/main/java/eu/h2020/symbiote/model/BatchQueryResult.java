@@ -0,0 +1,39 @@
+package eu.h2020.symbiote.model;
+
+import eu.h2020.symbiote.core.ci.QueryResponse;
+
+/**
+ * Result of a single query of a batch search.
+ */
+public class BatchQueryResult {
+    private int index;
+    private QueryResponse result;
+
+    public BatchQueryResult() {
+    }
+
+    /**
+     * @param index  index of the query in the batch
+     * @param result response to the query, including its own status and message
+     */
+    public BatchQueryResult(int index, QueryResponse result) {
+        this.index = index;
+        this.result = result;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public QueryResponse getResult() {
+        return result;
+    }
+
+    public void setResult(QueryResponse result) {
+        this.result = result;
+    }
+}
@@ -0,0 +1,39 @@
+package eu.h2020.symbiote.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import eu.h2020.symbiote.core.internal.cram.ResourceUrlsResponse;
+
+import java.util.Map;
+
+/**
+ * Resource URLs response extended with per resource failures.
+ * <p>
+ * IDs are looked up in chunks; when some chunk fails, its IDs are listed in failures while URLs of the remaining
+ * resources are still returned.
+ */
+public class BulkResourceUrlsResponse extends ResourceUrlsResponse {
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private Map<String, ResourceUrlFailure> failures;
+
+    public BulkResourceUrlsResponse() {
+    }
+
+    /**
+     * @param status   status of the whole request
+     * @param message  message of the whole request
+     * @param urls     obtained URLs in a form of {"resourceId1":"InterworkingInterfaceUrl1", ... }
+     * @param failures failures of resources which URLs couldn't be obtained, keyed by resource ID
+     */
+    public BulkResourceUrlsResponse(int status, String message, Map<String, String> urls, Map<String, ResourceUrlFailure> failures) {
+        super(status, message, urls);
+        this.failures = failures;
+    }
+
+    public Map<String, ResourceUrlFailure> getFailures() {
+        return failures;
+    }
+
+    public void setFailures(Map<String, ResourceUrlFailure> failures) {
+        this.failures = failures;
+    }
+}
@@ -0,0 +1,95 @@
+package eu.h2020.symbiote.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import eu.h2020.symbiote.core.ci.QueryResponse;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Query response extended with Interworking Interface URLs of found resources and with platforms which didn't answer
+ * a multi-platform search.
+ * <p>
+ * URLs are obtained from Core Resource Access Monitor; if some of them couldn't be obtained, resourceUrlsStatus and
+ * resourceUrlsMessage describe the error while the search results themselves are still returned. As the service
+ * response header carries the Registry's service response, the one of Core Resource Access Monitor is returned in
+ * resourceUrlsServiceResponse.
+ */
+public class ExtendedQueryResponse extends QueryResponse {
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<String, String> resourceUrls;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer resourceUrlsStatus;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String resourceUrlsMessage;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String resourceUrlsServiceResponse;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<String> unansweredPlatforms;
+
+    public ExtendedQueryResponse() {
+    }
+
+    /**
+     * @param response search response to extend
+     */
+    public ExtendedQueryResponse(QueryResponse response) {
+        super(response.getStatus(), response.getMessage(), response.getBody());
+        setServiceResponse(response.getServiceResponse());
+        if (response instanceof ExtendedQueryResponse)
+            this.unansweredPlatforms = ((ExtendedQueryResponse) response).getUnansweredPlatforms();
+    }
+
+    /**
+     * @return map in a form of {"resourceId1":"InterworkingInterfaceUrl1", ... }
+     */
+    public Map<String, String> getResourceUrls() {
+        return resourceUrls;
+    }
+
+    public void setResourceUrls(Map<String, String> resourceUrls) {
+        this.resourceUrls = resourceUrls;
+    }
+
+    public Integer getResourceUrlsStatus() {
+        return resourceUrlsStatus;
+    }
+
+    public void setResourceUrlsStatus(Integer resourceUrlsStatus) {
+        this.resourceUrlsStatus = resourceUrlsStatus;
+    }
+
+    public String getResourceUrlsMessage() {
+        return resourceUrlsMessage;
+    }
+
+    public void setResourceUrlsMessage(String resourceUrlsMessage) {
+        this.resourceUrlsMessage = resourceUrlsMessage;
+    }
+
+    /**
+     * @return service response of Core Resource Access Monitor which provided resourceUrls, null if it didn't send any
+     */
+    public String getResourceUrlsServiceResponse() {
+        return resourceUrlsServiceResponse;
+    }
+
+    public void setResourceUrlsServiceResponse(String resourceUrlsServiceResponse) {
+        this.resourceUrlsServiceResponse = resourceUrlsServiceResponse;
+    }
+
+    /**
+     * @return IDs of platforms whose search failed or timed out, null if all of them answered
+     */
+    public List<String> getUnansweredPlatforms() {
+        return unansweredPlatforms;
+    }
+
+    public void setUnansweredPlatforms(List<String> unansweredPlatforms) {
+        this.unansweredPlatforms = unansweredPlatforms;
+    }
+}
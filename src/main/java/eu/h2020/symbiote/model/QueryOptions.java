@@ -0,0 +1,57 @@
+package eu.h2020.symbiote.model;
+
+/**
+ * Optional parameters of search query which control how the results are returned, as opposed to which resources are
+ * searched for.
+ */
+public class QueryOptions {
+    private boolean withUrls;
+    private Integer limit;
+    private String cursor;
+    private String[] fields;
+
+    /**
+     * @return whether Interworking Interface URLs of found resources should be returned along with the results
+     */
+    public boolean isWithUrls() {
+        return withUrls;
+    }
+
+    public void setWithUrls(boolean withUrls) {
+        this.withUrls = withUrls;
+    }
+
+    /**
+     * @return maximal number of results to return, null if all results should be returned
+     */
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public void setLimit(Integer limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * @return opaque cursor pointing to the requested page of results, as returned in 'X-Next-Cursor' header; it holds
+     * an offset into the results of the re-executed query rather than a snapshot of them
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    /**
+     * @return attributes of found resources which should be returned (e.g. id, name, locatedAt), null if all of them
+     */
+    public String[] getFields() {
+        return fields;
+    }
+
+    public void setFields(String[] fields) {
+        this.fields = fields;
+    }
+}
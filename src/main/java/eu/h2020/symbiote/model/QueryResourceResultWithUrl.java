@@ -0,0 +1,34 @@
+package eu.h2020.symbiote.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import eu.h2020.symbiote.core.ci.QueryResourceResult;
+
+/**
+ * Search result written together with Interworking Interface URL of the resource, used when results are streamed one
+ * per line.
+ */
+public class QueryResourceResultWithUrl {
+    @JsonUnwrapped
+    private final QueryResourceResult resource;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private final String resourceUrl;
+
+    /**
+     * @param resource    found resource
+     * @param resourceUrl Interworking Interface URL of the resource, may be null if it couldn't be obtained
+     */
+    public QueryResourceResultWithUrl(QueryResourceResult resource, String resourceUrl) {
+        this.resource = resource;
+        this.resourceUrl = resourceUrl;
+    }
+
+    public QueryResourceResult getResource() {
+        return resource;
+    }
+
+    public String getResourceUrl() {
+        return resourceUrl;
+    }
+}
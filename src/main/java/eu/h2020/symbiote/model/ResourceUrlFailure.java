@@ -0,0 +1,37 @@
+package eu.h2020.symbiote.model;
+
+/**
+ * Reason why URL of a resource couldn't be obtained from Core Resource Access Monitor.
+ */
+public class ResourceUrlFailure {
+    private int status;
+    private String message;
+
+    public ResourceUrlFailure() {
+    }
+
+    /**
+     * @param status  HTTP status of the failed lookup, e.g. 504 when Core Resource Access Monitor didn't answer in time
+     * @param message description of the error
+     */
+    public ResourceUrlFailure(int status, String message) {
+        this.status = status;
+        this.message = message;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
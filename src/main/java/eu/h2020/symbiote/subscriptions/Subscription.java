@@ -0,0 +1,87 @@
+package eu.h2020.symbiote.subscriptions;
+
+import eu.h2020.symbiote.core.ci.QueryResponse;
+import eu.h2020.symbiote.core.internal.CoreQueryRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Active query subscription of a single client.
+ */
+class Subscription {
+    private final CoreQueryRequest query;
+    private final Set<String> platformIds;
+    private final Function<CoreQueryRequest, QueryResponse> search;
+    private final SseEmitter emitter;
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+
+    private Set<String> resourceIds;
+
+    /**
+     * @param query       subscribed query
+     * @param platformIds IDs of platforms the query is limited to, empty if it isn't
+     * @param search      function executing the query
+     * @param emitter     emitter of events sent to the client
+     * @param resourceIds IDs of resources in the initial result set
+     */
+    Subscription(CoreQueryRequest query, Set<String> platformIds, Function<CoreQueryRequest, QueryResponse> search,
+                 SseEmitter emitter, Set<String> resourceIds) {
+        this.query = query;
+        this.platformIds = platformIds;
+        this.search = search;
+        this.emitter = emitter;
+        this.resourceIds = resourceIds;
+    }
+
+    /**
+     * Checks whether event about resources of given platform may change results of the subscribed query.
+     *
+     * @param platformId         ID of the platform the event is about, null if unknown
+     * @param removedResourceIds IDs of removed resources, null if the event is not a removal or the IDs are unknown
+     * @return false only if the event surely doesn't affect the results
+     */
+    boolean matches(String platformId, Collection<String> removedResourceIds) {
+        if (platformId != null && !platformIds.isEmpty() && !platformIds.contains(platformId))
+            return false;
+        if (removedResourceIds == null)
+            return true;
+
+        Set<String> current = getResourceIds();
+        return removedResourceIds.stream().anyMatch(current::contains);
+    }
+
+    /**
+     * @return true if the refresh was not already pending
+     */
+    boolean markRefreshPending() {
+        return refreshPending.compareAndSet(false, true);
+    }
+
+    void clearRefreshPending() {
+        refreshPending.set(false);
+    }
+
+    CoreQueryRequest getQuery() {
+        return query;
+    }
+
+    Function<CoreQueryRequest, QueryResponse> getSearch() {
+        return search;
+    }
+
+    SseEmitter getEmitter() {
+        return emitter;
+    }
+
+    synchronized Set<String> getResourceIds() {
+        return resourceIds;
+    }
+
+    synchronized void setResourceIds(Set<String> resourceIds) {
+        this.resourceIds = resourceIds;
+    }
+}
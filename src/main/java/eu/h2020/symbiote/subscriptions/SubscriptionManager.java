@@ -0,0 +1,370 @@
+package eu.h2020.symbiote.subscriptions;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.h2020.symbiote.communication.RabbitManager;
+import eu.h2020.symbiote.communication.ResourceEventListener;
+import eu.h2020.symbiote.core.ci.QueryResourceResult;
+import eu.h2020.symbiote.core.ci.QueryResponse;
+import eu.h2020.symbiote.core.internal.CoreQueryRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Class keeping continuous query subscriptions and pushing changes of their results to clients as Server-Sent Events.
+ * <p>
+ * A new subscription immediately receives "results" event with the initial query response, including the service
+ * response of the Registry. Resource creation,
+ * modification and removal events received from the resource exchange are then matched against all active
+ * subscriptions in memory: an event matches unless it is about another platform than the subscription is limited to,
+ * or it removes resources none of which are in the current results. Every matching subscription is re-queried after
+ * symbiote.subscriptions.debounce milliseconds, so that a burst of events costs a single Registry query, and the
+ * difference is sent as "added" event (found resources) and "removed" event (IDs of resources no longer found).
+ * Failed re-queries are reported as "error" event and the subscription stays active.
+ * <p>
+ * As events can't be matched against the query filters themselves, a single event may affect many subscriptions.
+ * Re-queries of all subscriptions are therefore paced to at most symbiote.subscriptions.maxRefreshRate per second;
+ * when more are due, they are delayed, and further events arriving meanwhile are covered by the pending re-query.
+ * <p>
+ * Subscriptions end after symbiote.subscriptions.maxDuration milliseconds, as the security request they were created
+ * with expires; clients are expected to subscribe again, which standard EventSource clients do automatically.
+ * <p>
+ * Subscriptions are enabled by symbiote.subscriptions.enabled property. When created with the no-argument
+ * constructor (e.g. in unit tests) they are always disabled.
+ */
+@Component
+public class SubscriptionManager implements ResourceEventListener {
+    private static Log log = LogFactory.getLog(SubscriptionManager.class);
+
+    public static final String ACTIVE_METRIC = "coreinterface.subscriptions.active";
+    public static final String RESOURCE_EVENTS_METRIC = "coreinterface.subscriptions.resourceEvents";
+    public static final String REFRESHES_METRIC = "coreinterface.subscriptions.refreshes";
+
+    public static final String RESULTS_EVENT = "results";
+    public static final String ADDED_EVENT = "added";
+    public static final String REMOVED_EVENT = "removed";
+    public static final String ERROR_EVENT = "error";
+
+    @Value("${symbiote.subscriptions.enabled:false}")
+    private boolean enabled;
+
+    @Value("${symbiote.subscriptions.maxSubscriptions:1000}")
+    private int maxSubscriptions;
+
+    @Value("${symbiote.subscriptions.debounce:2000}")
+    private long debounce;
+
+    @Value("${symbiote.subscriptions.maxRefreshRate:20}")
+    private int maxRefreshRate = 20;
+
+    @Value("${symbiote.subscriptions.maxDuration:300000}")
+    private long maxDuration;
+
+    @Value("${symbiote.subscriptions.threads:2}")
+    private int threads;
+
+    private final RabbitManager rabbitManager;
+    private final MeterRegistry meterRegistry;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final AtomicLong nextRefreshTime = new AtomicLong();
+
+    private ScheduledThreadPoolExecutor executor;
+    private boolean listening;
+
+    /**
+     * Creates manager with subscriptions disabled.
+     */
+    public SubscriptionManager() {
+        this(null, null);
+        this.enabled = false;
+    }
+
+    /**
+     * Class constructor which autowires beans used to receive resource events and expose subscription metrics.
+     *
+     * @param rabbitManager RabbitManager bean
+     * @param meterRegistry MeterRegistry bean
+     */
+    @Autowired
+    public SubscriptionManager(RabbitManager rabbitManager, MeterRegistry meterRegistry) {
+        this.rabbitManager = rabbitManager;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Method used to override subscription parameters.
+     * Used ONLY for unit testing.
+     *
+     * @param maxSubscriptions maximal number of active subscriptions
+     * @param debounce         delay in milliseconds between matching resource event and re-query
+     * @param maxDuration      time in milliseconds after which subscriptions end
+     */
+    public void setTestParameters(int maxSubscriptions, long debounce, long maxDuration) {
+        setTestParameters(maxSubscriptions, debounce, maxDuration, maxRefreshRate);
+    }
+
+    /**
+     * Method used to override subscription parameters.
+     * Used ONLY for unit testing.
+     *
+     * @param maxSubscriptions maximal number of active subscriptions
+     * @param debounce         delay in milliseconds between matching resource event and re-query
+     * @param maxDuration      time in milliseconds after which subscriptions end
+     * @param maxRefreshRate   maximal number of re-queries of all subscriptions per second
+     */
+    public void setTestParameters(int maxSubscriptions, long debounce, long maxDuration, int maxRefreshRate) {
+        this.enabled = true;
+        this.maxSubscriptions = maxSubscriptions;
+        this.debounce = debounce;
+        this.maxDuration = maxDuration;
+        this.maxRefreshRate = maxRefreshRate;
+        this.threads = 1;
+        init();
+    }
+
+    /**
+     * Method used to create re-query thread pool and register for resource events.
+     */
+    @PostConstruct
+    public void init() {
+        cleanup();
+        if (!enabled)
+            return;
+
+        nextRefreshTime.set(System.nanoTime());
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ScheduledThreadPoolExecutor(threads, runnable -> {
+            Thread thread = new Thread(runnable, "subscriptions-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (rabbitManager != null && !listening) {
+            rabbitManager.addResourceEventListener(this);
+            listening = true;
+        }
+        if (meterRegistry != null)
+            meterRegistry.gauge(ACTIVE_METRIC, subscriptions, Set::size);
+    }
+
+    /**
+     * Cleanup method, used to end all subscriptions and stop re-query threads.
+     */
+    @PreDestroy
+    public void cleanup() {
+        if (executor != null)
+            executor.shutdownNow();
+        executor = null;
+        for (Subscription subscription : subscriptions) {
+            subscriptions.remove(subscription);
+            subscription.getEmitter().complete();
+        }
+    }
+
+    /**
+     * @return true if clients can subscribe
+     */
+    public boolean isEnabled() {
+        return executor != null;
+    }
+
+    /**
+     * Checks whether a new subscription would be accepted, so that the initial query isn't executed in vain. As other
+     * clients may subscribe meanwhile, {@link #subscribe} can still reject the subscription.
+     *
+     * @return true if subscriptions are enabled and fewer than maximum are active
+     */
+    public boolean hasCapacity() {
+        return isEnabled() && subscriptions.size() < maxSubscriptions;
+    }
+
+    /**
+     * Creates subscription to the query and sends its initial results.
+     *
+     * @param query           subscribed query
+     * @param platformIds     IDs of platforms the query is limited to, empty if it isn't
+     * @param initialResponse successful response of the query, sent to the client as it is
+     * @param search          function executing the query, used for re-queries
+     * @return emitter of events to return to the client, or null if subscriptions are disabled or too many are active
+     */
+    public SseEmitter subscribe(CoreQueryRequest query, String[] platformIds, QueryResponse initialResponse,
+                                Function<CoreQueryRequest, QueryResponse> search) {
+        if (!isEnabled())
+            return null;
+
+        SseEmitter emitter = createEmitter(maxDuration);
+        Subscription subscription = new Subscription(query, new HashSet<>(Arrays.asList(platformIds)), search, emitter,
+                resourceIdsOf(initialResponse.getBody()));
+        synchronized (subscriptions) {
+            if (subscriptions.size() >= maxSubscriptions)
+                return null;
+            subscriptions.add(subscription);
+        }
+        emitter.onCompletion(() -> subscriptions.remove(subscription));
+        emitter.onTimeout(() -> {
+            subscriptions.remove(subscription);
+            emitter.complete();
+        });
+
+        send(subscription, RESULTS_EVENT, initialResponse);
+        return emitter;
+    }
+
+    @Override
+    public void onResourceEvent(ResourceEventListener.Type type, String message) {
+        if (meterRegistry != null)
+            meterRegistry.counter(RESOURCE_EVENTS_METRIC, "type", type.name().toLowerCase()).increment();
+        if (subscriptions.isEmpty())
+            return;
+
+        String platformId = null;
+        Collection<String> removedResourceIds = null;
+        try {
+            JsonNode event = mapper.readTree(message);
+            platformId = event.path("platformId").textValue();
+            if (type == ResourceEventListener.Type.REMOVED)
+                removedResourceIds = resourceIdsOf(event.get("body"));
+        } catch (IOException e) {
+            log.debug("Could not parse resource event, matching it against all subscriptions", e);
+        }
+
+        for (Subscription subscription : subscriptions) {
+            if (subscription.matches(platformId, removedResourceIds))
+                scheduleRefresh(subscription);
+        }
+    }
+
+    /**
+     * Creates emitter of the subscription events.
+     *
+     * @param timeout time in milliseconds after which the emitter completes
+     * @return new emitter
+     */
+    protected SseEmitter createEmitter(long timeout) {
+        return new SseEmitter(timeout);
+    }
+
+    private void scheduleRefresh(Subscription subscription) {
+        ScheduledThreadPoolExecutor refreshExecutor = executor;
+        if (refreshExecutor == null || !subscription.markRefreshPending())
+            return;
+
+        try {
+            refreshExecutor.schedule(() -> refresh(subscription), nextRefreshDelay(), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            subscription.clearRefreshPending();
+        }
+    }
+
+    /**
+     * Reserves the earliest time slot for a re-query which is at least debounce milliseconds from now and
+     * 1/maxRefreshRate seconds after the previously reserved one.
+     *
+     * @return delay of the re-query in nanoseconds
+     */
+    private long nextRefreshDelay() {
+        long now = System.nanoTime();
+        long earliest = now + TimeUnit.MILLISECONDS.toNanos(debounce);
+        long interval = TimeUnit.SECONDS.toNanos(1) / Math.max(1, maxRefreshRate);
+        long reserved = nextRefreshTime.getAndUpdate(next -> Math.max(next - earliest, 0) + earliest + interval);
+        return Math.max(reserved - earliest, 0) + earliest - now;
+    }
+
+    /**
+     * Re-executes the subscribed query and sends the difference from the previous results.
+     */
+    private void refresh(Subscription subscription) {
+        synchronized (subscription) {
+            subscription.clearRefreshPending();
+            if (!subscriptions.contains(subscription))
+                return;
+
+            QueryResponse response;
+            try {
+                response = subscription.getSearch().apply(subscription.getQuery());
+            } catch (RuntimeException e) {
+                count("failed");
+                send(subscription, ERROR_EVENT, e.getMessage());
+                return;
+            }
+            if (response == null) {
+                count("failed");
+                send(subscription, ERROR_EVENT, "Timeout occured when contacting symbIoTe Core services");
+                return;
+            }
+            if (response.getBody() == null || !HttpStatus.valueOf(response.getStatus()).is2xxSuccessful()) {
+                count("failed");
+                send(subscription, ERROR_EVENT, response.getMessage());
+                return;
+            }
+
+            count("succeeded");
+            Set<String> previous = subscription.getResourceIds();
+            Set<String> current = resourceIdsOf(response.getBody());
+            List<QueryResourceResult> added = response.getBody().stream()
+                    .filter(resource -> resource.getId() != null && !previous.contains(resource.getId()))
+                    .collect(Collectors.toList());
+            List<String> removed = previous.stream()
+                    .filter(resourceId -> !current.contains(resourceId))
+                    .collect(Collectors.toList());
+            subscription.setResourceIds(current);
+
+            if (!added.isEmpty())
+                send(subscription, ADDED_EVENT, added);
+            if (!removed.isEmpty())
+                send(subscription, REMOVED_EVENT, removed);
+        }
+    }
+
+    private void send(Subscription subscription, String event, Object data) {
+        try {
+            subscription.getEmitter().send(SseEmitter.event().name(event).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Could not send " + event + " event, ending subscription", e);
+            subscriptions.remove(subscription);
+            subscription.getEmitter().completeWithError(e);
+        }
+    }
+
+    private void count(String outcome) {
+        if (meterRegistry != null)
+            meterRegistry.counter(REFRESHES_METRIC, "outcome", outcome).increment();
+    }
+
+    private Collection<String> resourceIdsOf(JsonNode body) throws IOException {
+        if (body == null)
+            return null;
+        if (body.isTextual())
+            body = mapper.readTree(body.textValue());
+        List<String> resourceIds = body.findValuesAsText("id");
+        return resourceIds.isEmpty() ? null : resourceIds;
+    }
+
+    private static Set<String> resourceIdsOf(List<QueryResourceResult> resources) {
+        return resources.stream()
+                .map(QueryResourceResult::getId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+}
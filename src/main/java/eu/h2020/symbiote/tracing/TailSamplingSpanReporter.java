@@ -0,0 +1,202 @@
+package eu.h2020.symbiote.tracing;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.cloud.sleuth.Span;
+import org.springframework.cloud.sleuth.SpanReporter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Span reporter exporting traces of slow and failed requests even when they were not sampled at their start.
+ * <p>
+ * Spans of sampled traces are passed to the delegate (e.g. Zipkin reporter) unchanged. Spans of other traces are kept
+ * in memory until the span of the HTTP request they belong to (the one with "sr" event) or, for work started in the
+ * background, their local root span (one without parent) finishes. When that span took at least slowThreshold
+ * milliseconds or failed (any of its spans has "error" tag or the request ended with 5xx status), the whole trace is
+ * exported; otherwise it is dropped. Since only the local part of a trace is kept, downstream services contribute
+ * their spans only to head-sampled traces.
+ * <p>
+ * At most maxTraces traces are kept at once and spans that don't fit are dropped. Traces not decided within maxAge
+ * milliseconds are discarded whenever a span is reported.
+ */
+public class TailSamplingSpanReporter implements SpanReporter {
+    private static Log log = LogFactory.getLog(TailSamplingSpanReporter.class);
+
+    public static final String TRACES_METRIC = "coreinterface.tracing.traces";
+    public static final String PENDING_METRIC = "coreinterface.tracing.pending";
+    public static final String OVERFLOW_METRIC = "coreinterface.tracing.overflow";
+
+    public static final String SAMPLED = "sampled";
+    public static final String SLOW = "slow";
+    public static final String ERROR = "error";
+    public static final String DROPPED = "dropped";
+
+    private static final String STATUS_CODE_TAG = "http.status_code";
+
+    private final SpanReporter delegate;
+    private final MeterRegistry meterRegistry;
+    private final long slowThresholdMicros;
+    private final int maxTraces;
+    private final long maxAgeNanos;
+    private final Map<Long, PendingTrace> pending = new ConcurrentHashMap<>();
+    private final Queue<PendingTrace> byAge = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param delegate      reporter exporting the spans
+     * @param meterRegistry MeterRegistry used to count sampling decisions, may be null
+     * @param slowThreshold minimal duration in milliseconds of requests whose traces are exported
+     * @param maxTraces     maximal number of traces kept in memory
+     * @param maxAge        time in milliseconds after which a trace which was not decided is discarded
+     */
+    public TailSamplingSpanReporter(SpanReporter delegate, MeterRegistry meterRegistry, long slowThreshold, int maxTraces, long maxAge) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+        this.slowThresholdMicros = TimeUnit.MILLISECONDS.toMicros(slowThreshold);
+        this.maxTraces = maxTraces;
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAge);
+
+        if (meterRegistry != null)
+            Gauge.builder(PENDING_METRIC, pending, Map::size).register(meterRegistry);
+    }
+
+    @Override
+    public void report(Span span) {
+        boolean decisive = isRequest(span) || isLocalRoot(span);
+        if (span.isExportable()) {
+            if (decisive)
+                count(SAMPLED);
+            delegate.report(span);
+            return;
+        }
+
+        evictStale();
+        if (!decisive) {
+            keep(span);
+            return;
+        }
+
+        PendingTrace trace = pending.remove(span.getTraceId());
+        List<Span> kept = trace != null ? trace.takeSpans() : Collections.emptyList();
+        String decision = isFailed(span) || trace != null && trace.isFailed() ? ERROR
+                : span.getAccumulatedMicros() >= slowThresholdMicros ? SLOW
+                : DROPPED;
+        count(decision);
+        if (DROPPED.equals(decision))
+            return;
+
+        if (log.isDebugEnabled())
+            log.debug("Exporting " + decision + " trace of " + span.getName() + " which took " + span.getAccumulatedMicros() + " us");
+        for (Span keptSpan : kept)
+            delegate.report(exportable(keptSpan));
+        delegate.report(exportable(span));
+    }
+
+    private void keep(Span span) {
+        PendingTrace trace = pending.get(span.getTraceId());
+        if (trace == null) {
+            if (pending.size() >= maxTraces) {
+                if (meterRegistry != null)
+                    meterRegistry.counter(OVERFLOW_METRIC).increment();
+                return;
+            }
+            trace = pending.computeIfAbsent(span.getTraceId(), traceId -> {
+                PendingTrace created = new PendingTrace(traceId);
+                byAge.add(created);
+                return created;
+            });
+        }
+        trace.add(span, isFailed(span));
+    }
+
+    /**
+     * Discards traces older than maxAge. Traces are queued in the order they were created, so only the expired head of
+     * the queue is visited; decided traces stay in the queue without their spans until they expire.
+     */
+    private void evictStale() {
+        long now = System.nanoTime();
+        PendingTrace oldest;
+        while ((oldest = byAge.peek()) != null && now - oldest.created > maxAgeNanos) {
+            if (byAge.remove(oldest))
+                pending.remove(oldest.traceId, oldest);
+        }
+    }
+
+    private void count(String decision) {
+        if (meterRegistry != null)
+            meterRegistry.counter(TRACES_METRIC, "decision", decision).increment();
+    }
+
+    private static boolean isRequest(Span span) {
+        return span.logs().stream().anyMatch(event -> Span.SERVER_RECV.equals(event.getEvent()));
+    }
+
+    private static boolean isLocalRoot(Span span) {
+        return span.getParents() == null || span.getParents().isEmpty();
+    }
+
+    private static boolean isFailed(Span span) {
+        Map<String, String> tags = span.tags();
+        if (tags.containsKey(Span.SPAN_ERROR_TAG_NAME))
+            return true;
+        String status = tags.get(STATUS_CODE_TAG);
+        try {
+            return status != null && Integer.parseInt(status) >= 500;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static Span exportable(Span span) {
+        return Span.builder()
+                .begin(span.getBegin())
+                .end(span.getEnd())
+                .name(span.getName())
+                .traceIdHigh(span.getTraceIdHigh())
+                .traceId(span.getTraceId())
+                .parents(span.getParents())
+                .spanId(span.getSpanId())
+                .remote(span.isRemote())
+                .shared(span.isShared())
+                .processId(span.getProcessId())
+                .tags(span.tags())
+                .logs(span.logs())
+                .exportable(true)
+                .build();
+    }
+
+    private static class PendingTrace {
+        private final long traceId;
+        private final long created = System.nanoTime();
+        private List<Span> spans = new ArrayList<>();
+        private boolean failed;
+
+        PendingTrace(long traceId) {
+            this.traceId = traceId;
+        }
+
+        synchronized void add(Span span, boolean failed) {
+            this.spans.add(span);
+            this.failed |= failed;
+        }
+
+        synchronized List<Span> takeSpans() {
+            List<Span> taken = spans;
+            spans = new ArrayList<>();
+            return taken;
+        }
+
+        synchronized boolean isFailed() {
+            return failed;
+        }
+    }
+}
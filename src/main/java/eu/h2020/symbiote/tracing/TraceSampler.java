@@ -0,0 +1,69 @@
+package eu.h2020.symbiote.tracing;
+
+import org.springframework.cloud.sleuth.Sampler;
+import org.springframework.cloud.sleuth.Span;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Head sampler deciding whether a new trace is exported when it starts.
+ * <p>
+ * A trace is sampled with the configured probability, but at most the configured number of traces per second are
+ * sampled, so that tracing overhead stays bounded regardless of the request rate. Traces continued from a caller keep
+ * the caller's decision, as Sleuth does not consult the sampler for them.
+ * <p>
+ * Slow and failed requests which were not sampled here can still be exported by {@link TailSamplingSpanReporter}.
+ */
+public class TraceSampler implements Sampler {
+    private final double probability;
+    private final int ratePerSecond;
+    private final LongSupplier nanoClock;
+
+    private long currentSecond = Long.MIN_VALUE;
+    private int sampledInSecond;
+
+    /**
+     * @param probability   probability of sampling a trace, from 0 to 1
+     * @param ratePerSecond maximal number of traces sampled per second, 0 for no limit
+     */
+    public TraceSampler(double probability, int ratePerSecond) {
+        this(probability, ratePerSecond, System::nanoTime);
+    }
+
+    /**
+     * Creates sampler measuring time with the given clock.
+     * Used ONLY for unit testing.
+     *
+     * @param probability   probability of sampling a trace, from 0 to 1
+     * @param ratePerSecond maximal number of traces sampled per second, 0 for no limit
+     * @param nanoClock     source of monotonic time in nanoseconds
+     */
+    public TraceSampler(double probability, int ratePerSecond, LongSupplier nanoClock) {
+        if (probability < 0 || probability > 1)
+            throw new IllegalArgumentException("Sampling probability must be from 0 to 1, got " + probability);
+        this.probability = probability;
+        this.ratePerSecond = ratePerSecond;
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public boolean isSampled(Span span) {
+        if (probability < 1 && ThreadLocalRandom.current().nextDouble() >= probability)
+            return false;
+        return ratePerSecond <= 0 || tryAcquire();
+    }
+
+    private synchronized boolean tryAcquire() {
+        long second = TimeUnit.NANOSECONDS.toSeconds(nanoClock.getAsLong());
+        if (second != currentSecond) {
+            currentSecond = second;
+            sampledInSecond = 0;
+        }
+        if (sampledInSecond >= ratePerSecond)
+            return false;
+        sampledInSecond++;
+        return true;
+    }
+}
@@ -0,0 +1,50 @@
+package eu.h2020.symbiote.utils;
+
+import eu.h2020.symbiote.core.internal.CoreQueryRequest;
+
+/**
+ * Helper methods for {@link CoreQueryRequest}.
+ */
+public final class CoreQueryRequests {
+
+    private CoreQueryRequests() {
+    }
+
+    /**
+     * @param queryRequest query to copy
+     * @return shallow copy of the query, including its security request
+     */
+    public static CoreQueryRequest copy(CoreQueryRequest queryRequest) {
+        CoreQueryRequest copy = new CoreQueryRequest();
+        copy.setPlatform_id(queryRequest.getPlatform_id());
+        copy.setPlatform_name(queryRequest.getPlatform_name());
+        copy.setOwner(queryRequest.getOwner());
+        copy.setName(queryRequest.getName());
+        copy.setId(queryRequest.getId());
+        copy.setDescription(queryRequest.getDescription());
+        copy.setLocation_name(queryRequest.getLocation_name());
+        copy.setLocation_lat(queryRequest.getLocation_lat());
+        copy.setLocation_long(queryRequest.getLocation_long());
+        copy.setMax_distance(queryRequest.getMax_distance());
+        copy.setResource_type(queryRequest.getResource_type());
+        copy.setShould_rank(queryRequest.getShould_rank());
+        copy.setObserved_property(queryRequest.getObserved_property());
+        copy.setObserved_property_iri(queryRequest.getObserved_property_iri());
+        copy.setSecurityRequest(queryRequest.getSecurityRequest());
+        return copy;
+    }
+
+    /**
+     * Computes hash of all query parameters except location (latitude, longitude and maximal distance) and security
+     * request.
+     *
+     * @param queryRequest query
+     * @return hash of non-location parameters, see {@link QueryCursor#hash(Object...)}
+     */
+    public static String hashWithoutLocation(CoreQueryRequest queryRequest) {
+        return QueryCursor.hash(queryRequest.getPlatform_id(), queryRequest.getPlatform_name(), queryRequest.getOwner(),
+                queryRequest.getName(), queryRequest.getId(), queryRequest.getDescription(), queryRequest.getLocation_name(),
+                queryRequest.getObserved_property(), queryRequest.getObserved_property_iri(), queryRequest.getResource_type(),
+                queryRequest.getShould_rank());
+    }
+}
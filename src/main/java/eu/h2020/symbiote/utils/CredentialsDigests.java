@@ -0,0 +1,71 @@
+package eu.h2020.symbiote.utils;
+
+import eu.h2020.symbiote.security.commons.SecurityConstants;
+import eu.h2020.symbiote.security.communication.payloads.SecurityCredentials;
+import eu.h2020.symbiote.security.communication.payloads.SecurityRequest;
+import org.springframework.http.HttpHeaders;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Digests of client credentials, used to share upstream responses only between requests of the same client.
+ */
+public final class CredentialsDigests {
+
+    private CredentialsDigests() {
+    }
+
+    /**
+     * Computes digest of all security headers. Requests have equal digests only if they carry exactly the same
+     * credentials, including timestamp and authentication challenges.
+     *
+     * @param httpHeaders request headers
+     * @return digest of all X-Auth-* headers
+     */
+    public static String headersDigest(HttpHeaders httpHeaders) {
+        MessageDigest digest = newDigest();
+        new TreeMap<>(httpHeaders.toSingleValueMap()).forEach((name, value) -> {
+            if (name.toLowerCase().startsWith(SecurityConstants.SECURITY_CREDENTIALS_HEADER_PREFIX.toLowerCase())) {
+                update(digest, name.toLowerCase());
+                update(digest, value);
+            }
+        });
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    /**
+     * Computes digest of the tokens in security request. Unlike the whole credentials, tokens don't change between
+     * subsequent requests of the same client.
+     *
+     * @param securityRequest security request, may be null
+     * @return digest of all tokens
+     */
+    public static String tokensDigest(SecurityRequest securityRequest) {
+        MessageDigest digest = newDigest();
+        if (securityRequest != null && securityRequest.getSecurityCredentials() != null)
+            securityRequest.getSecurityCredentials().stream()
+                    .map(SecurityCredentials::getToken)
+                    .filter(Objects::nonNull)
+                    .sorted()
+                    .forEach(token -> update(digest, token));
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+}
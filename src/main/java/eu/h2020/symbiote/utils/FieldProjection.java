@@ -0,0 +1,71 @@
+package eu.h2020.symbiote.utils;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import eu.h2020.symbiote.core.ci.QueryResourceResult;
+
+import java.util.*;
+
+/**
+ * Projection of search results to the attributes requested by the client with 'fields' parameter.
+ * <p>
+ * Projection is applied during serialization by Jackson property filter attached to {@link QueryResourceResult}, so
+ * attributes which were not requested are neither read nor written. Envelope of the response (status, message,
+ * serviceResponse) is never filtered.
+ */
+public final class FieldProjection {
+    public static final String FILTER_ID = "queryResourceResultFields";
+
+    /**
+     * Names which stand for a group of attributes.
+     */
+    private static final Map<String, List<String>> ALIASES = Collections.singletonMap("locatedAt",
+            Arrays.asList("locationName", "locationLatitude", "locationLongitude", "locationAltitude"));
+
+    /**
+     * Filters writing all attributes, used when no fields are requested.
+     */
+    public static final FilterProvider ALL_FIELDS = new SimpleFilterProvider()
+            .setDefaultFilter(SimpleBeanPropertyFilter.serializeAll());
+
+    private FieldProjection() {
+    }
+
+    /**
+     * Registers the projection filter on the mapper. Without explicitly requested fields, all attributes are written.
+     *
+     * @param mapper mapper to configure
+     * @return the same mapper
+     */
+    public static ObjectMapper configure(ObjectMapper mapper) {
+        mapper.addMixIn(QueryResourceResult.class, QueryResourceResultMixIn.class);
+        mapper.setFilterProvider(ALL_FIELDS);
+        return mapper;
+    }
+
+    /**
+     * @param fields requested attributes of search results, may contain aliases such as locatedAt
+     * @return filters writing only requested attributes, or all of them if fields are null or empty
+     */
+    public static FilterProvider filterFor(String[] fields) {
+        if (fields == null || fields.length == 0)
+            return ALL_FIELDS;
+
+        Set<String> properties = new HashSet<>();
+        for (String field : fields) {
+            String trimmed = field.trim();
+            properties.addAll(ALIASES.getOrDefault(trimmed, Collections.singletonList(trimmed)));
+        }
+        return new SimpleFilterProvider().addFilter(FILTER_ID, SimpleBeanPropertyFilter.filterOutAllExcept(properties));
+    }
+
+    /**
+     * Mix-in attaching the projection filter to {@link QueryResourceResult}.
+     */
+    @JsonFilter(FILTER_ID)
+    public abstract static class QueryResourceResultMixIn {
+    }
+}
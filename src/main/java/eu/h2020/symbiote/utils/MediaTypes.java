@@ -0,0 +1,54 @@
+package eu.h2020.symbiote.utils;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+
+/**
+ * Media types used by Core Interface which are not defined in {@link MediaType}.
+ */
+public final class MediaTypes {
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType(APPLICATION_NDJSON_VALUE);
+
+    private MediaTypes() {
+    }
+
+    /**
+     * Checks whether client explicitly asked for newline delimited JSON, i.e. results streamed one per line.
+     *
+     * @param accept media types from 'Accept' header
+     * @return true if NDJSON is accepted
+     */
+    public static boolean acceptsNdJson(List<MediaType> accept) {
+        return accept != null && accept.stream().anyMatch(mediaType -> APPLICATION_NDJSON.includes(mediaType) && mediaType.getQualityValue() > 0);
+    }
+
+    /**
+     * @param acceptHeader value of 'Accept' header, may be null or malformed
+     * @return true if NDJSON is accepted
+     */
+    public static boolean acceptsNdJson(String acceptHeader) {
+        try {
+            return acceptsNdJson(MediaType.parseMediaTypes(acceptHeader));
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether client explicitly asked for Server-Sent Events.
+     *
+     * @param acceptHeader value of 'Accept' header, may be null or malformed
+     * @return true if text/event-stream is accepted
+     */
+    public static boolean acceptsEventStream(String acceptHeader) {
+        try {
+            return MediaType.parseMediaTypes(acceptHeader).stream()
+                    .anyMatch(mediaType -> MediaType.TEXT_EVENT_STREAM.includes(mediaType) && mediaType.getQualityValue() > 0);
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package eu.h2020.symbiote.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Opaque cursor pointing to the next page of search results.
+ * <p>
+ * Cursor carries offset of the page along with hash of the query it was issued for, so that it can't be used with a
+ * different query. Clients should treat its encoded form as an opaque string.
+ * <p>
+ * Cursor doesn't refer to a stored result set: the query is executed again for each page and the results at the
+ * offset are returned, so pages reflect the current state of the Registry rather than a snapshot.
+ */
+public final class QueryCursor {
+    private static final String SEPARATOR = ":";
+    private static final int HASH_LENGTH = 16;
+
+    private final int offset;
+    private final String queryHash;
+
+    /**
+     * @param offset    index of the first result of the page
+     * @param queryHash hash of the query, see {@link #hash(Object...)}
+     */
+    public QueryCursor(int offset, String queryHash) {
+        this.offset = offset;
+        this.queryHash = queryHash;
+    }
+
+    /**
+     * @param cursor encoded cursor
+     * @return decoded cursor
+     * @throws IllegalArgumentException when the cursor is malformed
+     */
+    public static QueryCursor decode(String cursor) {
+        String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        String[] parts = decoded.split(SEPARATOR, 2);
+        if (parts.length != 2)
+            throw new IllegalArgumentException("Malformed cursor");
+
+        int offset = Integer.parseInt(parts[0]);
+        if (offset < 0)
+            throw new IllegalArgumentException("Malformed cursor");
+        return new QueryCursor(offset, parts[1]);
+    }
+
+    /**
+     * Computes hash identifying the query.
+     *
+     * @param queryParameters all parameters of the query; arrays are compared by content
+     * @return hash of the parameters
+     */
+    public static String hash(Object... queryParameters) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(Arrays.deepToString(queryParameters).getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder(HASH_LENGTH);
+            for (int i = 0; i < HASH_LENGTH / 2; i++)
+                builder.append(String.format("%02x", hash[i]));
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * @return cursor in opaque, URL safe form
+     */
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((offset + SEPARATOR + queryHash).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public String getQueryHash() {
+        return queryHash;
+    }
+}
@@ -0,0 +1,170 @@
+package eu.h2020.symbiote;
+
+import eu.h2020.symbiote.communication.BulkheadFullException;
+import eu.h2020.symbiote.communication.Bulkheads;
+import eu.h2020.symbiote.communication.UpstreamService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.sleuth.Tracer;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BulkheadsTests {
+    private SimpleMeterRegistry meterRegistry;
+    private Bulkheads bulkheads;
+    private CountDownLatch release;
+
+    @Before
+    public void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.bulkheads = new Bulkheads(meterRegistry);
+        this.bulkheads.setTestParameters(1, 1);
+        this.release = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() {
+        this.release.countDown();
+        this.bulkheads.cleanup();
+    }
+
+    @Test
+    public void testExecute_noPools() {
+        Bulkheads inline = new Bulkheads();
+        Thread caller = Thread.currentThread();
+
+        assertEquals(caller, inline.execute(UpstreamService.BTM, Thread::currentThread));
+        assertEquals(0, inline.getUtilization(UpstreamService.BTM), 0);
+    }
+
+    @Test
+    public void testExecute_ok() {
+        assertEquals("result", bulkheads.execute(UpstreamService.AAM, () -> "result"));
+    }
+
+    @Test
+    public void testExecute_timeout() throws Exception {
+        bulkheads.setTestParameters(1, 1, 50);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        try {
+            bulkheads.execute(UpstreamService.AAM, () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return "late";
+            });
+            fail();
+        } catch (ResourceAccessException e) {
+            assertTrue(e.getCause() instanceof SocketTimeoutException);
+        }
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSetTestParameters_noRegistry() {
+        Bulkheads unmetered = new Bulkheads();
+        unmetered.setTestParameters(1, 0);
+
+        try {
+            assertEquals("result", unmetered.execute(UpstreamService.AAM, () -> "result"));
+            unmetered.submit(UpstreamService.AAM, this::await);
+            try {
+                unmetered.submit(UpstreamService.AAM, () -> "rejected");
+                fail();
+            } catch (BulkheadFullException e) {
+                assertEquals(UpstreamService.AAM, e.getUpstream());
+            }
+        } finally {
+            release.countDown();
+            unmetered.cleanup();
+        }
+    }
+
+    @Test
+    public void testExecute_errorIsRethrown() {
+        try {
+            bulkheads.execute(UpstreamService.ADM, () -> {
+                throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR);
+            });
+            fail();
+        } catch (HttpServerErrorException e) {
+            assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, e.getStatusCode());
+        }
+    }
+
+    @Test
+    public void testSubmit_saturated() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        bulkheads.submit(UpstreamService.BTM, () -> {
+            started.countDown();
+            return await();
+        });
+        started.await();
+        bulkheads.submit(UpstreamService.BTM, this::await);
+
+        try {
+            bulkheads.submit(UpstreamService.BTM, () -> "rejected");
+            fail();
+        } catch (BulkheadFullException e) {
+            assertEquals(UpstreamService.BTM, e.getUpstream());
+        }
+
+        assertEquals(1, bulkheads.getUtilization(UpstreamService.BTM), 0);
+        assertEquals(1, meterRegistry.counter(Bulkheads.REJECTED_METRIC, "upstream", "btm").count(), 0);
+    }
+
+    @Test
+    public void testSubmit_otherUpstreamsNotAffected() throws Exception {
+        bulkheads.submit(UpstreamService.BTM, this::await);
+        bulkheads.submit(UpstreamService.BTM, this::await);
+
+        Future<String> result = bulkheads.submit(UpstreamService.AAM, () -> "result");
+
+        assertEquals("result", result.get());
+    }
+
+    private String await() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "released";
+    }
+
+    @Test
+    public void testExecute_traceContinuedInBulkhead() throws Exception {
+        Tracer tracer = mock(Tracer.class);
+        when(tracer.wrap(any(Callable.class))).thenAnswer(invocation -> {
+            Callable<?> task = (Callable<?>) invocation.getArguments()[0];
+            return (Callable<Object>) () -> "traced " + task.call();
+        });
+        Bulkheads traced = new Bulkheads(meterRegistry, tracer);
+        traced.setTestParameters(1, 1);
+
+        try {
+            assertEquals("traced result", traced.execute(UpstreamService.REGISTRY, () -> "result"));
+            assertEquals("traced result", traced.submitAsync(UpstreamService.CRAM, () -> "result").get());
+        } finally {
+            traced.cleanup();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package eu.h2020.symbiote;
+
+import eu.h2020.symbiote.communication.BulkheadFullException;
+import eu.h2020.symbiote.communication.CircuitBreaker;
+import eu.h2020.symbiote.communication.CircuitBreakers;
+import eu.h2020.symbiote.communication.CircuitOpenException;
+import eu.h2020.symbiote.communication.UpstreamService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakersTests {
+    private static final long OPEN_DURATION = 100;
+
+    private CircuitBreakers circuitBreakers;
+
+    @Before
+    public void setUp() {
+        this.circuitBreakers = new CircuitBreakers(new SimpleMeterRegistry());
+        this.circuitBreakers.setTestParameters(10, 4, 50, OPEN_DURATION, 2);
+    }
+
+    @Test
+    public void testExecute_disabled() {
+        CircuitBreakers disabled = new CircuitBreakers();
+        for (int i = 0; i < 20; i++)
+            assertNull(disabled.execute(UpstreamService.REGISTRY, () -> null));
+
+        assertEquals(CircuitBreaker.State.CLOSED, disabled.getState(UpstreamService.REGISTRY));
+    }
+
+    @Test
+    public void testExecute_opensOnTimeouts() {
+        for (int i = 0; i < 4; i++)
+            assertNull(circuitBreakers.execute(UpstreamService.REGISTRY, () -> null));
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreakers.getState(UpstreamService.REGISTRY));
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreakers.getState(UpstreamService.CRAM));
+
+        try {
+            circuitBreakers.execute(UpstreamService.REGISTRY, () -> "result");
+            fail();
+        } catch (CircuitOpenException e) {
+            assertEquals(UpstreamService.REGISTRY, e.getUpstream());
+        }
+    }
+
+    @Test
+    public void testExecute_clientErrorsDoNotOpen() {
+        for (int i = 0; i < 10; i++) {
+            try {
+                circuitBreakers.execute(UpstreamService.AAM, () -> {
+                    throw new HttpClientErrorException(HttpStatus.UNAUTHORIZED);
+                });
+                fail();
+            } catch (HttpClientErrorException e) {
+                assertEquals(HttpStatus.UNAUTHORIZED, e.getStatusCode());
+            }
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreakers.getState(UpstreamService.AAM));
+    }
+
+    @Test
+    public void testExecute_halfOpenRecovers() throws InterruptedException {
+        tripAam();
+        Thread.sleep(OPEN_DURATION + 50);
+
+        assertEquals("ok", circuitBreakers.execute(UpstreamService.AAM, () -> "ok"));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreakers.getState(UpstreamService.AAM));
+        assertEquals("ok", circuitBreakers.execute(UpstreamService.AAM, () -> "ok"));
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreakers.getState(UpstreamService.AAM));
+    }
+
+    @Test
+    public void testExecute_halfOpenFailureReopens() throws InterruptedException {
+        tripAam();
+        Thread.sleep(OPEN_DURATION + 50);
+
+        failAam();
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreakers.getState(UpstreamService.AAM));
+    }
+
+    @Test
+    public void testExecute_bulkheadRejectionIsIgnored() throws InterruptedException {
+        tripAam();
+        Thread.sleep(OPEN_DURATION + 50);
+
+        for (int i = 0; i < 5; i++) {
+            try {
+                circuitBreakers.execute(UpstreamService.AAM, () -> {
+                    throw new BulkheadFullException(UpstreamService.AAM);
+                });
+                fail();
+            } catch (BulkheadFullException e) {
+                assertEquals(UpstreamService.AAM, e.getUpstream());
+            }
+        }
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreakers.getState(UpstreamService.AAM));
+    }
+
+    private void tripAam() {
+        for (int i = 0; i < 4; i++)
+            failAam();
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreakers.getState(UpstreamService.AAM));
+    }
+
+    private void failAam() {
+        try {
+            circuitBreakers.execute(UpstreamService.AAM, () -> {
+                throw new HttpServerErrorException(HttpStatus.BAD_GATEWAY);
+            });
+            fail();
+        } catch (HttpServerErrorException e) {
+            assertEquals(HttpStatus.BAD_GATEWAY, e.getStatusCode());
+        }
+    }
+}
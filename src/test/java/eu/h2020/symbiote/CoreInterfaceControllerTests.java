@@ -1,6 +1,10 @@
 package eu.h2020.symbiote;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.h2020.symbiote.communication.Bulkheads;
+import eu.h2020.symbiote.communication.CircuitBreakers;
 import eu.h2020.symbiote.communication.RabbitManager;
+import eu.h2020.symbiote.communication.UpstreamService;
 import eu.h2020.symbiote.controllers.CoreInterfaceController;
 import eu.h2020.symbiote.core.ci.QueryResourceResult;
 import eu.h2020.symbiote.core.ci.QueryResponse;
@@ -10,21 +14,34 @@ import eu.h2020.symbiote.core.internal.CoreQueryRequest;
 import eu.h2020.symbiote.core.internal.CoreSparqlQueryRequest;
 import eu.h2020.symbiote.core.internal.cram.ResourceUrlsRequest;
 import eu.h2020.symbiote.core.internal.cram.ResourceUrlsResponse;
+import eu.h2020.symbiote.model.BatchQueryResult;
+import eu.h2020.symbiote.model.BulkResourceUrlsResponse;
+import eu.h2020.symbiote.model.ExtendedQueryResponse;
+import eu.h2020.symbiote.model.QueryOptions;
 import eu.h2020.symbiote.model.cim.Property;
 import eu.h2020.symbiote.security.commons.Certificate;
 import eu.h2020.symbiote.security.commons.SecurityConstants;
 import eu.h2020.symbiote.security.commons.enums.ValidationStatus;
 import eu.h2020.symbiote.security.communication.payloads.*;
+import eu.h2020.symbiote.subscriptions.SubscriptionManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
 import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.springframework.http.*;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.*;
@@ -172,6 +189,48 @@ public class CoreInterfaceControllerTests {
         assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
     }
 
+    @Test
+    public void testQuery_observedPropertyIri() {
+        RabbitManager rabbitManager = Mockito.mock(RabbitManager.class);
+        ArgumentCaptor<CoreQueryRequest> captor = ArgumentCaptor.forClass(CoreQueryRequest.class);
+        when(rabbitManager.sendSearchRequest(captor.capture())).thenReturn(new QueryResponse(200, "", new ArrayList<>()));
+
+        CoreInterfaceController controller = new CoreInterfaceController(rabbitManager);
+
+        ResponseEntity response = controller.query(null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, new String[]{"http://example.com/temperature"}, null, null, null, null, null, getSecurityHeaders());
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(Collections.singletonList("http://example.com/temperature"), captor.getValue().getObserved_property_iri());
+    }
+
+    @Test
+    public void testSubscribe_noSecurityHeaders() {
+        RabbitManager rabbitManager = Mockito.mock(RabbitManager.class);
+
+        CoreInterfaceController controller = new CoreInterfaceController(rabbitManager);
+
+        ResponseEntity<SseEmitter> response = controller.subscribe(null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null);
+
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+        assertNotNull(response.getBody());
+    }
+
+    @Test
+    public void testSubscribe_noCapacity() {
+        RabbitManager rabbitManager = Mockito.mock(RabbitManager.class);
+        SubscriptionManager subscriptionManager = Mockito.mock(SubscriptionManager.class);
+        when(subscriptionManager.isEnabled()).thenReturn(true);
+        when(subscriptionManager.hasCapacity()).thenReturn(false);
+
+        CoreInterfaceController controller = new CoreInterfaceController(rabbitManager);
+        controller.setSubscriptionManager(subscriptionManager);
+
+        ResponseEntity<SseEmitter> response = controller.subscribe(null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, getSecurityHeaders());
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        Mockito.verifyZeroInteractions(rabbitManager);
+    }
+
     @Test
     public void testResourceUrls_noIds() {
         RabbitManager rabbitManager = Mockito.mock(RabbitManager.class);
@@ -1074,5 +1133,444 @@ public class CoreInterfaceControllerTests {
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, result.getStatusCode());
 
     }
-}
 
+    @Test
+    public void testCouponUsage_bulkheadFull() {
+        RestTemplate restTemplate = Mockito.mock(RestTemplate.class);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Bulkheads bulkheads = new Bulkheads(new SimpleMeterRegistry());
+        bulkheads.setTestParameters(1, 0);
+
+        CoreInterfaceController controller = new CoreInterfaceController(null);
+        controller.setRestTemplate(restTemplate);
+        controller.setBulkheads(bulkheads);
+
+        try {
+            bulkheads.submit(UpstreamService.BTM, () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            });
+
+            ResponseEntity result = controller.couponUsage("filter");
+
+            assertNotNull(result);
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, result.getStatusCode());
+            Mockito.verifyZeroInteractions(restTemplate);
+        } finally {
+            release.countDown();
+            bulkheads.cleanup();
+        }
+    }
+
+    @Test
+    public void testQuery_circuitOpen() {
+        RabbitManager rabbitManager = Mockito.mock(RabbitManager.class);
+        when(rabbitManager.sendSearchRequest((CoreQueryRequest) notNull())).thenReturn(null);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(SecurityConstants.SECURITY_CREDENTIALS_TIMESTAMP_HEADER, "1500000000");
+        headers.add(SecurityConstants.SECURITY_CREDENTIALS_SIZE_HEADER, "1");
+        headers.add(SecurityConstants.SECURITY_CREDENTIALS_HEADER_PREFIX + "1", "{\"token\":\"token\"," +
+                "\"authenticationChallenge\":\"authenticationChallenge\"," +
+                "\"clientCertificate\":\"clientCertificate\"," +
+                "\"clientCertificateSigningAAMCertificate\":\"clientCertificateSigningAAMCertificate\"," +
+                "\"foreignTokenIssuingAAMCertificate\":\"foreignTokenIssuingAAMCertificate\"}");
+
+        CircuitBreakers circuitBreakers = new CircuitBreakers(new SimpleMeterRegistry());
+        circuitBreakers.setTestParameters(2, 2, 50, 60000, 1);
+
+        CoreInterfaceController controller = new CoreInterfaceController(rabbitManager);
+        controller.setCircuitBreakers(circuitBreakers);
+
+        for (int i = 0; i < 2; i++) {
+            ResponseEntity response = controller.query(null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, headers);
+            assertEquals(HttpStatus.GATEWAY_TIMEOUT, response.getStatusCode());
+        }
+
+        ResponseEntity response = controller.query(null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, headers);
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertTrue(response.getBody() instanceof QueryResponse);
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), ((QueryResponse) response.getBody()).getStatus());
+        Mockito.verify(rabbitManager, Mockito.times(2)).sendSearchRequest((CoreQueryRequest) notNull());
+    }
+
+    @Test
+    public void testQuery_bulkheadTimeout() {
+        RabbitManager rabbitManager = Mockito.mock(RabbitManager.class);
+        CountDownLatch release = new CountDownLatch(1);
+        when(rabbitManager.sendSearchRequest((CoreQueryRequest) notNull())).thenAnswer(invocation -> {
+            release.await();
+            return null;
+        });
+        when(rabbitManager.sendResourceUrlsRequest((ResourceUrlsRequest) notNull())).thenAnswer(invocation -> {
+            release.await();
+            return null;
+        });
+
+        Bulkheads bulkheads = new Bulkheads(new SimpleMeterRegistry());
+        bulkheads.setTestParameters(2, 2, 50);
+
+        CoreInterfaceController controller = new CoreInterfaceController(rabbitManager);
+        controller.setBulkheads(bulkheads);
+
+        try {
+            ResponseEntity response = controller.query(null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, getSecurityHeaders());
+
+            assertEquals(HttpStatus.GATEWAY_TIMEOUT, response.getStatusCode());
+            assertTrue(response.getBody() instanceof QueryResponse);
+            assertEquals(HttpStatus.GATEWAY_TIMEOUT.value(), ((QueryResponse) response.getBody()).getStatus());
+
+            response = controller.getResourceUrls(new String[]{"123"}, getSecurityHeaders());
+
+            assertEquals(HttpStatus.GATEWAY_TIMEOUT, response.getStatusCode());
+            assertTrue(response.getBody() instanceof ResourceUrlsResponse);
+            assertEquals(HttpStatus.GATEWAY_TIMEOUT.value(), ((ResourceUrlsResponse) response.getBody()).getStatus());
+        } finally {
+            release.countDown();
+            bulkheads.cleanup();
+        }
+    }
+
+    @Test
+    public void testBatchQuery_perQueryStatus() {
+        RabbitManager rabbitManager = Mockito.mock(RabbitManager.class);
+        when(rabbitManager.sendSearchRequest((CoreQueryRequest) notNull())).thenAnswer(invocation -> {
+            CoreQueryRequest request = (CoreQueryRequest) invocation.getArguments()[0];
+            assertNotNull(request.getSecurityRequest());
+            return "timeout".equals(request.getName()) ? null : new QueryResponse(200, "", new ArrayList<QueryResourceResult>());
+        });
+
+        CoreQueryRequest found = new CoreQueryRequest();
+        found.setName("found");
+        CoreQueryRequest timeout = new CoreQueryRequest();
+        timeout.setName("timeout");
+
+        CoreInterfaceController controller = new CoreInterfaceController(rabbitManager);
+
+        ResponseEntity response = controller.batchQuery(Arrays.asList(found, timeout), getSecurityHeaders());
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        List<BatchQueryResult> results = (List<BatchQueryResult>) response.getBody();
+        assertEquals(2, results.size());
+        assertEquals(0, results.get(0).getIndex());
+        assertEquals(200, results.get(0).getResult().getStatus());
+        assertEquals(1, results.get(1).getIndex());
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT.value(), results.get(1).getResult().getStatus());
+    }
+
+    @Test
+    public void testBatchQuery_empty() {
+        CoreInterfaceController controller = new CoreInterfaceController(Mockito.mock(RabbitManager.class));
+
+        ResponseEntity response = controller.batchQuery(Collections.emptyList(), getSecurityHeaders());
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertTrue(response.getBody() instanceof QueryResponse);
+        assertEquals(HttpStatus.BAD_REQUEST.value(), ((QueryResponse) response.getBody()).getStatus());
+    }
+
+    @Test
+    public void testBatchQuery_noSecurityHeaders() {
+        CoreInterfaceController controller = new CoreInterfaceController(Mockito.mock(RabbitManager.class));
+
+        ResponseEntity response = controller.batchQuery(Arrays.asList(new CoreQueryRequest()), null);
+
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+    }
+
+    @Test
+    public void testQuery_withUrls() {
+        RabbitManager rabbitManager = Mockito.mock(RabbitManager.class);
+
+        List<QueryResourceResult> resources = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            QueryResourceResult resource = new QueryResourceResult();
+            resource.setId("res" + i);
+            resources.add(resource);
+        }
+        QueryResponse searchResponse = new QueryResponse(200, "", resources);
+        searchResponse.setServiceResponse("registryServiceResponse");
+        when(rabbitManager.sendSearchRequest((CoreQueryRequest) notNull())).thenReturn(searchResponse);
+        when(rabbitManager.sendResourceUrlsRequest((ResourceUrlsRequest) notNull())).thenAnswer(invocation -> {
+            ResourceUrlsRequest request = (ResourceUrlsRequest) invocation.getArguments()[0];
+            assertTrue(request.getBody().size() <= 50);
+            Map<String, String> urls = new HashMap<>();
+            request.getBody().forEach(id -> urls.put(id, "http://" + id));
+            ResourceUrlsResponse response = new ResourceUrlsResponse(200, "", urls);
+            response.setServiceResponse("cramServiceResponse");
+            return response;
+        });
+
+        QueryOptions options = new QueryOptions();
+        options.setWithUrls(true);
+
+        CoreInterfaceController controller = new CoreInterfaceController(rabbitManager);
+
+        ResponseEntity response = controller.query(null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, options, getSecurityHeaders());
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(response.getBody() instanceof ExtendedQueryResponse);
+        ExtendedQueryResponse body = (ExtendedQueryResponse) response.getBody();
+        assertEquals(120, body.getBody().size());
+        assertEquals(120, body.getResourceUrls().size());
+        assertEquals("http://res42", body.getResourceUrls().get("res42"));
+        assertNull(body.getResourceUrlsStatus());
+        assertEquals("cramServiceResponse", body.getResourceUrlsServiceResponse());
+        assertEquals("registryServiceResponse", response.getHeaders().getFirst(SecurityConstants.SECURITY_RESPONSE_HEADER));
+        Mockito.verify(rabbitManager, Mockito.times(3)).sendResourceUrlsRequest((ResourceUrlsRequest) notNull());
+    }
+
+    @Test
+    public void testQuery_withUrlsTimeout() {
+        RabbitManager rabbitManager = Mockito.mock(RabbitManager.class);
+
+        QueryResourceResult resource = new QueryResourceResult();
+        resource.setId("res1");
+        when(rabbitManager.sendSearchRequest((CoreQueryRequest) notNull())).thenReturn(new QueryResponse(200, "", new ArrayList<>(Arrays.asList(resource))));
+        when(rabbitManager.sendResourceUrlsRequest((ResourceUrlsRequest) notNull())).thenReturn(null);
+
+        QueryOptions options = new QueryOptions();
+        options.setWithUrls(true);
+
+        CoreInterfaceController controller = new CoreInterfaceController(rabbitManager);
+
+        ResponseEntity response = controller.query(null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, options, getSecurityHeaders());
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        ExtendedQueryResponse body = (ExtendedQueryResponse) response.getBody();
+        assertEquals(1, body.getBody().size());
+        assertEquals(Integer.valueOf(HttpStatus.GATEWAY_TIMEOUT.value()), body.getResourceUrlsStatus());
+    }
+
+    @Test
+    public void testQuery_pagination() {
+        RabbitManager rabbitManager = Mockito.mock(RabbitManager.class);
+
+        List<QueryResourceResult> resources = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            QueryResourceResult resource = new QueryResourceResult();
+            resource.setId("res" + i);
+            resources.add(resource);
+        }
+        when(rabbitManager.sendSearchRequest((CoreQueryRequest) notNull())).thenAnswer(invocation -> new QueryResponse(200, "", new ArrayList<>(resources)));
+
+        CoreInterfaceController controller = new CoreInterfaceController(rabbitManager);
+
+        QueryOptions options = new QueryOptions();
+        options.setLimit(2);
+        List<String> ids = new ArrayList<>();
+        int pages = 0;
+        do {
+            ResponseEntity response = controller.query(null, null, null, null, null, "name", null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, options, getSecurityHeaders());
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            ((QueryResponse) response.getBody()).getBody().forEach(resource -> ids.add(resource.getId()));
+            options.setCursor(response.getHeaders().getFirst("X-Next-Cursor"));
+            pages++;
+        } while (options.getCursor() != null);
+
+        assertEquals(3, pages);
+        assertEquals(Arrays.asList("res0", "res1", "res2", "res3", "res4"), ids);
+    }
+
+    @Test
+    public void testQuery_invalidCursor() {
+        RabbitManager rabbitManager = Mockito.mock(RabbitManager.class);
+
+        QueryResourceResult resource = new QueryResourceResult();
+        resource.setId("res1");
+        when(rabbitManager.sendSearchRequest((CoreQueryRequest) notNull())).thenAnswer(invocation -> new QueryResponse(200, "", new ArrayList<>(Arrays.asList(resource, resource))));
+
+        CoreInterfaceController controller = new CoreInterfaceController(rabbitManager);
+
+        QueryOptions options = new QueryOptions();
+        options.setLimit(1);
+        ResponseEntity response = controller.query(null, null, null, null, null, "name", null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, options, getSecurityHeaders());
+        String cursor = response.getHeaders().getFirst("X-Next-Cursor");
+        assertNotNull(cursor);
+
+        options.setCursor(cursor);
+        response = controller.query(null, null, null, null, null, "otherName", null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, options, getSecurityHeaders());
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+
+        options.setCursor("not a cursor");
+        response = controller.query(null, null, null, null, null, "name", null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, options, getSecurityHeaders());
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+
+        Mockito.verify(rabbitManager, Mockito.times(2)).sendSearchRequest(any());
+    }
+
+    @Test
+    public void testQuery_ndJson() throws Exception {
+        RabbitManager rabbitManager = Mockito.mock(RabbitManager.class);
+
+        List<QueryResourceResult> resources = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            QueryResourceResult resource = new QueryResourceResult();
+            resource.setId("res" + i);
+            resources.add(resource);
+        }
+        when(rabbitManager.sendSearchRequest((CoreQueryRequest) notNull())).thenReturn(new QueryResponse(200, "", resources));
+
+        HttpHeaders headers = getSecurityHeaders();
+        headers.setAccept(Collections.singletonList(MediaType.valueOf("application/x-ndjson")));
+
+        CoreInterfaceController controller = new CoreInterfaceController(rabbitManager);
+        ResponseEntity response = controller.query(null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, new QueryOptions(), headers);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(response.getBody() instanceof StreamingResponseBody);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ((StreamingResponseBody) response.getBody()).writeTo(outputStream);
+        String[] lines = outputStream.toString("UTF-8").split("\n");
+        assertEquals(3, lines.length);
+        ObjectMapper mapper = new ObjectMapper();
+        for (int i = 0; i < 3; i++)
+            assertEquals("res" + i, mapper.readTree(lines[i]).get("id").asText());
+    }
+
+    @Test
+    public void testQuery_fields() {
+        RabbitManager rabbitManager = Mockito.mock(RabbitManager.class);
+
+        QueryResourceResult resource = new QueryResourceResult();
+        resource.setId("res1");
+        when(rabbitManager.sendSearchRequest((CoreQueryRequest) notNull())).thenReturn(new QueryResponse(200, "", new ArrayList<>(Arrays.asList(resource))));
+
+        QueryOptions options = new QueryOptions();
+        options.setFields(new String[]{"id", "name"});
+
+        CoreInterfaceController controller = new CoreInterfaceController(rabbitManager);
+        ResponseEntity response = controller.query(null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, options, getSecurityHeaders());
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        MappingJacksonValue body = (MappingJacksonValue) response.getBody();
+        assertNotNull(body.getFilters());
+        assertEquals("res1", ((QueryResponse) body.getValue()).getBody().get(0).getId());
+    }
+
+    @Test
+    public void testPostResourceUrls_partialFailure() {
+        RabbitManager rabbitManager = Mockito.mock(RabbitManager.class);
+        when(rabbitManager.sendResourceUrlsRequest((ResourceUrlsRequest) notNull())).thenAnswer(invocation -> {
+            ResourceUrlsRequest request = (ResourceUrlsRequest) invocation.getArguments()[0];
+            assertTrue(request.getBody().size() <= 50);
+            if (request.getBody().contains("res60"))
+                return null;
+            Map<String, String> urls = new HashMap<>();
+            request.getBody().forEach(id -> urls.put(id, "http://" + id));
+            ResourceUrlsResponse response = new ResourceUrlsResponse(200, "", urls);
+            response.setServiceResponse("serviceResponse-" + request.getBody().get(0));
+            return response;
+        });
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 120; i++)
+            ids.add("res" + i);
+
+        CoreInterfaceController controller = new CoreInterfaceController(rabbitManager);
+
+        ResponseEntity response = controller.postResourceUrls(ids, getSecurityHeaders());
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        BulkResourceUrlsResponse body = (BulkResourceUrlsResponse) response.getBody();
+        assertEquals(70, body.getBody().size());
+        assertEquals("http://res42", body.getBody().get("res42"));
+        assertEquals(50, body.getFailures().size());
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT.value(), body.getFailures().get("res60").getStatus());
+        assertNull(body.getFailures().get("res42"));
+        assertEquals("serviceResponse-res0", body.getServiceResponse());
+        assertEquals("serviceResponse-res0", response.getHeaders().getFirst(SecurityConstants.SECURITY_RESPONSE_HEADER));
+        Mockito.verify(rabbitManager, Mockito.times(3)).sendResourceUrlsRequest((ResourceUrlsRequest) notNull());
+    }
+
+    @Test
+    public void testPostResourceUrls_allFailed() {
+        RabbitManager rabbitManager = Mockito.mock(RabbitManager.class);
+        when(rabbitManager.sendResourceUrlsRequest((ResourceUrlsRequest) notNull())).thenReturn(null);
+
+        CoreInterfaceController controller = new CoreInterfaceController(rabbitManager);
+
+        ResponseEntity response = controller.postResourceUrls(Arrays.asList("res1", "res2"), getSecurityHeaders());
+
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT, response.getStatusCode());
+        assertEquals(2, ((BulkResourceUrlsResponse) response.getBody()).getFailures().size());
+    }
+
+    @Test
+    public void testPostResourceUrls_noIds() {
+        CoreInterfaceController controller = new CoreInterfaceController(Mockito.mock(RabbitManager.class));
+
+        ResponseEntity response = controller.postResourceUrls(new ArrayList<>(), getSecurityHeaders());
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    public void testQuery_multiplePlatforms() {
+        RabbitManager rabbitManager = Mockito.mock(RabbitManager.class);
+
+        QueryResourceResult resourceA = new QueryResourceResult();
+        resourceA.setId("a");
+        resourceA.setRanking(0.5f);
+        QueryResourceResult resourceB = new QueryResourceResult();
+        resourceB.setId("b");
+        resourceB.setRanking(0.9f);
+        QueryResourceResult resourceC = new QueryResourceResult();
+        resourceC.setId("c");
+        resourceC.setRanking(0.7f);
+
+        when(rabbitManager.sendSearchRequest((CoreQueryRequest) notNull())).thenAnswer(invocation -> {
+            CoreQueryRequest request = (CoreQueryRequest) invocation.getArguments()[0];
+            assertEquals("name", request.getName());
+            switch (request.getPlatform_id()) {
+                case "p1":
+                    return new QueryResponse(200, "", new ArrayList<>(Arrays.asList(resourceA, resourceB)));
+                case "p2":
+                    return new QueryResponse(200, "", new ArrayList<>(Arrays.asList(resourceB, resourceC)));
+                default:
+                    return null;
+            }
+        });
+
+        CoreInterfaceController controller = new CoreInterfaceController(rabbitManager);
+
+        ResponseEntity response = controller.query(null, new String[]{"p1", "p2", "p3"}, null, null, null, "name", null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, true, new QueryOptions(), getSecurityHeaders());
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        ExtendedQueryResponse body = (ExtendedQueryResponse) response.getBody();
+        assertEquals(Arrays.asList("b", "c", "a"), body.getBody().stream().map(QueryResourceResult::getId).collect(Collectors.toList()));
+        assertEquals(Collections.singletonList("p3"), body.getUnansweredPlatforms());
+        Mockito.verify(rabbitManager, Mockito.times(3)).sendSearchRequest((CoreQueryRequest) notNull());
+    }
+
+    @Test
+    public void testQuery_multiplePlatformsNoneAnswered() {
+        RabbitManager rabbitManager = Mockito.mock(RabbitManager.class);
+        when(rabbitManager.sendSearchRequest((CoreQueryRequest) notNull())).thenReturn(null);
+
+        CoreInterfaceController controller = new CoreInterfaceController(rabbitManager);
+
+        ResponseEntity response = controller.query(new String[]{"p1", "p2"}, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, new QueryOptions(), getSecurityHeaders());
+
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT, response.getStatusCode());
+    }
+
+    private HttpHeaders getSecurityHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(SecurityConstants.SECURITY_CREDENTIALS_TIMESTAMP_HEADER, "1500000000");
+        headers.add(SecurityConstants.SECURITY_CREDENTIALS_SIZE_HEADER, "1");
+        headers.add(SecurityConstants.SECURITY_CREDENTIALS_HEADER_PREFIX + "1", "{\"token\":\"token\"," +
+                "\"authenticationChallenge\":\"authenticationChallenge\"," +
+                "\"clientCertificate\":\"clientCertificate\"," +
+                "\"clientCertificateSigningAAMCertificate\":\"clientCertificateSigningAAMCertificate\"," +
+                "\"foreignTokenIssuingAAMCertificate\":\"foreignTokenIssuingAAMCertificate\"}");
+        return headers;
+    }
+}
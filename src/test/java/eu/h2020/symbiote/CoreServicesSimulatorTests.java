@@ -0,0 +1,100 @@
+package eu.h2020.symbiote;
+
+import eu.h2020.symbiote.core.ci.QueryResourceResult;
+import eu.h2020.symbiote.core.internal.CoreQueryRequest;
+import eu.h2020.symbiote.core.internal.CoreSparqlQueryRequest;
+import eu.h2020.symbiote.core.internal.cram.ResourceUrlsRequest;
+import eu.h2020.symbiote.loadtest.CoreServicesSimulator;
+import eu.h2020.symbiote.model.cim.Property;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class CoreServicesSimulatorTests {
+    private CoreServicesSimulator simulator;
+
+    @Before
+    public void setUp() {
+        this.simulator = new CoreServicesSimulator(500, 5, 0, 0, 42);
+    }
+
+    @Test
+    public void testDataset_dependsOnlyOnSeed() {
+        CoreServicesSimulator same = new CoreServicesSimulator(500, 5, 0, 0, 42);
+        CoreServicesSimulator other = new CoreServicesSimulator(500, 5, 0, 0, 43);
+
+        assertEquals(500, simulator.getResources().size());
+        assertEquals(describe(simulator.getResources()), describe(same.getResources()));
+        assertNotEquals(describe(simulator.getResources()), describe(other.getResources()));
+    }
+
+    @Test
+    public void testSearch_filters() {
+        CoreQueryRequest request = new CoreQueryRequest();
+        request.setPlatform_id("platform1");
+        request.setName("TEMPERATURE");
+        request.setObserved_property(Collections.singletonList("temperature"));
+
+        List<QueryResourceResult> found = simulator.search(request).getBody();
+
+        assertFalse(found.isEmpty());
+        assertTrue(found.size() < 100);
+        for (QueryResourceResult resource : found) {
+            assertEquals("platform1", resource.getPlatformId());
+            assertTrue(resource.getName().toLowerCase().contains("temperature"));
+            assertTrue(resource.getObservedProperties().stream().map(Property::getName).anyMatch("temperature"::equals));
+        }
+    }
+
+    @Test
+    public void testSearch_location() {
+        CoreQueryRequest request = new CoreQueryRequest();
+        request.setLocation_lat(52.4064);
+        request.setLocation_long(16.9252);
+        request.setMax_distance(5000);
+
+        List<QueryResourceResult> found = simulator.search(request).getBody();
+
+        assertFalse(found.isEmpty());
+        assertTrue(found.size() < simulator.getResources().size());
+        for (QueryResourceResult resource : found) {
+            assertEquals("Poznan", resource.getLocationName());
+            assertEquals(52.4064, resource.getLocationLatitude(), 0.05);
+            assertEquals(16.9252, resource.getLocationLongitude(), 0.08);
+        }
+    }
+
+    @Test
+    public void testSearch_maxResults() {
+        CoreServicesSimulator limited = new CoreServicesSimulator(500, 5, 0, 20, 42);
+
+        assertEquals(20, limited.search(new CoreQueryRequest()).getBody().size());
+        assertEquals(21, limited.sparqlSearch(new CoreSparqlQueryRequest()).getBody().split("\n").length);
+        assertEquals(500, simulator.search(new CoreQueryRequest()).getBody().size());
+    }
+
+    @Test
+    public void testResourceUrls_unknownOmitted() {
+        String id = simulator.getResources().get(7).getId();
+        ResourceUrlsRequest request = new ResourceUrlsRequest();
+        request.setBody(Arrays.asList(id, "unknown"));
+
+        Map<String, String> urls = simulator.resourceUrls(request).getBody();
+
+        assertEquals(Collections.singleton(id), urls.keySet());
+        assertTrue(urls.get(id).contains(id));
+    }
+
+    private static List<String> describe(List<QueryResourceResult> resources) {
+        return resources.stream()
+                .map(resource -> resource.getId() + " " + resource.getName() + " " + resource.getLocationLatitude())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,101 @@
+package eu.h2020.symbiote;
+
+import eu.h2020.symbiote.communication.FanOut;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class FanOutTests {
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        this.executor = Executors.newFixedThreadPool(8);
+    }
+
+    @After
+    public void tearDown() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void testExecute_allCompleted() throws InterruptedException {
+        String[] results = new String[3];
+
+        FanOut.execute(Arrays.asList("a", "b", "c"),
+                input -> CompletableFuture.supplyAsync(input::toUpperCase, executor),
+                2, 5000,
+                (index, result, error) -> {
+                    assertNull(error);
+                    results[index] = result;
+                });
+
+        assertArrayEquals(new String[]{"A", "B", "C"}, results);
+    }
+
+    @Test
+    public void testExecute_concurrencyCap() throws InterruptedException {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        List<Integer> inputs = Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8);
+
+        FanOut.execute(inputs,
+                input -> CompletableFuture.supplyAsync(() -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    sleep(20);
+                    inFlight.decrementAndGet();
+                    return input;
+                }, executor),
+                3, 5000,
+                (index, result, error) -> assertEquals(inputs.get(index), result));
+
+        assertTrue(maxInFlight.get() <= 3);
+    }
+
+    @Test
+    public void testExecute_deadline() throws InterruptedException {
+        Throwable[] errors = new Throwable[2];
+
+        long in = System.currentTimeMillis();
+        FanOut.execute(Arrays.asList(10L, 5000L),
+                millis -> CompletableFuture.supplyAsync(() -> {
+                    sleep(millis);
+                    return millis;
+                }, executor),
+                2, 200,
+                (index, result, error) -> errors[index] = error);
+
+        assertTrue(System.currentTimeMillis() - in < 5000);
+        assertNull(errors[0]);
+        assertTrue(errors[1] instanceof TimeoutException);
+    }
+
+    @Test
+    public void testExecute_dispatchError() throws InterruptedException {
+        Throwable[] errors = new Throwable[1];
+
+        FanOut.execute(Arrays.asList("a"),
+                input -> {
+                    throw new IllegalStateException("rejected");
+                },
+                1, 1000,
+                (index, result, error) -> errors[index] = error);
+
+        assertTrue(errors[0] instanceof IllegalStateException);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package eu.h2020.symbiote;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.h2020.symbiote.core.ci.QueryResourceResult;
+import eu.h2020.symbiote.core.ci.QueryResponse;
+import eu.h2020.symbiote.model.cim.Property;
+import eu.h2020.symbiote.utils.FieldProjection;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class FieldProjectionTests {
+    private final ObjectMapper mapper = FieldProjection.configure(new ObjectMapper());
+
+    @Test
+    public void testAllFieldsByDefault() throws Exception {
+        JsonNode resource = mapper.readTree(mapper.writeValueAsString(getResource())).get("body").get(0);
+
+        assertEquals("res1", resource.get("id").asText());
+        assertEquals("Resource description", resource.get("description").asText());
+        assertTrue(resource.has("observedProperties"));
+    }
+
+    @Test
+    public void testRequestedFieldsOnly() throws Exception {
+        String json = mapper.writer(FieldProjection.filterFor(new String[]{"id", " name", "locatedAt"})).writeValueAsString(getResource());
+        JsonNode response = mapper.readTree(json);
+        JsonNode resource = response.get("body").get(0);
+
+        assertEquals(200, response.get("status").asInt());
+        assertEquals("res1", resource.get("id").asText());
+        assertEquals("Resource 1", resource.get("name").asText());
+        assertEquals("Poznan", resource.get("locationName").asText());
+        assertEquals(52.407193, resource.get("locationLatitude").asDouble(), 0);
+        assertFalse(resource.has("description"));
+        assertFalse(resource.has("observedProperties"));
+        assertFalse(resource.has("platformId"));
+    }
+
+    private QueryResponse getResource() {
+        QueryResourceResult resource = new QueryResourceResult();
+        resource.setPlatformId("platform1");
+        resource.setName("Resource 1");
+        resource.setId("res1");
+        resource.setDescription("Resource description");
+        resource.setLocationName("Poznan");
+        resource.setLocationLatitude(52.407193);
+        resource.setLocationLongitude(16.953494);
+        resource.setObservedProperties(Arrays.asList(new Property("property1", "iriProperty1", Arrays.asList("description"))));
+        return new QueryResponse(200, "", Arrays.asList(resource));
+    }
+}
@@ -0,0 +1,122 @@
+package eu.h2020.symbiote;
+
+import eu.h2020.symbiote.diagnostics.FlightRecorder;
+import eu.h2020.symbiote.diagnostics.RequestTimings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FlightRecorderTests {
+    private FlightRecorder flightRecorder;
+
+    @Before
+    public void setUp() {
+        this.flightRecorder = new FlightRecorder();
+        this.flightRecorder.setTestParameters(3, 60000);
+    }
+
+    @After
+    public void tearDown() {
+        RequestTimings.end();
+    }
+
+    @Test
+    public void testRecord_slowestKept() {
+        long now = System.currentTimeMillis();
+        for (double duration : new double[]{5, 50, 10, 40, 1, 30})
+            flightRecorder.record(record("GET /query", now, duration));
+
+        List<FlightRecorder.Record> slowest = flightRecorder.getSlowest().get("GET /query");
+
+        assertEquals(3, slowest.size());
+        assertEquals(50, slowest.get(0).getDuration(), 0);
+        assertEquals(40, slowest.get(1).getDuration(), 0);
+        assertEquals(30, slowest.get(2).getDuration(), 0);
+    }
+
+    @Test
+    public void testRecord_staleReplaced() {
+        long now = System.currentTimeMillis();
+        flightRecorder.record(record("GET /query", now - 120000, 500));
+        flightRecorder.record(record("GET /query", now - 120000, 400));
+        flightRecorder.record(record("GET /query", now - 120000, 300));
+
+        assertTrue(flightRecorder.getSlowest().isEmpty());
+
+        flightRecorder.record(record("GET /query", now, 10));
+
+        List<FlightRecorder.Record> slowest = flightRecorder.getSlowest().get("GET /query");
+        assertEquals(1, slowest.size());
+        assertEquals(10, slowest.get(0).getDuration(), 0);
+    }
+
+    @Test
+    public void testRecord_endpointsSeparate() {
+        long now = System.currentTimeMillis();
+        flightRecorder.record(record("POST /sparqlQuery", now, 100));
+        flightRecorder.record(record("GET /query", now, 1));
+
+        Map<String, List<FlightRecorder.Record>> slowest = flightRecorder.getSlowest();
+
+        assertEquals(2, slowest.size());
+        assertEquals("GET /query", slowest.keySet().iterator().next());
+        assertEquals(1, slowest.get("GET /query").size());
+        assertEquals(1, slowest.get("POST /sparqlQuery").size());
+    }
+
+    @Test
+    public void testTimings_phasesSummed() {
+        RequestTimings timings = RequestTimings.start();
+        RequestTimings.record(RequestTimings.WAIT, TimeUnit.MILLISECONDS.toNanos(5));
+        RequestTimings.record(RequestTimings.DECODE, TimeUnit.MICROSECONDS.toNanos(250));
+        RequestTimings.record(RequestTimings.WAIT, TimeUnit.MILLISECONDS.toNanos(7));
+
+        FlightRecorder.Record record = FlightRecorder.Record.of("GET /query", "/query", 200, timings);
+
+        assertEquals(12, record.getPhases().get(RequestTimings.WAIT), 0.0001);
+        assertEquals(0.25, record.getPhases().get(RequestTimings.DECODE), 0.0001);
+        assertEquals("wait;dur=12.000, decode;dur=0.250", timings.toServerTiming());
+    }
+
+    @Test
+    public void testTimings_carriedToOtherThread() throws Exception {
+        RequestTimings timings = RequestTimings.start();
+        Callable<Void> task = RequestTimings.wrap(() -> {
+            RequestTimings.record(RequestTimings.PUBLISH, 1000);
+            return null;
+        });
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(task).get();
+            assertNull(executor.submit(RequestTimings::current).get());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(Long.valueOf(1000), timings.getPhases().get(RequestTimings.PUBLISH));
+    }
+
+    @Test
+    public void testTimings_outsideOfRequest() {
+        RequestTimings.record(RequestTimings.WAIT, 1000);
+
+        assertNull(RequestTimings.current());
+        assertEquals("", RequestTimings.start().toServerTiming());
+    }
+
+    private static FlightRecorder.Record record(String endpoint, long timestamp, double duration) {
+        return new FlightRecorder.Record(endpoint, endpoint.substring(endpoint.indexOf(' ') + 1), 200, timestamp, duration,
+                Collections.emptyMap());
+    }
+}
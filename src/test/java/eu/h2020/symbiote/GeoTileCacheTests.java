@@ -0,0 +1,157 @@
+package eu.h2020.symbiote;
+
+import eu.h2020.symbiote.cache.GeoTileCache;
+import eu.h2020.symbiote.core.ci.QueryResourceResult;
+import eu.h2020.symbiote.core.ci.QueryResponse;
+import eu.h2020.symbiote.core.internal.CoreQueryRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class GeoTileCacheTests {
+    private GeoTileCache cache;
+    private List<CoreQueryRequest> sentQueries;
+
+    @Before
+    public void setUp() {
+        this.cache = new GeoTileCache(new SimpleMeterRegistry());
+        this.cache.setTestParameters(0.1, 2000, 60000, 100);
+        this.sentQueries = new ArrayList<>();
+    }
+
+    @Test
+    public void testSearch_nearbyQueriesAnsweredFromTile() {
+        QueryResponse first = cache.search(getQuery("name", 52.407, 16.953, 1000), this::registry);
+        QueryResponse second = cache.search(getQuery("name", 52.408, 16.955, 200), this::registry);
+
+        assertEquals(Arrays.asList("res1", "res2"), getIds(first));
+        assertEquals(Arrays.asList("res1"), getIds(second));
+        assertEquals(2, sentQueries.size());
+        assertEquals(52.45, sentQueries.get(0).getLocation_lat(), 1e-9);
+        assertEquals(16.95, sentQueries.get(0).getLocation_long(), 1e-9);
+        assertTrue(sentQueries.get(0).getMax_distance() > 2000);
+        assertEquals(52.408, sentQueries.get(1).getLocation_lat(), 1e-9);
+        assertEquals(Integer.valueOf(0), sentQueries.get(1).getMax_distance());
+    }
+
+    @Test
+    public void testSearch_serviceResponseNotShared() {
+        QueryResponse first = cache.search(getQuery("name", 52.407, 16.953, 1000), this::registry);
+        QueryResponse second = cache.search(getQuery("name", 52.408, 16.955, 200), this::registry);
+
+        assertEquals("serviceResponse1", first.getServiceResponse());
+        assertEquals("serviceResponse2", second.getServiceResponse());
+    }
+
+    @Test
+    public void testSearch_rejectedRequesterNotAnsweredFromTile() {
+        cache.search(getQuery("name", 52.407, 16.953, 1000), this::registry);
+        QueryResponse rejected = new QueryResponse(401, "Unauthorized", null);
+        QueryResponse second = cache.search(getQuery("name", 52.408, 16.955, 200), query -> {
+            sentQueries.add(query);
+            return rejected;
+        });
+
+        assertSame(rejected, second);
+    }
+
+    @Test
+    public void testSearch_errorNotCached() {
+        try {
+            cache.search(getQuery("name", 52.407, 16.953, 1000), query -> {
+                throw new AssertionError("registry failure");
+            });
+            fail("Error not propagated");
+        } catch (AssertionError e) {
+            assertEquals("registry failure", e.getMessage());
+        }
+        QueryResponse second = cache.search(getQuery("name", 52.407, 16.953, 1000), this::registry);
+
+        assertEquals(Arrays.asList("res1", "res2"), getIds(second));
+        assertEquals(1, sentQueries.size());
+    }
+
+    @Test
+    public void testSearch_otherParametersNotShared() {
+        cache.search(getQuery("name", 52.407, 16.953, 1000), this::registry);
+        cache.search(getQuery("otherName", 52.407, 16.953, 1000), this::registry);
+
+        assertEquals(2, sentQueries.size());
+    }
+
+    @Test
+    public void testSearch_bypass() {
+        CoreQueryRequest largeRadius = getQuery("name", 52.407, 16.953, 5000);
+        CoreQueryRequest ranked = getQuery("name", 52.407, 16.953, 1000);
+        ranked.setShould_rank(true);
+        CoreQueryRequest noLocation = new CoreQueryRequest();
+
+        cache.search(largeRadius, this::registry);
+        cache.search(ranked, this::registry);
+        cache.search(noLocation, this::registry);
+
+        assertEquals(Arrays.asList(largeRadius, ranked, noLocation), sentQueries);
+    }
+
+    @Test
+    public void testSearch_failedTileNotCached() {
+        QueryResponse failed = cache.search(getQuery("name", 52.407, 16.953, 1000), query -> {
+            sentQueries.add(query);
+            return null;
+        });
+        QueryResponse second = cache.search(getQuery("name", 52.407, 16.953, 1000), this::registry);
+
+        assertNull(failed);
+        assertEquals(Arrays.asList("res1", "res2"), getIds(second));
+        assertEquals(2, sentQueries.size());
+    }
+
+    @Test
+    public void testSearch_disabled() {
+        GeoTileCache disabled = new GeoTileCache();
+
+        disabled.search(getQuery("name", 52.407, 16.953, 1000), this::registry);
+        disabled.search(getQuery("name", 52.407, 16.953, 1000), this::registry);
+
+        assertEquals(2, sentQueries.size());
+    }
+
+    private QueryResponse registry(CoreQueryRequest query) {
+        sentQueries.add(query);
+        QueryResponse response = new QueryResponse(200, "", new ArrayList<>(Arrays.asList(
+                getResource("res1", 52.4072, 16.9535),
+                getResource("res2", 52.41, 16.96),
+                getResource("res3", 52.45, 16.95),
+                getResource("res4", null, null))));
+        response.setServiceResponse("serviceResponse" + sentQueries.size());
+        return response;
+    }
+
+    private CoreQueryRequest getQuery(String name, double latitude, double longitude, int maxDistance) {
+        CoreQueryRequest query = new CoreQueryRequest();
+        query.setName(name);
+        query.setLocation_lat(latitude);
+        query.setLocation_long(longitude);
+        query.setMax_distance(maxDistance);
+        return query;
+    }
+
+    private QueryResourceResult getResource(String id, Double latitude, Double longitude) {
+        QueryResourceResult resource = new QueryResourceResult();
+        resource.setId(id);
+        resource.setLocationLatitude(latitude);
+        resource.setLocationLongitude(longitude);
+        return resource;
+    }
+
+    private List<String> getIds(QueryResponse response) {
+        return response.getBody().stream().map(QueryResourceResult::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,209 @@
+package eu.h2020.symbiote;
+
+import eu.h2020.symbiote.filters.GzipResponseFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+public class GzipResponseFilterTests {
+    private static final String LARGE_BODY = String.join(",", Collections.nCopies(500, "{\"name\":\"Resource\"}"));
+
+    private MeterRegistry meterRegistry;
+    private GzipResponseFilter filter;
+
+    @Before
+    public void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.filter = new GzipResponseFilter(1024, Arrays.asList(MediaType.APPLICATION_JSON_VALUE), meterRegistry);
+    }
+
+    @Test
+    public void testAcceptsGzip() {
+        assertTrue(GzipResponseFilter.acceptsGzip(request("gzip, deflate")));
+        assertTrue(GzipResponseFilter.acceptsGzip(request("deflate, GZIP;q=0.5")));
+        assertFalse(GzipResponseFilter.acceptsGzip(request("gzip;q=0")));
+        assertFalse(GzipResponseFilter.acceptsGzip(request("deflate")));
+        assertFalse(GzipResponseFilter.acceptsGzip(request(null)));
+    }
+
+    @Test
+    public void testLargeJsonIsCompressed() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request("gzip"), response, writing(MediaType.APPLICATION_JSON_UTF8_VALUE, LARGE_BODY));
+
+        assertEquals(GzipResponseFilter.GZIP, response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertTrue(response.getContentAsByteArray().length < LARGE_BODY.length());
+        assertEquals(LARGE_BODY, decompress(response.getContentAsByteArray()));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeader(HttpHeaders.VARY));
+        assertTrue(meterRegistry.counter(GzipResponseFilter.BYTES_SAVED_METRIC, "endpoint", "/query").count() > 0);
+    }
+
+    @Test
+    public void testUncompressedResponseVaries() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request(null), response, writing(MediaType.APPLICATION_JSON_VALUE, LARGE_BODY));
+
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(LARGE_BODY, response.getContentAsString());
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeader(HttpHeaders.VARY));
+    }
+
+    @Test
+    public void testIncompressibleResponseIsNotCompressed() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        byte[] body = new byte[2048];
+        new Random(42).nextBytes(body);
+
+        filter.doFilter(request("gzip"), response, (req, res) -> {
+            res.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            res.getOutputStream().write(body);
+        });
+
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertArrayEquals(body, response.getContentAsByteArray());
+        assertEquals(0, meterRegistry.counter(GzipResponseFilter.BYTES_SAVED_METRIC, "endpoint", "/query").count(), 0);
+    }
+
+    @Test
+    public void testInvalidContentTypeIsNotCompressed() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request("gzip"), response, (req, res) -> {
+            ((HttpServletResponse) res).setHeader(HttpHeaders.CONTENT_TYPE, "json");
+            res.getOutputStream().write(LARGE_BODY.getBytes(StandardCharsets.UTF_8));
+        });
+
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(LARGE_BODY, response.getContentAsString());
+    }
+
+    @Test
+    public void testSmallResponseIsNotCompressed() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request("gzip"), response, writing(MediaType.APPLICATION_JSON_VALUE, "{}"));
+
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("{}", response.getContentAsString());
+    }
+
+    @Test
+    public void testNotAllowedMimeTypeIsNotCompressed() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request("gzip"), response, writing(MediaType.IMAGE_PNG_VALUE, LARGE_BODY));
+
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(LARGE_BODY, response.getContentAsString());
+    }
+
+    @Test
+    public void testCompressedUpstreamResponseIsPassedThrough() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        byte[] upstreamBody = new byte[]{1, 2, 3};
+
+        filter.doFilter(request("gzip"), response, (req, res) -> {
+            res.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            ((HttpServletResponse) res).setHeader(HttpHeaders.CONTENT_ENCODING, GzipResponseFilter.GZIP);
+            res.getOutputStream().write(upstreamBody);
+        });
+
+        assertArrayEquals(upstreamBody, response.getContentAsByteArray());
+        assertEquals(1, meterRegistry.counter(GzipResponseFilter.PASS_THROUGH_METRIC, "endpoint", "/query").count(), 0);
+    }
+
+    @Test
+    public void testEventStreamIsNotBuffered() throws Exception {
+        EventsController controller = new EventsController();
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).addFilters(filter).build();
+
+        MvcResult result = mockMvc.perform(get("/query/subscription")
+                .header(HttpHeaders.ACCEPT_ENCODING, GzipResponseFilter.GZIP))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        controller.emitter.send(SseEmitter.event().name("added").data(LARGE_BODY));
+
+        String content = result.getResponse().getContentAsString();
+        assertNull(result.getResponse().getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertTrue(content.contains("event:results"));
+        assertTrue(content.contains("event:added"));
+        assertTrue(content.contains(LARGE_BODY));
+        controller.emitter.complete();
+    }
+
+    @Test
+    public void testEventStreamRequestIsNotFiltered() throws Exception {
+        EventsController controller = new EventsController();
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).addFilters(filter).build();
+
+        MvcResult result = mockMvc.perform(get("/query/subscription")
+                .header(HttpHeaders.ACCEPT_ENCODING, GzipResponseFilter.GZIP)
+                .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        controller.emitter.send(SseEmitter.event().name("added").data("later"));
+
+        assertNull(result.getResponse().getHeader(HttpHeaders.VARY));
+        assertTrue(result.getResponse().getContentAsString().contains("data:later"));
+        controller.emitter.complete();
+    }
+
+    private MockHttpServletRequest request(String acceptEncoding) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/query");
+        if (acceptEncoding != null)
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        return request;
+    }
+
+    private FilterChain writing(String contentType, String body) {
+        return (req, res) -> {
+            res.setContentType(contentType);
+            res.getOutputStream().write(body.getBytes(StandardCharsets.UTF_8));
+        };
+    }
+
+    private String decompress(byte[] compressed) throws IOException {
+        try (GZIPInputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return StreamUtils.copyToString(inputStream, StandardCharsets.UTF_8);
+        }
+    }
+
+    @RestController
+    static class EventsController {
+        private final SseEmitter emitter = new SseEmitter();
+
+        @GetMapping("/query/subscription")
+        public SseEmitter subscribe() throws IOException {
+            emitter.send(SseEmitter.event().name("results").data("[]"));
+            return emitter;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package eu.h2020.symbiote;
+
+import eu.h2020.symbiote.communication.Bulkheads;
+import eu.h2020.symbiote.communication.HedgedRequestExecutor;
+import eu.h2020.symbiote.communication.UpstreamService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class HedgedRequestExecutorTests {
+    private static final String PRIMARY_URL = "http://primary";
+    private static final String HEDGE_URL = "http://hedge";
+
+    private Bulkheads bulkheads;
+    private HedgedRequestExecutor executor;
+
+    @Before
+    public void setUp() {
+        this.bulkheads = new Bulkheads(new SimpleMeterRegistry());
+        this.bulkheads.setTestParameters(4, 4);
+        this.executor = new HedgedRequestExecutor(bulkheads);
+    }
+
+    @After
+    public void tearDown() {
+        this.bulkheads.cleanup();
+    }
+
+    @Test
+    public void testExecute_disabled() {
+        List<String> calledUrls = new ArrayList<>();
+
+        String result = executor.execute(UpstreamService.AAM, url -> {
+            calledUrls.add(url);
+            return url;
+        }, PRIMARY_URL, HEDGE_URL);
+
+        assertEquals(PRIMARY_URL, result);
+        assertEquals(1, calledUrls.size());
+    }
+
+    @Test
+    public void testExecute_slowPrimaryIsHedged() {
+        executor.setTestParameters(true, 95, 10, 100);
+        warmUp();
+
+        long in = System.currentTimeMillis();
+        String result = executor.execute(UpstreamService.AAM, url -> {
+            if (url.equals(PRIMARY_URL))
+                sleep(5000);
+            return url;
+        }, PRIMARY_URL, HEDGE_URL);
+
+        assertEquals(HEDGE_URL, result);
+        assertTrue(System.currentTimeMillis() - in < 5000);
+    }
+
+    @Test
+    public void testExecute_noBudgetNoHedge() {
+        executor.setTestParameters(true, 95, 10, 0);
+        warmUp();
+
+        AtomicInteger hedgeCalls = new AtomicInteger();
+        String result = executor.execute(UpstreamService.AAM, url -> {
+            if (url.equals(HEDGE_URL))
+                hedgeCalls.incrementAndGet();
+            else
+                sleep(200);
+            return url;
+        }, PRIMARY_URL, HEDGE_URL);
+
+        assertEquals(PRIMARY_URL, result);
+        assertEquals(0, hedgeCalls.get());
+    }
+
+    @Test
+    public void testExecute_noAlternativeNoHedge() {
+        executor.setTestParameters(true, 95, 10, 100);
+        warmUp();
+
+        for (String hedgeUrl : new String[]{PRIMARY_URL, "", null}) {
+            AtomicInteger calls = new AtomicInteger();
+            String result = executor.execute(UpstreamService.AAM, url -> {
+                calls.incrementAndGet();
+                sleep(200);
+                return url;
+            }, PRIMARY_URL, hedgeUrl);
+
+            assertEquals(PRIMARY_URL, result);
+            assertEquals(1, calls.get());
+        }
+    }
+
+    @Test
+    public void testExecute_errorIsRethrown() {
+        executor.setTestParameters(true, 95, 10, 100);
+
+        try {
+            executor.execute(UpstreamService.AAM, url -> {
+                throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR);
+            }, PRIMARY_URL, HEDGE_URL);
+            fail();
+        } catch (HttpServerErrorException e) {
+            assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, e.getStatusCode());
+        }
+    }
+
+    private void warmUp() {
+        for (int i = 0; i < 20; i++)
+            executor.execute(UpstreamService.AAM, url -> url, PRIMARY_URL, HEDGE_URL);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
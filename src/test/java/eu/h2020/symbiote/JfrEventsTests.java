@@ -0,0 +1,28 @@
+package eu.h2020.symbiote;
+
+import eu.h2020.symbiote.communication.RpcMetrics;
+import eu.h2020.symbiote.diagnostics.JfrEvents;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class JfrEventsTests {
+
+    @Test
+    public void testBegin_tokenOnlyWhenAvailable() {
+        Object rpcToken = JfrEvents.beginRpc();
+        Object proxyToken = JfrEvents.beginProxy();
+
+        assertEquals(JfrEvents.isAvailable(), rpcToken != null);
+        assertEquals(JfrEvents.isAvailable(), proxyToken != null);
+
+        JfrEvents.commitRpc(rpcToken, "symbIoTe.search", "symbIoTe.search.query", 120, 0, 0, RpcMetrics.SUCCESS);
+        JfrEvents.commitProxy(proxyToken, "aam", "/get_available_aams", "200");
+    }
+
+    @Test
+    public void testCommit_nullToken() {
+        JfrEvents.commitRpc(null, "symbIoTe.search", "symbIoTe.search.query", 120, 0, 0, RpcMetrics.ERROR);
+        JfrEvents.commitProxy(null, "aam", "/get_available_aams", "error");
+    }
+}
@@ -0,0 +1,82 @@
+package eu.h2020.symbiote;
+
+import eu.h2020.symbiote.loadtest.LatencyDistribution;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class LatencyDistributionTests {
+    private static final int SAMPLES = 100000;
+
+    @Test
+    public void testParse_constant() {
+        LatencyDistribution none = LatencyDistribution.parse("none");
+        LatencyDistribution fixed = LatencyDistribution.parse(" fixed:10 ");
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, none.sample());
+            assertEquals(10, fixed.sample());
+        }
+        assertEquals(" fixed:10 ", fixed.toString());
+    }
+
+    @Test
+    public void testSample_uniform() {
+        long[] samples = samples(LatencyDistribution.parse("uniform:5,50"));
+
+        assertTrue(samples[0] >= 5);
+        assertTrue(samples[SAMPLES - 1] <= 50);
+        assertEquals(27.5, mean(samples), 1);
+    }
+
+    @Test
+    public void testSample_exponential() {
+        long[] samples = samples(LatencyDistribution.parse("exponential:20"));
+
+        assertTrue(samples[0] >= 0);
+        assertEquals(20, mean(samples), 1);
+        assertEquals(20 * Math.log(2), percentile(samples, 0.5), 1);
+    }
+
+    @Test
+    public void testSample_lognormalPercentiles() {
+        long[] samples = samples(LatencyDistribution.parse("lognormal:20,200"));
+
+        assertEquals(20, percentile(samples, 0.5), 1);
+        assertEquals(200, percentile(samples, 0.99), 20);
+    }
+
+    @Test
+    public void testParse_invalid() {
+        for (String spec : Arrays.asList("gamma:1,2", "fixed", "fixed:1,2", "uniform:5", "exponential:-1",
+                "fixed:ten", "lognormal:200,20", "lognormal:0,10")) {
+            try {
+                LatencyDistribution.parse(spec);
+                fail("Accepted " + spec);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * @return sorted samples of the distribution
+     */
+    private static long[] samples(LatencyDistribution distribution) {
+        long[] samples = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++)
+            samples[i] = distribution.sample();
+        Arrays.sort(samples);
+        return samples;
+    }
+
+    private static double mean(long[] samples) {
+        return Arrays.stream(samples).average().orElse(0);
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[(int) Math.ceil(percentile * sorted.length) - 1];
+    }
+}
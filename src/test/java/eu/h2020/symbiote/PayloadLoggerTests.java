@@ -0,0 +1,88 @@
+package eu.h2020.symbiote;
+
+import eu.h2020.symbiote.communication.PayloadLogger;
+import org.apache.commons.logging.Log;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PayloadLoggerTests {
+    private List<String> messages;
+    private AtomicInteger rendered;
+
+    @Before
+    public void setUp() {
+        this.messages = new ArrayList<>();
+        this.rendered = new AtomicInteger();
+    }
+
+    @Test
+    public void testLog_truncated() {
+        PayloadLogger payloadLogger = recording(null);
+        payloadLogger.setTestParameters(true, 1.0, 5);
+
+        payloadLogger.log("rpc.request", "Sending RPC message to", "search", () -> "short");
+        payloadLogger.log("rpc.request", "Sending RPC message to", "search", () -> "{\"name\":\"sensor\"}");
+
+        assertEquals(2, messages.size());
+        assertEquals("Sending RPC message to search: short", messages.get(0));
+        assertEquals("Sending RPC message to search: {\"nam ... (17 characters)", messages.get(1));
+    }
+
+    @Test
+    public void testLog_disabled() {
+        PayloadLogger payloadLogger = recording(null);
+        payloadLogger.setTestParameters(false, 1.0, 400);
+
+        payloadLogger.log("rpc.request", "Sending RPC message to", "search", this::payload);
+
+        assertTrue(messages.isEmpty());
+        assertEquals(0, rendered.get());
+    }
+
+    @Test
+    public void testLog_sampled() {
+        PayloadLogger payloadLogger = recording(null);
+        payloadLogger.setTestParameters(true, 0.5, 400);
+
+        for (int i = 0; i < 1000; i++)
+            payloadLogger.log("rpc.response", "Response received from", "search", this::payload);
+
+        assertEquals(messages.size(), rendered.get());
+        assertTrue("Logged " + messages.size(), messages.size() > 350 && messages.size() < 650);
+    }
+
+    @Test
+    public void testLog_categoryRules() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("symbiote.logging.payloads.rules.rpc.response.sampleRate", "0")
+                .withProperty("symbiote.logging.payloads.rules.rpc.request.maxLength", "3");
+        PayloadLogger payloadLogger = recording(environment);
+
+        payloadLogger.log("rpc.response", "Response received from", "search", this::payload);
+        payloadLogger.log("rpc.request", "Sending RPC message to", "search", this::payload);
+
+        assertEquals(1, messages.size());
+        assertEquals("Sending RPC message to search: pay ... (7 characters)", messages.get(0));
+    }
+
+    private String payload() {
+        rendered.incrementAndGet();
+        return "payload";
+    }
+
+    private PayloadLogger recording(MockEnvironment environment) {
+        return new PayloadLogger(environment) {
+            @Override
+            protected void write(Log log, String message) {
+                messages.add(message);
+            }
+        };
+    }
+}
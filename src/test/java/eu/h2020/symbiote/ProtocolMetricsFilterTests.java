@@ -0,0 +1,80 @@
+package eu.h2020.symbiote;
+
+import eu.h2020.symbiote.filters.ProtocolMetricsFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ProtocolMetricsFilterTests {
+    private MeterRegistry meterRegistry;
+    private ProtocolMetricsFilter filter;
+
+    @Before
+    public void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.filter = new ProtocolMetricsFilter(meterRegistry);
+    }
+
+    @Test
+    public void testDoFilter_countedPerProtocol() throws Exception {
+        filter.doFilter(request("HTTP/2.0"), new MockHttpServletResponse(), (req, res) ->
+                assertEquals(1, active("HTTP/2.0"), 0));
+        filter.doFilter(request("HTTP/2.0"), new MockHttpServletResponse(), (req, res) -> {
+        });
+        filter.doFilter(request("HTTP/1.1"), new MockHttpServletResponse(), (req, res) -> {
+        });
+
+        assertEquals(2, meterRegistry.find(ProtocolMetricsFilter.REQUESTS_METRIC).tags("protocol", "HTTP/2.0").counter().count(), 0);
+        assertEquals(1, meterRegistry.find(ProtocolMetricsFilter.REQUESTS_METRIC).tags("protocol", "HTTP/1.1").counter().count(), 0);
+        assertEquals(0, active("HTTP/2.0"), 0);
+        assertEquals(0, active("HTTP/1.1"), 0);
+    }
+
+    @Test
+    public void testDoFilter_failedRequestEnds() throws Exception {
+        try {
+            filter.doFilter(request("HTTP/1.1"), new MockHttpServletResponse(), (req, res) -> {
+                throw new ServletException("failed");
+            });
+            fail();
+        } catch (ServletException e) {
+            assertEquals("failed", e.getMessage());
+        }
+
+        assertEquals(0, active("HTTP/1.1"), 0);
+    }
+
+    @Test
+    public void testDoFilter_asyncRequestActiveUntilComplete() throws Exception {
+        MockHttpServletRequest request = request("HTTP/2.0");
+        request.setAsyncSupported(true);
+        AtomicReference<AsyncContext> asyncContext = new AtomicReference<>();
+
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> asyncContext.set(req.startAsync()));
+
+        assertEquals(1, active("HTTP/2.0"), 0);
+
+        asyncContext.get().complete();
+
+        assertEquals(0, active("HTTP/2.0"), 0);
+    }
+
+    private double active(String protocol) {
+        return meterRegistry.find(ProtocolMetricsFilter.ACTIVE_REQUESTS_METRIC).tags("protocol", protocol).gauge().value();
+    }
+
+    private static MockHttpServletRequest request(String protocol) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/query");
+        request.setProtocol(protocol);
+        return request;
+    }
+}
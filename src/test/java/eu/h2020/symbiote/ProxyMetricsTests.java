@@ -0,0 +1,76 @@
+package eu.h2020.symbiote;
+
+import eu.h2020.symbiote.communication.ProxyMetrics;
+import eu.h2020.symbiote.communication.UpstreamService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class ProxyMetricsTests {
+    private SimpleMeterRegistry meterRegistry;
+    private ProxyMetrics proxyMetrics;
+
+    @Before
+    public void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.proxyMetrics = new ProxyMetrics(meterRegistry);
+    }
+
+    @Test
+    public void testRecord() {
+        proxyMetrics.record(UpstreamService.AAM, "/aam/get_available_aams", "200", 1000000);
+        proxyMetrics.record(UpstreamService.AAM, "/aam/get_available_aams", "503", 1000000);
+
+        assertEquals(1, meterRegistry.counter(ProxyMetrics.RESPONSES_METRIC, "upstream", "aam", "route", "/aam/get_available_aams", "status", "200").count(), 0);
+        assertEquals(1, meterRegistry.timer(ProxyMetrics.LATENCY_METRIC, "upstream", "aam", "route", "/aam/get_available_aams", "status", "503").count());
+    }
+
+    @Test
+    public void testInterceptor_phasesAndSizesRecorded() throws IOException {
+        ClientHttpRequestInterceptor interceptor = proxyMetrics.interceptor();
+
+        String body = proxyMetrics.bind(UpstreamService.BTM, "/btm/couponusage", () -> {
+            try (ClientHttpResponse response = interceptor.intercept(new MockClientHttpRequest(HttpMethod.POST, URI.create("http://btm")), new byte[12],
+                    (request, requestBody) -> new MockClientHttpResponse("response".getBytes(), HttpStatus.OK))) {
+                return StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).get();
+
+        assertEquals("response", body);
+        assertEquals(12, meterRegistry.summary(ProxyMetrics.BYTES_OUT_METRIC, "upstream", "btm", "route", "/btm/couponusage").totalAmount(), 0);
+        assertEquals(8, meterRegistry.summary(ProxyMetrics.BYTES_IN_METRIC, "upstream", "btm", "route", "/btm/couponusage").totalAmount(), 0);
+        assertEquals(1, meterRegistry.timer(ProxyMetrics.FIRST_BYTE_METRIC, "upstream", "btm", "route", "/btm/couponusage").count());
+        assertEquals(1, meterRegistry.timer(ProxyMetrics.TRANSFER_METRIC, "upstream", "btm", "route", "/btm/couponusage").count());
+    }
+
+    @Test
+    public void testInterceptor_unboundRequestNotMeasured() throws IOException {
+        MockClientHttpResponse response = new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+
+        ClientHttpResponse intercepted = proxyMetrics.interceptor().intercept(new MockClientHttpRequest(), new byte[0], (request, body) -> response);
+
+        assertSame(response, intercepted);
+        assertTrue(meterRegistry.getMeters().isEmpty());
+    }
+
+    @Test
+    public void testCurrentRoute_outsideOfRequest() {
+        assertEquals("unknown", ProxyMetrics.currentRoute());
+    }
+}
@@ -10,13 +10,24 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Created by jawora on 12.07.17.
@@ -75,6 +86,30 @@ public class RabbitManagerCommunicationTests {
         assertNull(response);
     }
 
+    @Test
+    public void sendRpcMessageDeadlineTest() throws IOException {
+        List<String> received = new CopyOnWriteArrayList<>();
+        this.channel.basicConsume(QUEUE_RPC_NAME, new DefaultConsumer(this.channel){
+            @Override
+            public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) throws IOException {
+                received.add(new String(body));
+            }
+        });
+
+        long in = System.currentTimeMillis();
+        String response = RabbitManager.withDeadline(in + 200,
+                () -> this.rabbitManager.sendRpcMessage(EXCHANGE_NAME, ROUTING_RPC_KEY, RPC_MESSAGE, String.class.getCanonicalName()));
+
+        assertNull(response);
+        assertTrue("Waited " + (System.currentTimeMillis() - in) + " ms", System.currentTimeMillis() - in < 30000);
+
+        String expired = RabbitManager.withDeadline(in,
+                () -> this.rabbitManager.sendRpcMessage(EXCHANGE_NAME, ROUTING_RPC_KEY, "expired", String.class.getCanonicalName()));
+
+        assertNull(expired);
+        assertFalse(received.contains("expired"));
+    }
+
     @Test
     public void sendRpcMessageOkTest() throws IOException {
         this.channel.basicConsume(QUEUE_RPC_NAME, new DefaultConsumer(this.channel){
@@ -107,6 +142,50 @@ public class RabbitManagerCommunicationTests {
         assertEquals(RPC_RESPONSE, response);
     }
 
+    @Test
+    public void sendRpcMessageConcurrentTest() throws Exception {
+        this.channel.basicConsume(QUEUE_RPC_NAME, new DefaultConsumer(this.channel){
+            @Override
+            public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) throws IOException {
+                AMQP.BasicProperties props = new AMQP.BasicProperties()
+                        .builder()
+                        .correlationId(properties.getCorrelationId())
+                        .contentType("application/json")
+                        .build();
+
+                this.getChannel().basicPublish("", properties.getReplyTo(), props, ("reply to " + new String(body)).getBytes());
+            }
+        });
+
+        int threads = 16;
+        int callsPerThread = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                int threadNumber = thread;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    List<String> errors = new ArrayList<>();
+                    for (int call = 0; call < callsPerThread; call++) {
+                        String message = RPC_MESSAGE + "-" + threadNumber + "-" + call;
+                        String response = this.rabbitManager.sendRpcMessage(EXCHANGE_NAME, ROUTING_RPC_KEY, message, String.class.getCanonicalName());
+                        if (!("reply to " + message).equals(response))
+                            errors.add(message + " answered with " + response);
+                    }
+                    return errors;
+                }));
+            }
+            start.countDown();
+
+            for (Future<List<String>> result : results)
+                assertEquals(Collections.emptyList(), result.get(60, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     @Test
     public void sendRpcMessageWrongCorrelationIdTest() throws IOException {
         this.channel.basicConsume(QUEUE_RPC_NAME, new DefaultConsumer(this.channel){
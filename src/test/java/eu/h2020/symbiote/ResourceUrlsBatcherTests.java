@@ -0,0 +1,118 @@
+package eu.h2020.symbiote;
+
+import eu.h2020.symbiote.communication.ResourceUrlsBatcher;
+import eu.h2020.symbiote.core.internal.cram.ResourceUrlsRequest;
+import eu.h2020.symbiote.core.internal.cram.ResourceUrlsResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class ResourceUrlsBatcherTests {
+    private static final long WINDOW = 200;
+
+    private ExecutorService executor;
+    private SimpleMeterRegistry meterRegistry;
+    private ResourceUrlsBatcher batcher;
+    private List<ResourceUrlsRequest> sentRequests;
+
+    @Before
+    public void setUp() {
+        this.executor = Executors.newFixedThreadPool(8);
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.batcher = new ResourceUrlsBatcher(meterRegistry);
+        this.batcher.setTestParameters(WINDOW, 5);
+        this.sentRequests = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @After
+    public void tearDown() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void testExecute_disabled() {
+        ResourceUrlsBatcher disabled = new ResourceUrlsBatcher();
+
+        disabled.execute("digest", Arrays.asList("res1"), null, this::rpc);
+        disabled.execute("digest", Arrays.asList("res2"), null, this::rpc);
+
+        assertEquals(2, sentRequests.size());
+    }
+
+    @Test
+    public void testExecute_concurrentRequestsMerged() throws Exception {
+        Future<ResourceUrlsResponse> first = submit("digest", "res1");
+        Future<ResourceUrlsResponse> second = submit("digest", "res2", "res3");
+        Future<ResourceUrlsResponse> third = submit("digest", "res1");
+
+        assertEquals(Collections.singletonMap("res1", "http://res1"), first.get(5, TimeUnit.SECONDS).getBody());
+        assertEquals(new HashSet<>(Arrays.asList("res2", "res3")), second.get(5, TimeUnit.SECONDS).getBody().keySet());
+        assertEquals(Collections.singletonMap("res1", "http://res1"), third.get(5, TimeUnit.SECONDS).getBody());
+
+        assertEquals(1, sentRequests.size());
+        assertEquals(new HashSet<>(Arrays.asList("res1", "res2", "res3")), new HashSet<>(sentRequests.get(0).getBody()));
+        assertEquals(1, meterRegistry.find(ResourceUrlsBatcher.BATCH_SIZE_METRIC).summary().count());
+        assertEquals(3, meterRegistry.find(ResourceUrlsBatcher.BATCH_SIZE_METRIC).summary().totalAmount(), 0);
+        assertEquals(3, meterRegistry.find(ResourceUrlsBatcher.BATCH_REQUESTS_METRIC).summary().totalAmount(), 0);
+    }
+
+    @Test
+    public void testExecute_differentCredentialsNotMerged() throws Exception {
+        Future<ResourceUrlsResponse> first = submit("digest1", "res1");
+        Future<ResourceUrlsResponse> second = submit("digest2", "res1");
+
+        assertNotNull(first.get(5, TimeUnit.SECONDS));
+        assertNotNull(second.get(5, TimeUnit.SECONDS));
+        assertEquals(2, sentRequests.size());
+    }
+
+    @Test
+    public void testExecute_fullBatchSentBeforeWindow() throws Exception {
+        // the window never passes during the test, so the batch can only be sent because it is full
+        batcher.setTestParameters(TimeUnit.MINUTES.toMillis(10), 5);
+
+        Future<ResourceUrlsResponse> first = submit("digest", "res1", "res2");
+        Future<ResourceUrlsResponse> second = submit("digest", "res3", "res4", "res5");
+
+        assertEquals(2, first.get(30, TimeUnit.SECONDS).getBody().size());
+        assertEquals(3, second.get(30, TimeUnit.SECONDS).getBody().size());
+        assertEquals(1, sentRequests.size());
+        assertEquals(new HashSet<>(Arrays.asList("res1", "res2", "res3", "res4", "res5")), new HashSet<>(sentRequests.get(0).getBody()));
+    }
+
+    @Test
+    public void testExecute_errorPropagatedToAllRequests() throws Exception {
+        Function<ResourceUrlsRequest, ResourceUrlsResponse> failing = request -> {
+            throw new IllegalStateException("failed");
+        };
+        Future<ResourceUrlsResponse> first = executor.submit(() -> batcher.execute("digest", Arrays.asList("res1"), null, failing));
+        Future<ResourceUrlsResponse> second = executor.submit(() -> batcher.execute("digest", Arrays.asList("res2"), null, failing));
+
+        for (Future<ResourceUrlsResponse> future : Arrays.asList(first, second)) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+    }
+
+    private Future<ResourceUrlsResponse> submit(String digest, String... resourceIds) {
+        return executor.submit(() -> batcher.execute(digest, Arrays.asList(resourceIds), null, this::rpc));
+    }
+
+    private ResourceUrlsResponse rpc(ResourceUrlsRequest request) {
+        sentRequests.add(request);
+        Map<String, String> urls = new HashMap<>();
+        request.getBody().forEach(id -> urls.put(id, "http://" + id));
+        return new ResourceUrlsResponse(200, "", urls);
+    }
+}
@@ -0,0 +1,83 @@
+package eu.h2020.symbiote;
+
+import eu.h2020.symbiote.communication.RpcMetrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RpcMetricsTests {
+    private SimpleMeterRegistry meterRegistry;
+    private RpcMetrics rpcMetrics;
+
+    @Before
+    public void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.rpcMetrics = new RpcMetrics(meterRegistry, Duration.ofSeconds(30));
+    }
+
+    @Test
+    public void testFinished_latencyRecordedPerRoutingKeyAndOutcome() {
+        rpcMetrics.finished("search", rpcMetrics.started("search"), RpcMetrics.SUCCESS);
+        rpcMetrics.finished("search", rpcMetrics.started("search"), RpcMetrics.SUCCESS);
+        rpcMetrics.finished("urls", rpcMetrics.started("urls"), RpcMetrics.TIMEOUT);
+
+        assertEquals(2, timer("search", RpcMetrics.SUCCESS).count());
+        assertEquals(1, timer("urls", RpcMetrics.TIMEOUT).count());
+        assertEquals(1, meterRegistry.counter(RpcMetrics.TIMEOUTS_METRIC, "routingKey", "urls").count(), 0);
+        assertEquals(0, meterRegistry.counter(RpcMetrics.TIMEOUTS_METRIC, "routingKey", "search").count(), 0);
+    }
+
+    @Test
+    public void testStarted_inFlightGauge() {
+        long first = rpcMetrics.started("search");
+        rpcMetrics.started("search");
+        rpcMetrics.finished("search", first, RpcMetrics.ERROR);
+
+        assertEquals(1, meterRegistry.find(RpcMetrics.IN_FLIGHT_METRIC).tags("routingKey", "search").gauge().value(), 0);
+    }
+
+    @Test
+    public void testFinished_timerBuiltOnceWithCurrentTimeout() {
+        AtomicInteger timeoutReads = new AtomicInteger();
+        RpcMetrics lazy = new RpcMetrics(meterRegistry, () -> {
+            timeoutReads.incrementAndGet();
+            return Duration.ofSeconds(5);
+        });
+
+        assertEquals(0, timeoutReads.get());
+        lazy.finished("search", lazy.started("search"), RpcMetrics.SUCCESS);
+        lazy.finished("search", lazy.started("search"), RpcMetrics.SUCCESS);
+
+        assertEquals(1, timeoutReads.get());
+        assertEquals(2, timer("search", RpcMetrics.SUCCESS).count());
+    }
+
+    @Test
+    public void testFailureCounters() {
+        rpcMetrics.wrongCorrelationId("search");
+        rpcMetrics.wrongCorrelationId("search");
+        rpcMetrics.parseFailure("search");
+
+        assertEquals(2, meterRegistry.counter(RpcMetrics.WRONG_CORRELATION_ID_METRIC, "routingKey", "search").count(), 0);
+        assertEquals(1, meterRegistry.counter(RpcMetrics.PARSE_FAILURES_METRIC, "routingKey", "search").count(), 0);
+    }
+
+    @Test
+    public void testWithoutRegistry() {
+        RpcMetrics disabled = new RpcMetrics(null, Duration.ofSeconds(30));
+
+        disabled.finished("search", disabled.started("search"), RpcMetrics.TIMEOUT);
+        disabled.wrongCorrelationId("search");
+        disabled.parseFailure("search");
+    }
+
+    private Timer timer(String routingKey, String outcome) {
+        return meterRegistry.timer(RpcMetrics.LATENCY_METRIC, "routingKey", routingKey, "outcome", outcome);
+    }
+}
@@ -0,0 +1,70 @@
+package eu.h2020.symbiote;
+
+import eu.h2020.symbiote.communication.RpcMetrics;
+import eu.h2020.symbiote.communication.RpcTracing;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.sleuth.Span;
+import org.springframework.cloud.sleuth.Tracer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class RpcTracingTests {
+    private Tracer tracer;
+    private RpcTracing rpcTracing;
+
+    @Before
+    public void setUp() {
+        this.tracer = mock(Tracer.class);
+        this.rpcTracing = new RpcTracing(tracer);
+    }
+
+    @Test
+    public void testRpcSpan() {
+        Span span = Span.builder().traceId(1).spanId(2).name(RpcTracing.RPC_SPAN_PREFIX + "search").build();
+        when(tracer.createSpan(RpcTracing.RPC_SPAN_PREFIX + "search")).thenReturn(span);
+
+        assertSame(span, rpcTracing.startRpc("resource", "search"));
+        verify(tracer).addTag(RpcTracing.EXCHANGE_TAG, "resource");
+        verify(tracer).addTag(RpcTracing.ROUTING_KEY_TAG, "search");
+
+        rpcTracing.finishRpc(span, RpcMetrics.TIMEOUT);
+        verify(tracer).close(span);
+        assertEquals(RpcMetrics.TIMEOUT, span.tags().get(RpcTracing.OUTCOME_TAG));
+        assertTrue(span.tags().containsKey(Span.SPAN_ERROR_TAG_NAME));
+        assertTrue(span.logs().stream().anyMatch(log -> Span.CLIENT_SEND.equals(log.getEvent())));
+        assertTrue(span.logs().stream().anyMatch(log -> Span.CLIENT_RECV.equals(log.getEvent())));
+    }
+
+    @Test
+    public void testInject() {
+        Span span = Span.builder().traceId(0x1aL).spanId(0x2bL).parents(Arrays.asList(0x3cL)).exportable(true).build();
+        Map<String, Object> headers = new HashMap<>();
+
+        rpcTracing.inject(span, headers);
+
+        assertEquals(span.traceIdString(), headers.get(Span.TRACE_ID_NAME));
+        assertEquals(Span.idToHex(0x2bL), headers.get(Span.SPAN_ID_NAME));
+        assertEquals(Span.idToHex(0x3cL), headers.get(Span.PARENT_ID_NAME));
+        assertEquals(Span.SPAN_SAMPLED, headers.get(Span.SAMPLED_NAME));
+    }
+
+    @Test
+    public void testWithoutTracer() {
+        RpcTracing disabled = new RpcTracing(null);
+        Map<String, Object> headers = new HashMap<>();
+
+        Span span = disabled.startRpc("resource", "search");
+        disabled.inject(span, headers);
+        disabled.finish(disabled.start(RpcTracing.PUBLISH_SPAN));
+        disabled.finishRpc(span, RpcMetrics.SUCCESS);
+
+        assertNull(span);
+        assertTrue(headers.isEmpty());
+    }
+}
@@ -0,0 +1,143 @@
+package eu.h2020.symbiote;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.h2020.symbiote.communication.RabbitManager;
+import eu.h2020.symbiote.config.StreamingResponseConfig;
+import eu.h2020.symbiote.controllers.CoreInterfaceController;
+import eu.h2020.symbiote.core.ci.QueryResourceResult;
+import eu.h2020.symbiote.core.ci.QueryResponse;
+import eu.h2020.symbiote.core.internal.CoreQueryRequest;
+import eu.h2020.symbiote.security.commons.SecurityConstants;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.notNull;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests of NDJSON responses streamed through Spring MVC, i.e. with the return value handlers of the application.
+ */
+public class StreamingResponseConfigTests {
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private RabbitManager rabbitManager;
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() {
+        this.rabbitManager = Mockito.mock(RabbitManager.class);
+
+        List<HandlerMethodReturnValueHandler> handlers = new ArrayList<>();
+        new StreamingResponseConfig().addReturnValueHandlers(handlers);
+        this.mockMvc = MockMvcBuilders.standaloneSetup(new CoreInterfaceController(rabbitManager))
+                .setCustomReturnValueHandlers(handlers.toArray(new HandlerMethodReturnValueHandler[0]))
+                .build();
+    }
+
+    @Test
+    public void testBatchQuery_streamed() throws Exception {
+        when(rabbitManager.sendSearchRequest((CoreQueryRequest) notNull())).thenAnswer(invocation -> {
+            CoreQueryRequest request = (CoreQueryRequest) invocation.getArguments()[0];
+            return new QueryResponse(200, request.getName(), resources(request.getName()));
+        });
+
+        List<String> lines = stream(withSecurityHeaders(post("/query/batch"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"name\":\"first\"},{\"name\":\"second\"}]"));
+
+        assertEquals(2, lines.size());
+        Set<Integer> indices = new HashSet<>();
+        for (String line : lines) {
+            JsonNode result = mapper.readTree(line);
+            indices.add(result.get("index").asInt());
+            assertEquals(200, result.get("result").get("status").asInt());
+        }
+        assertEquals(new HashSet<>(Arrays.asList(0, 1)), indices);
+    }
+
+    @Test
+    public void testQuery_streamed() throws Exception {
+        when(rabbitManager.sendSearchRequest((CoreQueryRequest) notNull())).thenReturn(new QueryResponse(200, "", resources("res0", "res1", "res2")));
+
+        List<String> lines = stream(withSecurityHeaders(get("/query")));
+
+        assertEquals(3, lines.size());
+        for (int i = 0; i < 3; i++)
+            assertEquals("res" + i, mapper.readTree(lines.get(i)).get("id").asText());
+    }
+
+    @Test
+    public void testQuery_jsonNotStreamed() throws Exception {
+        when(rabbitManager.sendSearchRequest((CoreQueryRequest) notNull())).thenReturn(new QueryResponse(200, "", resources("res0")));
+
+        mockMvc.perform(withSecurityHeaders(get("/query")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
+    /**
+     * Performs the request accepting NDJSON and returns lines of the streamed response.
+     */
+    private List<String> stream(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+        MvcResult result = mockMvc.perform(requestBuilder.accept(MediaType.valueOf(NDJSON)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult();
+
+        MvcResult dispatched = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.valueOf(NDJSON)))
+                .andReturn();
+
+        List<String> lines = new ArrayList<>();
+        for (String line : dispatched.getResponse().getContentAsString().split("\n")) {
+            if (!line.isEmpty())
+                lines.add(line);
+        }
+        return lines;
+    }
+
+    private static MockHttpServletRequestBuilder withSecurityHeaders(MockHttpServletRequestBuilder requestBuilder) {
+        return requestBuilder
+                .header(SecurityConstants.SECURITY_CREDENTIALS_TIMESTAMP_HEADER, "1500000000")
+                .header(SecurityConstants.SECURITY_CREDENTIALS_SIZE_HEADER, "1")
+                .header(SecurityConstants.SECURITY_CREDENTIALS_HEADER_PREFIX + "1", "{\"token\":\"token\"," +
+                        "\"authenticationChallenge\":\"authenticationChallenge\"," +
+                        "\"clientCertificate\":\"clientCertificate\"," +
+                        "\"clientCertificateSigningAAMCertificate\":\"clientCertificateSigningAAMCertificate\"," +
+                        "\"foreignTokenIssuingAAMCertificate\":\"foreignTokenIssuingAAMCertificate\"}");
+    }
+
+    private static List<QueryResourceResult> resources(String... ids) {
+        List<QueryResourceResult> resources = new ArrayList<>();
+        for (String id : ids) {
+            QueryResourceResult resource = new QueryResourceResult();
+            resource.setId(id);
+            resources.add(resource);
+        }
+        return resources;
+    }
+}
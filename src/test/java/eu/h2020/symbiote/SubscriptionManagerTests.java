@@ -0,0 +1,202 @@
+package eu.h2020.symbiote;
+
+import eu.h2020.symbiote.communication.ResourceEventListener;
+import eu.h2020.symbiote.core.ci.QueryResourceResult;
+import eu.h2020.symbiote.core.ci.QueryResponse;
+import eu.h2020.symbiote.core.internal.CoreQueryRequest;
+import eu.h2020.symbiote.subscriptions.SubscriptionManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class SubscriptionManagerTests {
+    private static final long DEBOUNCE = 50;
+
+    private SubscriptionManager manager;
+    private List<String> registryIds;
+    private AtomicInteger registryQueries;
+
+    @Before
+    public void setUp() {
+        this.manager = new SubscriptionManager(null, new SimpleMeterRegistry()) {
+            @Override
+            protected SseEmitter createEmitter(long timeout) {
+                return new RecordingEmitter(timeout);
+            }
+        };
+        this.manager.setTestParameters(2, DEBOUNCE, 60000);
+        this.registryIds = new CopyOnWriteArrayList<>(Arrays.asList("res1", "res2"));
+        this.registryQueries = new AtomicInteger();
+    }
+
+    @After
+    public void tearDown() {
+        this.manager.cleanup();
+    }
+
+    @Test
+    public void testSubscribe_initialResults() {
+        RecordingEmitter emitter = subscribe("platform1");
+
+        assertEquals(Arrays.asList(SubscriptionManager.RESULTS_EVENT), emitter.events);
+        QueryResponse results = (QueryResponse) emitter.data.get(0);
+        assertEquals(Arrays.asList("res1", "res2"), getIds(results.getBody()));
+        assertEquals("serviceResponse", results.getServiceResponse());
+    }
+
+    @Test
+    public void testSubscribe_additionPushed() throws Exception {
+        RecordingEmitter emitter = subscribe("platform1");
+
+        registryIds.add("res3");
+        manager.onResourceEvent(ResourceEventListener.Type.CREATED, "{\"platformId\":\"platform1\",\"body\":\"{}\"}");
+        await(() -> emitter.events.size() == 2);
+
+        assertEquals(SubscriptionManager.ADDED_EVENT, emitter.events.get(1));
+        assertEquals(Arrays.asList("res3"), getIds((List<?>) emitter.data.get(1)));
+        assertEquals(1, registryQueries.get());
+    }
+
+    @Test
+    public void testSubscribe_removalPushed() throws Exception {
+        RecordingEmitter emitter = subscribe("platform1");
+
+        registryIds.remove("res2");
+        manager.onResourceEvent(ResourceEventListener.Type.REMOVED, "{\"platformId\":\"platform1\",\"body\":\"{\\\"res2\\\":{\\\"id\\\":\\\"res2\\\"}}\"}");
+        await(() -> emitter.events.size() == 2);
+
+        assertEquals(SubscriptionManager.REMOVED_EVENT, emitter.events.get(1));
+        assertEquals(Arrays.asList("res2"), emitter.data.get(1));
+    }
+
+    @Test
+    public void testSubscribe_unrelatedEventsIgnored() throws Exception {
+        subscribe("platform1");
+
+        manager.onResourceEvent(ResourceEventListener.Type.CREATED, "{\"platformId\":\"platform2\"}");
+        manager.onResourceEvent(ResourceEventListener.Type.REMOVED, "{\"platformId\":\"platform1\",\"body\":{\"res9\":{\"id\":\"res9\"}}}");
+        Thread.sleep(DEBOUNCE * 4);
+
+        assertEquals(0, registryQueries.get());
+    }
+
+    @Test
+    public void testSubscribe_burstOfEventsDebounced() throws Exception {
+        RecordingEmitter emitter = subscribe(null);
+
+        registryIds.add("res3");
+        for (int i = 0; i < 10; i++)
+            manager.onResourceEvent(ResourceEventListener.Type.MODIFIED, "not json");
+        await(() -> emitter.events.size() == 2);
+        Thread.sleep(DEBOUNCE * 2);
+
+        assertEquals(1, registryQueries.get());
+    }
+
+    @Test
+    public void testSubscribe_failedRequeryReported() throws Exception {
+        RecordingEmitter emitter = (RecordingEmitter) manager.subscribe(new CoreQueryRequest(), new String[0],
+                registry(new CoreQueryRequest()), query -> null);
+
+        manager.onResourceEvent(ResourceEventListener.Type.CREATED, "{}");
+        await(() -> emitter.events.size() == 2);
+
+        assertEquals(SubscriptionManager.ERROR_EVENT, emitter.events.get(1));
+    }
+
+    @Test
+    public void testSubscribe_refreshesRateLimited() throws Exception {
+        manager.setTestParameters(2, DEBOUNCE, 60000, 2);
+        subscribe(null);
+        subscribe(null);
+
+        manager.onResourceEvent(ResourceEventListener.Type.CREATED, "{}");
+        Thread.sleep(DEBOUNCE * 4);
+
+        assertEquals(1, registryQueries.get());
+        await(() -> registryQueries.get() == 2);
+    }
+
+    @Test
+    public void testSubscribe_tooManySubscriptions() {
+        assertTrue(manager.hasCapacity());
+        assertNotNull(subscribe("platform1"));
+        assertNotNull(subscribe("platform1"));
+        assertFalse(manager.hasCapacity());
+        assertNull(subscribe("platform1"));
+    }
+
+    @Test
+    public void testSubscribe_disabled() {
+        SubscriptionManager disabled = new SubscriptionManager();
+
+        assertFalse(disabled.isEnabled());
+        assertFalse(disabled.hasCapacity());
+        assertNull(disabled.subscribe(new CoreQueryRequest(), new String[0], registry(new CoreQueryRequest()), this::registry));
+    }
+
+    private RecordingEmitter subscribe(String platformId) {
+        CoreQueryRequest query = new CoreQueryRequest();
+        query.setPlatform_id(platformId);
+        String[] platformIds = platformId != null ? new String[]{platformId} : new String[0];
+        return (RecordingEmitter) manager.subscribe(query, platformIds, registry(query), q -> {
+            registryQueries.incrementAndGet();
+            return registry(q);
+        });
+    }
+
+    private QueryResponse registry(CoreQueryRequest query) {
+        List<QueryResourceResult> resources = registryIds.stream()
+                .map(id -> {
+                    QueryResourceResult resource = new QueryResourceResult();
+                    resource.setId(id);
+                    return resource;
+                })
+                .collect(Collectors.toList());
+        QueryResponse response = new QueryResponse(200, "", resources);
+        response.setServiceResponse("serviceResponse");
+        return response;
+    }
+
+    private static List<String> getIds(List<?> resources) {
+        return resources.stream()
+                .map(resource -> ((QueryResourceResult) resource).getId())
+                .collect(Collectors.toList());
+    }
+
+    private static void await(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertTrue(condition.getAsBoolean());
+    }
+
+    /**
+     * Emitter recording names and data of sent events instead of writing them to a response.
+     */
+    private static class RecordingEmitter extends SseEmitter {
+        private final List<String> events = new CopyOnWriteArrayList<>();
+        private final List<Object> data = new CopyOnWriteArrayList<>();
+
+        private RecordingEmitter(long timeout) {
+            super(timeout);
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            Iterator<DataWithMediaType> parts = builder.build().iterator();
+            String prefix = (String) parts.next().getData();
+            events.add(prefix.substring("event:".length(), prefix.indexOf('\n')));
+            data.add(parts.next().getData());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package eu.h2020.symbiote;
+
+import eu.h2020.symbiote.tracing.TailSamplingSpanReporter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.sleuth.Span;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TailSamplingSpanReporterTests {
+    private SimpleMeterRegistry meterRegistry;
+    private List<Span> reported;
+    private TailSamplingSpanReporter reporter;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        reported = new ArrayList<>();
+        reporter = new TailSamplingSpanReporter(reported::add, meterRegistry, 1000, 2, 60000);
+    }
+
+    @Test
+    public void testSampledTraceReportedImmediately() {
+        Span child = span(1, 2, true, 0);
+        reporter.report(child);
+        reporter.report(request(1, true, 0));
+
+        assertEquals(2, reported.size());
+        assertSame(child, reported.get(0));
+        assertEquals(1, decisions(TailSamplingSpanReporter.SAMPLED), 0);
+    }
+
+    @Test
+    public void testFastTraceDropped() {
+        reporter.report(span(1, 2, false, 0));
+        reporter.report(request(1, false, 10));
+
+        assertTrue(reported.isEmpty());
+        assertEquals(1, decisions(TailSamplingSpanReporter.DROPPED), 0);
+        assertEquals(0, meterRegistry.find(TailSamplingSpanReporter.PENDING_METRIC).gauge().value(), 0);
+    }
+
+    @Test
+    public void testSlowTraceExported() {
+        reporter.report(span(1, 2, false, 0));
+        reporter.report(span(2, 3, false, 0));
+        reporter.report(request(1, false, 2000));
+
+        assertEquals(2, reported.size());
+        for (Span span : reported) {
+            assertEquals(1, span.getTraceId());
+            assertTrue(span.isExportable());
+        }
+        assertEquals(1, decisions(TailSamplingSpanReporter.SLOW), 0);
+        assertEquals(1, meterRegistry.find(TailSamplingSpanReporter.PENDING_METRIC).gauge().value(), 0);
+    }
+
+    @Test
+    public void testFailedTraceExported() {
+        Span child = span(1, 2, false, 0);
+        child.tag(Span.SPAN_ERROR_TAG_NAME, "Timeout");
+        reporter.report(child);
+        reporter.report(request(1, false, 10));
+
+        Span request = request(3, false, 10);
+        request.tag("http.status_code", "503");
+        reporter.report(request);
+
+        assertEquals(3, reported.size());
+        assertEquals(2, decisions(TailSamplingSpanReporter.ERROR), 0);
+    }
+
+    @Test
+    public void testOverflow() {
+        reporter.report(span(1, 2, false, 0));
+        reporter.report(span(2, 3, false, 0));
+        reporter.report(span(3, 4, false, 0));
+
+        assertEquals(1, meterRegistry.counter(TailSamplingSpanReporter.OVERFLOW_METRIC).count(), 0);
+
+        reporter.report(request(3, false, 2000));
+        assertEquals(1, reported.size());
+    }
+
+    @Test
+    public void testLocalRootDecided() {
+        reporter.report(span(1, 2, false, 0));
+        reporter.report(root(1, 10));
+        reporter.report(span(3, 4, false, 0));
+        reporter.report(root(3, 2000));
+
+        assertEquals(2, reported.size());
+        assertEquals(3, reported.get(0).getTraceId());
+        assertEquals(1, decisions(TailSamplingSpanReporter.DROPPED), 0);
+        assertEquals(1, decisions(TailSamplingSpanReporter.SLOW), 0);
+        assertEquals(0, meterRegistry.find(TailSamplingSpanReporter.PENDING_METRIC).gauge().value(), 0);
+    }
+
+    @Test
+    public void testStaleTraceEvicted() throws InterruptedException {
+        reporter = new TailSamplingSpanReporter(reported::add, meterRegistry, 1000, 2, 1);
+        reporter.report(span(1, 2, false, 0));
+        Thread.sleep(10);
+        reporter.report(span(3, 4, false, 0));
+
+        assertEquals(1, meterRegistry.find(TailSamplingSpanReporter.PENDING_METRIC).gauge().value(), 0);
+
+        reporter.report(request(1, false, 2000));
+        assertEquals(1, reported.size());
+    }
+
+    private double decisions(String decision) {
+        return meterRegistry.counter(TailSamplingSpanReporter.TRACES_METRIC, "decision", decision).count();
+    }
+
+    /**
+     * @return child of the local root span whose ID equals trace ID
+     */
+    private static Span span(long traceId, long spanId, boolean exportable, long duration) {
+        return builder(traceId, spanId, exportable, duration)
+                .parent(traceId)
+                .build();
+    }
+
+    private static Span request(long traceId, boolean exportable, long duration) {
+        Span span = root(traceId, exportable, duration);
+        span.logEvent(Span.SERVER_RECV);
+        return span;
+    }
+
+    private static Span root(long traceId, long duration) {
+        return root(traceId, false, duration);
+    }
+
+    private static Span root(long traceId, boolean exportable, long duration) {
+        return builder(traceId, traceId, exportable, duration).build();
+    }
+
+    private static Span.SpanBuilder builder(long traceId, long spanId, boolean exportable, long duration) {
+        return Span.builder()
+                .traceId(traceId)
+                .spanId(spanId)
+                .name("span" + spanId)
+                .begin(1000)
+                .end(1000 + duration)
+                .exportable(exportable);
+    }
+}
@@ -0,0 +1,48 @@
+package eu.h2020.symbiote;
+
+import eu.h2020.symbiote.tracing.TraceSampler;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class TraceSamplerTests {
+
+    @Test
+    public void testRateLimit() {
+        AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(100));
+        TraceSampler sampler = new TraceSampler(1.0, 3, clock::get);
+
+        assertEquals(3, sampled(sampler, 10));
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(0, sampled(sampler, 10));
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(3, sampled(sampler, 10));
+    }
+
+    @Test
+    public void testProbability() {
+        assertEquals(0, sampled(new TraceSampler(0.0, 0), 1000));
+        assertEquals(1000, sampled(new TraceSampler(1.0, 0), 1000));
+
+        int sampled = sampled(new TraceSampler(0.5, 0), 1000);
+        assertTrue("Sampled " + sampled, sampled > 350 && sampled < 650);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidProbability() {
+        new TraceSampler(1.5, 0);
+    }
+
+    private static int sampled(TraceSampler sampler, int traces) {
+        int sampled = 0;
+        for (int i = 0; i < traces; i++)
+            if (sampler.isSampled(null))
+                sampled++;
+        return sampled;
+    }
+}